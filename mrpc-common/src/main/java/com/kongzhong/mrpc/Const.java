@@ -33,6 +33,16 @@ public interface Const {
     String HEADER_SERVICE_CLASS                = "serviceName";
     // http头信息 传递方法名
     String HEADER_METHOD_NAME                  = "methodName";
+    // http头信息 请求剩余的超时时间，单位/毫秒
+    String HEADER_WAIT_TIMEOUT                 = "waitTimeout";
+    // http头信息 批量请求，请求体和响应体为json数组
+    String HEADER_BATCH                        = "batch";
+    // http头信息 流式响应，响应体为逐行的json帧
+    String HEADER_STREAM                       = "stream";
+    // http头信息 二进制附件的字节数，逗号分隔，-1表示null，附件按顺序跟在json之后
+    String HEADER_ATTACHMENT                   = "attachment";
+    // tcp请求上下文 客户端支持的压缩算法
+    String ACCEPT_COMPRESS                     = "mrpc.acceptCompress";
     // 拦截器名称前缀
     String SERVER_INTERCEPTOR_PREFIX           = "server-interceptor-";
     String CLIENT_INTERCEPTOR_PREFIX           = "client-interceptor-";
@@ -46,6 +56,8 @@ public interface Const {
     String CLINET_APP_ID_STYLE2                = "mrpc.client.app-id";
     // 客户端序列化配置
     String SERIALIZE_CLIENT                    = "mrpc.client.serialize";
+    // 客户端传输协议配置
+    String TRANSPORT_CLIENT                    = "mrpc.client.transport";
     // 客户端负载均衡配置
     String LB_STRATEGY_STYLE1_CLIENT           = "mrpc.client.lb-strategy";
     String LB_STRATEGY_STYLE2_CLIENT           = "mrpc.client.lbStrategy";
@@ -80,6 +92,20 @@ public interface Const {
     String NETTY_CONN_STYLE2_TIMEOUT           = "mrpc.netty.conn-timeout";
     // netty tcp backlog
     String NETTY_BACKLOG                       = "mrpc.netty.backlog";
+    // 客户端每个服务节点最少/最多连接数
+    String NETTY_MIN_CONNECTIONS               = "mrpc.netty.minConnections";
+    String NETTY_MAX_CONNECTIONS               = "mrpc.netty.maxConnections";
+    // 连接池扩容的未完成请求数阈值，以及空闲连接回收时间，单位/毫秒
+    String NETTY_CONNECTION_PENDING            = "mrpc.netty.connectionPending";
+    String NETTY_CONNECTION_IDLE_TIME          = "mrpc.netty.connectionIdleTime";
+    // 客户端每个连接上最多未完成的请求数，以及过载时的处理策略
+    String NETTY_MAX_IN_FLIGHT                 = "mrpc.netty.maxInFlight";
+    String NETTY_OVERLOAD_POLICY               = "mrpc.netty.overloadPolicy";
+    String NETTY_OVERLOAD_WAIT_TIME            = "mrpc.netty.overloadWaitTime";
+    // 是否开启批量flush，以及立即flush的次数和字节数阈值
+    String NETTY_FLUSH_BATCH                   = "mrpc.netty.flushBatch";
+    String NETTY_FLUSH_BATCH_COUNT             = "mrpc.netty.flushBatchCount";
+    String NETTY_FLUSH_BATCH_BYTES             = "mrpc.netty.flushBatchBytes";
     // 注册中心
     String REGSITRY_KEY                        = "mrpc.registry";
     // 后台
@@ -51,4 +51,25 @@ public @interface Command {
      */
     String appId() default "";
 
+    /**
+     * 标注在服务实现方法上时，该方法直接在I/O线程上执行，不经过业务线程池
+     *
+     * @return
+     */
+    boolean ioThread() default false;
+
+    /**
+     * 客户端微批量窗口，单位/微秒，大于0时同一个http连接上窗口内对该方法的调用合并为一个批量请求发送，由服务端拆分执行，每个调用的结果和超时各自独立
+     *
+     * @return
+     */
+    int batchWindow() default 0;
+
+    /**
+     * 微批量的请求数上限，达到上限时不等窗口结束立即发送
+     *
+     * @return
+     */
+    int batchSize() default 32;
+
 }
\ No newline at end of file
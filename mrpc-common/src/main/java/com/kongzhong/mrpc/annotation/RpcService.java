@@ -1,5 +1,6 @@
 package com.kongzhong.mrpc.annotation;
 
+import com.kongzhong.mrpc.enums.RejectPolicyEnum;
 import com.kongzhong.mrpc.model.NoInterface;
 import org.springframework.stereotype.Component;
 
@@ -65,4 +66,53 @@ public @interface RpcService {
      */
     String elasticIp() default "";
 
+    /**
+     * 请求体最大字节数，0表示使用netty配置
+     *
+     * @return
+     */
+    int maxRequestSize() default 0;
+
+    /**
+     * 响应体最大字节数，0表示使用netty配置
+     *
+     * @return
+     */
+    int maxResponseSize() default 0;
+
+    /**
+     * 服务独立线程池的线程数，0表示使用共享业务线程池
+     *
+     * @return
+     */
+    int threadPoolSize() default 0;
+
+    /**
+     * 服务独立线程池的队列长度，-1表示无界队列
+     *
+     * @return
+     */
+    int queueSize() default 1024;
+
+    /**
+     * 服务独立线程池满时的拒绝策略
+     *
+     * @return
+     */
+    RejectPolicyEnum rejectPolicy() default RejectPolicyEnum.ABORT;
+
+    /**
+     * 服务方法直接在I/O线程上执行，不经过业务线程池，只适用于不会阻塞的轻量方法
+     *
+     * @return
+     */
+    boolean ioThread() default false;
+
+    /**
+     * 响应压缩算法 gzip/snappy/none，默认使用netty全局配置
+     *
+     * @return
+     */
+    String compress() default "";
+
 }
\ No newline at end of file
@@ -5,12 +5,37 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 线程池拒绝策略
+ * <p>
+ * 队列满被拒绝和排队超时被丢弃的请求都记录为计数，日志每个周期最多输出一次，过载时不会刷屏。
+ */
 @Slf4j
 public class AbortPolicyWithReport extends ThreadPoolExecutor.AbortPolicy {
 
+    /**
+     * 两次过载日志的最小间隔
+     */
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
     private final String threadName;
 
+    /**
+     * 队列满被拒绝的任务数
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 排队时间超过上限被丢弃的任务数
+     */
+    private final LongAdder expired = new LongAdder();
+
+    private final AtomicLong lastReportTime = new AtomicLong(System.nanoTime() - REPORT_INTERVAL);
+
     /**
      * 构造器
      *
@@ -22,12 +47,39 @@ public class AbortPolicyWithReport extends ThreadPoolExecutor.AbortPolicy {
 
     @Override
     public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+        rejected.increment();
         String msg = String.format("RpcServer["
-                        + " Thread Name: %s, Pool Size: %d (active: %d, core: %d, max: %d, largest: %d), Task: %d (completed: %d),"
+                        + " Thread Name: %s, Pool Size: %d (active: %d, core: %d, max: %d, largest: %d), Task: %d (completed: %d), Queue: %d,"
                         + " Executor status:(isShutdown:%s, isTerminated:%s, isTerminating:%s)]",
                 threadName, e.getPoolSize(), e.getActiveCount(), e.getCorePoolSize(), e.getMaximumPoolSize(), e.getLargestPoolSize(),
-                e.getTaskCount(), e.getCompletedTaskCount(), e.isShutdown(), e.isTerminated(), e.isTerminating());
-        log.warn(msg);
+                e.getTaskCount(), e.getCompletedTaskCount(), e.getQueue().size(), e.isShutdown(), e.isTerminated(), e.isTerminating());
+        this.report(msg);
         throw new RejectedExecutionException(msg);
     }
+
+    /**
+     * 记录一次排队超时被丢弃的任务
+     *
+     * @param queueTime 任务在队列中等待的时间，单位/毫秒
+     */
+    public void reportExpired(long queueTime) {
+        expired.increment();
+        this.report(String.format("RpcServer[ Thread Name: %s, task expired after queued %dms ]", threadName, queueTime));
+    }
+
+    private void report(String msg) {
+        long now  = System.nanoTime();
+        long last = lastReportTime.get();
+        if (now - last >= REPORT_INTERVAL && lastReportTime.compareAndSet(last, now)) {
+            log.warn("{} rejected: {}, expired: {}", msg, rejected.longValue(), expired.longValue());
+        }
+    }
+
+    public long getRejected() {
+        return rejected.longValue();
+    }
+
+    public long getExpired() {
+        return expired.longValue();
+    }
 }
\ No newline at end of file
@@ -25,11 +25,22 @@ public class RpcThreadPool {
      * @param threads 固定数量线程的线程池
      * @param queues  设置线程池工作队列,  0:同步队列
      *                <0 无界队列 LinkedBlockingQueue
-     *                >0 无界队列,指定了初始容量
+     *                >0 有界队列,队列满时由AbortPolicyWithReport拒绝
      * @return 返回指定了线程池之后的线程池执行器
      */
     public static Executor getExecutor(int threads, int queues) {
-        String name = "mrpc-pool";
+        return getExecutor("mrpc-pool", threads, queues);
+    }
+
+    /**
+     * @param name    线程名前缀
+     * @param threads 固定数量线程的线程池
+     * @param queues  设置线程池工作队列,  0:同步队列
+     *                <0 无界队列 LinkedBlockingQueue
+     *                >0 有界队列,队列满时由AbortPolicyWithReport拒绝
+     * @return 返回指定了线程池之后的线程池执行器
+     */
+    public static Executor getExecutor(String name, int threads, int queues) {
         return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
                 queues == 0 ? new SynchronousQueue<>()
                         : (queues < 0 ? new LinkedBlockingQueue<>()
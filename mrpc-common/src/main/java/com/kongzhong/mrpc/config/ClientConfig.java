@@ -3,6 +3,7 @@ package com.kongzhong.mrpc.config;
 import com.google.common.collect.Maps;
 import com.kongzhong.mrpc.enums.HaStrategyEnum;
 import com.kongzhong.mrpc.enums.LbStrategyEnum;
+import com.kongzhong.mrpc.enums.TransportEnum;
 import com.kongzhong.mrpc.registry.ServiceDiscovery;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
 import lombok.Data;
@@ -26,6 +27,7 @@ public class ClientConfig {
     private HaStrategyEnum haStrategy = HaStrategyEnum.FAILOVER;
     private RpcSerialize rpcSerialize;
     private LbStrategyEnum lbStrategy = LbStrategyEnum.RANDOM;
+    private TransportEnum transport = TransportEnum.HTTP;
     private Map<String, ServiceDiscovery> serviceDiscoveryMap = Maps.newHashMap();
 
     /**
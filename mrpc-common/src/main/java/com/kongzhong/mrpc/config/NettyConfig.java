@@ -1,5 +1,8 @@
 package com.kongzhong.mrpc.config;
 
+import com.kongzhong.mrpc.enums.CompressEnum;
+import com.kongzhong.mrpc.enums.OverloadPolicyEnum;
+import com.kongzhong.mrpc.model.ServiceBean;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -32,6 +35,138 @@ public class NettyConfig {
      * 业务线程池数，默认为当前CPU*2
      */
     private int businessThreadPoolSize = 16;
+    /**
+     * 业务线程池队列长度，队列满时直接返回过载响应，-1表示无界队列，0表示不排队
+     */
+    private int businessQueueSize      = 1024;
+    /**
+     * 请求在业务线程池队列中最长的等待时间，超过后不再执行直接返回过载响应，单位/毫秒，0表示不限制
+     * <p>
+     * 请求带有客户端超时时间时取两者中较小的值
+     */
+    private int maxQueueTime           = 3000;
+    /**
+     * 在I/O线程上执行的服务方法超过该时间视为阻塞，输出警告，多次阻塞后切换回业务线程池，单位/毫秒
+     */
+    private int ioThreadBlockTime      = 10;
+    /**
+     * 停机时等待未完成请求的最长时间，单位/毫秒
+     */
+    private int drainTimeout           = 10_000;
+
+    /**
+     * 客户端每个服务节点最少保持的连接数
+     */
+    private int minConnections     = 1;
+    /**
+     * 客户端每个服务节点最多建立的连接数，默认为当前CPU数
+     */
+    private int maxConnections     = Runtime.getRuntime().availableProcessors();
+    /**
+     * 最空闲的连接上未完成请求数达到该值时扩容连接池
+     */
+    private int connectionPending  = 64;
+    /**
+     * 超过最少连接数的空闲连接回收时间，单位/毫秒
+     */
+    private int connectionIdleTime = 60_000;
+
+    /**
+     * 客户端每个连接上最多未完成的请求数，0表示不限制
+     */
+    private int                maxInFlight      = 1024;
+    /**
+     * 客户端连接不可写或者未完成请求数达到上限时的处理策略
+     */
+    private OverloadPolicyEnum overloadPolicy   = OverloadPolicyEnum.FAILFAST;
+    /**
+     * WAIT策略下等待连接可写的最长时间，单位/毫秒
+     */
+    private int                overloadWaitTime = 1000;
+
+    /**
+     * 是否开启批量flush，开启后合并同一轮EventLoop中的写操作
+     */
+    private boolean flushBatch;
+    /**
+     * 批量flush时累计多少次flush后立即flush
+     */
+    private int     flushBatchCount = 128;
+    /**
+     * 批量flush时累计多少字节后立即flush
+     */
+    private int     flushBatchBytes = 64 * 1024;
+
+    /**
+     * 是否自动使用native epoll，系统不支持时回退到NIO
+     */
+    private boolean nativeEpoll   = true;
+    /**
+     * 服务端boss线程数
+     */
+    private int     bossThreads   = 1;
+    /**
+     * 服务端worker线程数/客户端EventLoop线程数，0表示使用默认值
+     */
+    private int     workerThreads;
+    private boolean tcpNoDelay    = true;
+    /**
+     * TCP_QUICKACK，只在epoll下生效
+     */
+    private boolean tcpQuickAck;
+    /**
+     * SO_REUSEPORT，只在epoll下生效，开启后服务端绑定acceptors个监听Channel
+     */
+    private boolean reusePort;
+    private int     acceptors     = 1;
+
+    /**
+     * 请求体最大字节数，服务端超过后直接拒绝，默认8M
+     */
+    private int maxRequestSize  = 8 * 1024 * 1024;
+    /**
+     * 响应体最大字节数，默认8M
+     */
+    private int maxResponseSize = 8 * 1024 * 1024;
+
+    /**
+     * 服务端响应的压缩算法，服务未单独配置时使用，客户端不支持该算法时不压缩
+     */
+    private CompressEnum compress          = CompressEnum.GZIP;
+    /**
+     * 报文超过该字节数才压缩，小报文压缩的CPU开销大于节省的带宽
+     */
+    private int          compressThreshold = 1024;
+
+    /**
+     * 获取服务的请求体上限，服务未单独配置时使用全局配置
+     *
+     * @param serviceBean 服务，可以为null
+     * @return 返回请求体最大字节数
+     */
+    public int maxRequestSize(ServiceBean serviceBean) {
+        return null != serviceBean && serviceBean.getMaxRequestSize() > 0 ? serviceBean.getMaxRequestSize() : maxRequestSize;
+    }
+
+    /**
+     * 获取服务的响应体上限，服务未单独配置时使用全局配置
+     *
+     * @param serviceBean 服务，可以为null
+     * @return 返回响应体最大字节数
+     */
+    public int maxResponseSize(ServiceBean serviceBean) {
+        return null != serviceBean && serviceBean.getMaxResponseSize() > 0 ? serviceBean.getMaxResponseSize() : maxResponseSize;
+    }
+
+    /**
+     * 获取服务的压缩算法，服务未单独配置时使用全局配置
+     *
+     * @param serviceBean 服务，可以为null
+     * @return 返回压缩算法
+     */
+    public CompressEnum compress(ServiceBean serviceBean) {
+        return null != serviceBean && null != serviceBean.getCompress() ? serviceBean.getCompress() : compress;
+    }
 
     public NettyConfig(int backlog, boolean keepalive) {
         this.backlog = backlog;
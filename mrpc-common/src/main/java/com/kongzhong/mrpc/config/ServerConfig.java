@@ -1,5 +1,6 @@
 package com.kongzhong.mrpc.config;
 
+import com.kongzhong.mrpc.enums.TransportEnum;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
 import lombok.AccessLevel;
 import lombok.Data;
@@ -17,9 +18,10 @@ import lombok.ToString;
 @ToString
 public class ServerConfig {
 
-    private String       appId;
-    private String       elasticIp;
-    private RpcSerialize rpcSerialize;
+    private String        appId;
+    private String        elasticIp;
+    private RpcSerialize  rpcSerialize;
+    private TransportEnum transport = TransportEnum.HTTP;
 
     private static final class ServerConfigHolder {
         private static final ServerConfig INSTANCE = new ServerConfig();
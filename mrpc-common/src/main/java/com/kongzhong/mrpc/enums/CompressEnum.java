@@ -0,0 +1,50 @@
+package com.kongzhong.mrpc.enums;
+
+/**
+ * 报文压缩算法
+ * <p>
+ * http传输中name小写后作为Content-Encoding，tcp传输中id写在压缩帧的长度之后。
+ *
+ * @author biezhi
+ * 2017/5/4
+ */
+public enum CompressEnum {
+
+    // 不压缩
+    NONE(0, "不压缩"),
+    // 压缩率高，CPU开销较大
+    GZIP(1, "gzip"),
+    // 纯Java实现的LZ77类算法，压缩率低于gzip，速度快得多
+    SNAPPY(2, "snappy");
+
+    private final byte   id;
+    private final String desc;
+
+    CompressEnum(int id, String desc) {
+        this.id = (byte) id;
+        this.desc = desc;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * http的Content-Encoding
+     *
+     * @return 返回小写的算法名称
+     */
+    public String encoding() {
+        return name().toLowerCase();
+    }
+
+    public static CompressEnum valueOf(byte id) {
+        for (CompressEnum compressEnum : values()) {
+            if (compressEnum.id == id) {
+                return compressEnum;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compress id " + id);
+    }
+
+}
\ No newline at end of file
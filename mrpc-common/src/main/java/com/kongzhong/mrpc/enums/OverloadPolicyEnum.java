@@ -0,0 +1,26 @@
+package com.kongzhong.mrpc.enums;
+
+/**
+ * 客户端连接过载时的处理策略
+ * <p>
+ * 连接不可写或者未完成请求数达到上限时视为过载
+ *
+ * @author biezhi
+ * 2017/4/29
+ */
+public enum OverloadPolicyEnum {
+
+    // 立即失败，抛出OverloadException
+    FAILFAST("快速失败"),
+    // 等待连接可写，超过等待时间后失败
+    WAIT("等待可写"),
+    // 通过负载均衡选择其他节点
+    REROUTE("切换节点");
+
+    private final String desc;
+
+    OverloadPolicyEnum(String desc) {
+        this.desc = desc;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.kongzhong.mrpc.enums;
+
+/**
+ * 服务独立线程池满时的拒绝策略
+ *
+ * @author biezhi
+ * 2017/4/30
+ */
+public enum RejectPolicyEnum {
+
+    // 直接返回过载响应
+    ABORT("直接拒绝"),
+    // 溢出到共享业务线程池执行
+    SHARED("共享线程池");
+
+    private final String desc;
+
+    RejectPolicyEnum(String desc) {
+        this.desc = desc;
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.kongzhong.mrpc.enums;
+
+/**
+ * 传输协议
+ *
+ * @author biezhi
+ * 2017/4/20
+ */
+public enum TransportEnum {
+
+    HTTP("http协议，JSON报文"),
+    TCP("tcp协议，长度帧+二进制序列化"),
+    H2C("h2c协议，http/2明文多路复用，JSON报文");
+
+    private final String desc;
+
+    TransportEnum(String desc) {
+        this.desc = desc;
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.kongzhong.mrpc.exception;
+
+import lombok.NoArgsConstructor;
+
+/**
+ * 客户端连接过载异常，请求没有发出
+ *
+ * @author biezhi
+ *         2017/4/29
+ */
+@NoArgsConstructor
+public class OverloadException extends RpcException {
+
+    public OverloadException(String message) {
+        super(message);
+    }
+
+}
@@ -8,6 +8,9 @@ package com.kongzhong.mrpc.exception;
  */
 public class TimeoutException extends RuntimeException {
 
+    public TimeoutException() {
+    }
+
     public TimeoutException(String message) {
         super(message);
     }
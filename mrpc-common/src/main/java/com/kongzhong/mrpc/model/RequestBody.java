@@ -24,7 +24,7 @@ public class RequestBody {
     private String method;
     private String version;
     private Map<String, String> context = new HashMap<>();
-    private List<Object> parameters;
     private List<String> parameterTypes;
+    private List<Object> parameters;
 
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import lombok.ToString;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RPC上下文
@@ -40,6 +41,19 @@ public class RpcContext {
         return ATTACHMENT_LOCAL.get().get(key);
     }
 
+    /**
+     * 当前处理的请求剩余的时间，服务方法中发起的rpc调用超时时间不超过该值
+     *
+     * @return 返回剩余毫秒数，已经超时返回0，没有截止时间返回-1
+     */
+    public static long getRemainingTime() {
+        RpcRequest rpcRequest = REQUEST_FAST_THREAD_LOCAL.get();
+        if (null == rpcRequest || rpcRequest.getWaitTimeout() <= 0) {
+            return -1;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(rpcRequest.getDeadline() - System.nanoTime()));
+    }
+
     public static void setRpcRequest(RpcRequest rpcRequest) {
         REQUEST_FAST_THREAD_LOCAL.set(rpcRequest);
     }
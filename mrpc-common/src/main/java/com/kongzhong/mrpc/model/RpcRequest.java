@@ -3,7 +3,9 @@ package com.kongzhong.mrpc.model;
 import lombok.*;
 
 import java.io.Serializable;
+import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,7 +28,27 @@ public class RpcRequest implements Serializable {
     private String     fallbackType;
     private String     fallbackMethod;
     private long       timestamp;
+    /**
+     * 请求发出时剩余的超时时间，单位/毫秒，嵌套调用时不超过上游请求剩余的时间
+     */
     private int        waitTimeout;
+    /**
+     * 服务端收到请求时根据waitTimeout计算的本地截止时间(System.nanoTime)，不参与序列化
+     */
+    private transient long deadline;
+    /**
+     * 客户端方法的泛型返回类型，只在本地用于解析响应，不参与序列化
+     */
+    private transient Type genericReturnType;
+    /**
+     * 客户端微批量窗口(微秒)和请求数上限，只在本地使用，不参与序列化
+     */
+    private transient int  batchWindow;
+    private transient int  batchSize;
+    /**
+     * 服务端从请求中解码出的二进制参数，调用结束后释放，不参与序列化
+     */
+    private transient List<Object> attachments;
     @Builder.Default
     private Map<String, String> context = new HashMap<>();
 
@@ -1,5 +1,7 @@
 package com.kongzhong.mrpc.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.kongzhong.mrpc.enums.CompressEnum;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -24,4 +26,10 @@ public class RpcResponse implements Serializable {
     private String returnType;
     private String exception;
     private Map<String, String> context = new HashMap<>();
+
+    /**
+     * tcp传输中服务端和客户端协商的压缩算法，不参与序列化
+     */
+    @JsonIgnore
+    private transient CompressEnum compress;
 }
\ No newline at end of file
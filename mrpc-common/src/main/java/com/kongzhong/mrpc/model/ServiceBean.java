@@ -1,5 +1,7 @@
 package com.kongzhong.mrpc.model;
 
+import com.kongzhong.mrpc.enums.CompressEnum;
+import com.kongzhong.mrpc.enums.RejectPolicyEnum;
 import lombok.Data;
 import lombok.ToString;
 
@@ -22,4 +24,27 @@ public class ServiceBean {
     private String address;
     private String elasticIp;
 
+    /**
+     * 请求体/响应体最大字节数，0表示使用netty全局配置
+     */
+    private int maxRequestSize;
+    private int maxResponseSize;
+
+    /**
+     * 服务独立线程池的线程数、队列长度和拒绝策略，线程数为0时使用共享业务线程池
+     */
+    private int              threadPoolSize;
+    private int              queueSize    = 1024;
+    private RejectPolicyEnum rejectPolicy = RejectPolicyEnum.ABORT;
+
+    /**
+     * 服务方法直接在I/O线程上执行
+     */
+    private boolean ioThread;
+
+    /**
+     * 响应压缩算法，null表示使用netty全局配置
+     */
+    private CompressEnum compress;
+
 }
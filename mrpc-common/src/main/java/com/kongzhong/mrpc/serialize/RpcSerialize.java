@@ -1,5 +1,7 @@
 package com.kongzhong.mrpc.serialize;
 
+import java.io.OutputStream;
+
 /**
  * RPC序列化接口
  *
@@ -22,6 +24,18 @@ public interface RpcSerialize {
      */
     <T> byte[] serialize(T obj) throws Exception;
 
+    /**
+     * 将对象序列化后直接写入输出流，实现类可以覆盖该方法避免中间的byte数组
+     *
+     * @param obj java对象
+     * @param out 输出流
+     * @param <T> 泛型
+     * @throws Exception
+     */
+    default <T> void serialize(T obj, OutputStream out) throws Exception {
+        out.write(this.serialize(obj));
+    }
+
     /**
      * 反序列化数据为Class类型
      *
@@ -1,11 +1,13 @@
 package com.kongzhong.mrpc.serialize.jackson;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.kongzhong.mrpc.exception.SerializeException;
 import com.kongzhong.mrpc.exception.SystemException;
 import lombok.AccessLevel;
@@ -13,6 +15,9 @@ import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.zapodot.jackson.java8.JavaOptionalModule;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -80,6 +85,20 @@ public class JacksonSerialize {
         }
     }
 
+    /**
+     * Java对象序列化为JSON直接写入输出流
+     *
+     * @param object
+     * @param out
+     */
+    public static void writeTo(Object object, OutputStream out) throws SerializeException {
+        try {
+            MAPPER.writeValue(out, object);
+        } catch (Exception e) {
+            throw new SerializeException(e);
+        }
+    }
+
     /**
      * json字符串转Java对象
      *
@@ -97,6 +116,57 @@ public class JacksonSerialize {
         }
     }
 
+    /**
+     * 从输入流解析json，避免先转换为完整的字符串
+     *
+     * @param in
+     * @param type
+     * @param <T>
+     * @return
+     */
+    public static <T> T parseObject(InputStream in, Class<T> type) throws SerializeException {
+        try {
+            return MAPPER.readValue(in, type);
+        } catch (Exception e) {
+            log.error("Json parse to object error", e);
+            throw new SerializeException(e);
+        }
+    }
+
+    /**
+     * 创建流式解析器
+     *
+     * @param in
+     * @return
+     */
+    public static JsonParser createParser(InputStream in) throws IOException {
+        return MAPPER.getFactory().createParser(in);
+    }
+
+    /**
+     * 从解析器当前位置读取一个值
+     *
+     * @param parser
+     * @param type
+     * @param <T>
+     * @return
+     */
+    public static <T> T readValue(JsonParser parser, JavaType type) throws IOException {
+        return MAPPER.readValue(parser, type);
+    }
+
+    /**
+     * 缓存解析器当前位置的值，稍后通过TokenBuffer.asParser()再次读取
+     *
+     * @param parser
+     * @return
+     */
+    public static TokenBuffer bufferValue(JsonParser parser) throws IOException {
+        TokenBuffer tokenBuffer = new TokenBuffer(parser);
+        tokenBuffer.copyCurrentStructure(parser);
+        return tokenBuffer;
+    }
+
     /**
      * json转obj
      */
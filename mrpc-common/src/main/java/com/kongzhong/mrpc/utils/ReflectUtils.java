@@ -458,4 +458,14 @@ public class ReflectUtils {
         Class<?>[] inters = cls.getInterfaces();
         return Stream.of(inters).filter(interfaceType -> interfaceType.equals(inter)).count() > 0;
     }
-}
\ No newline at end of file
+
+    /**
+     * 是否为流式返回类型，服务端逐个发送元素，客户端按需读取
+     *
+     * @param type 方法返回类型
+     * @return 返回类型为Iterator或Stream时返回true
+     */
+    public static boolean isStreamType(Class<?> type) {
+        return Iterator.class == type || Stream.class == type;
+    }
+}
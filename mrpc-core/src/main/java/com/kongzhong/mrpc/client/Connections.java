@@ -3,12 +3,14 @@ package com.kongzhong.mrpc.client;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.kongzhong.mrpc.common.thread.RpcThreadPool;
+import com.kongzhong.mrpc.config.ClientConfig;
 import com.kongzhong.mrpc.config.NettyConfig;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.exception.ConnectException;
 import com.kongzhong.mrpc.transport.netty.NettyClient;
+import com.kongzhong.mrpc.transport.netty.NettyTransport;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
 import com.kongzhong.mrpc.utils.NetUtils;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,8 +20,11 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -44,8 +49,8 @@ public class Connections {
     /**
      * 并行处理器个数
      */
-    private final static int            parallel       = Runtime.getRuntime().availableProcessors() + 1;
-    private              EventLoopGroup eventLoopGroup = new NioEventLoopGroup(parallel);
+    private final static int            parallel = Runtime.getRuntime().availableProcessors() + 1;
+    private volatile     EventLoopGroup eventLoopGroup;
 
     /**
      * 客户端 消息处理线程池
@@ -55,6 +60,11 @@ public class Connections {
     @Setter
     private NettyConfig nettyConfig = new NettyConfig();
 
+    /**
+     * 空闲连接回收任务是否已经启动
+     */
+    private AtomicBoolean shrinkStarted = new AtomicBoolean();
+
     private static final class ConnectionsHolder {
         private static final Connections INSTANCE = new Connections();
     }
@@ -63,6 +73,15 @@ public class Connections {
         return ConnectionsHolder.INSTANCE;
     }
 
+    /**
+     * 客户端消息处理线程池，执行不能占用I/O线程的任务
+     *
+     * @return 返回客户端消息处理线程池
+     */
+    public Executor getExecutor() {
+        return LISTENING_EXECUTOR_SERVICE;
+    }
+
     /**
      * 异步建立连接
      * <p>
@@ -183,7 +202,7 @@ public class Connections {
             return;
         }
         log.debug("Sync connect {}", address);
-        new NettyClient(nettyConfig, address).syncCreateChannel(eventLoopGroup);
+        new NettyClient(nettyConfig, address).syncCreateChannel(this.eventLoopGroup());
     }
 
     /**
@@ -193,7 +212,78 @@ public class Connections {
      */
     private void asyncConnect(String address) {
         log.debug("Async connect {}", address);
-        new NettyClient(nettyConfig, address).asyncCreateChannel(eventLoopGroup);
+        new NettyClient(nettyConfig, address).asyncCreateChannel(this.eventLoopGroup());
+    }
+
+    /**
+     * 节点连接池不足最少连接数时补齐
+     *
+     * @param node 服务节点
+     */
+    void fillConnections(ServiceNode node) {
+        int count = nettyConfig.getMinConnections() - node.getClientHandlers().size() - node.getConnecting().get();
+        for (int i = 0; i < count; i++) {
+            this.expand(node, nettyConfig.getMinConnections());
+        }
+    }
+
+    /**
+     * 最空闲的连接上未完成请求数达到阈值，或者所有连接都在接收http/1.1流式响应时为节点新增一个连接
+     *
+     * @param node          服务节点
+     * @param clientHandler 当前最空闲的连接，没有可选的连接时为null
+     */
+    void expandIfBusy(ServiceNode node, SimpleClientHandler clientHandler) {
+        if (null == clientHandler ? !node.hasStreaming() : clientHandler.getPending() < nettyConfig.getConnectionPending()) {
+            return;
+        }
+        this.expand(node, nettyConfig.getMaxConnections());
+    }
+
+    /**
+     * 异步为节点新增一个连接，连接池大小不超过limit
+     *
+     * @param node  服务节点
+     * @param limit 连接池上限
+     */
+    private void expand(ServiceNode node, int limit) {
+        int connecting = node.getConnecting().get();
+        if (node.getClientHandlers().size() + connecting >= limit
+                || !node.getConnecting().compareAndSet(connecting, connecting + 1)) {
+            return;
+        }
+        log.debug("Expand connection pool {}, size = {}", node.getServerAddress(), node.getClientHandlers().size());
+        new NettyClient(nettyConfig, node.getServerAddress(), true).asyncCreateChannel(this.eventLoopGroup());
+        this.startShrink();
+    }
+
+    /**
+     * 启动空闲连接回收任务
+     */
+    private void startShrink() {
+        if (!shrinkStarted.compareAndSet(false, true)) {
+            return;
+        }
+        long idleTime = nettyConfig.getConnectionIdleTime();
+        this.eventLoopGroup().scheduleAtFixedRate(() -> LocalServiceNodeTable.shrinkIdle(nettyConfig.getMinConnections(), idleTime),
+                idleTime, idleTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取客户端EventLoopGroup，第一次建立连接时根据netty配置创建
+     *
+     * @return 返回epoll或nio的EventLoopGroup
+     */
+    private EventLoopGroup eventLoopGroup() {
+        if (null == eventLoopGroup) {
+            synchronized (this) {
+                if (null == eventLoopGroup) {
+                    int nThreads = nettyConfig.getWorkerThreads() > 0 ? nettyConfig.getWorkerThreads() : parallel;
+                    eventLoopGroup = NettyTransport.newEventLoopGroup(nThreads, nettyConfig);
+                }
+            }
+        }
+        return eventLoopGroup;
     }
 
     /**
@@ -213,16 +303,33 @@ public class Connections {
      * @param serviceName 服务全名称
      * @return 返回查询到的客户端列表
      */
-    public List<HttpClientHandler> getHandlers(String serviceName) throws Exception {
-        return LocalServiceNodeTable.getAliveNodes(serviceName);
+    public List<SimpleClientHandler> getHandlers(String serviceName) throws Exception {
+        List<SimpleClientHandler> handlers = LocalServiceNodeTable.getAliveNodes(serviceName);
+        // 节点在线但连接都被流式响应占用，按连接异常处理，失效切换在新连接建立后重试
+        if (handlers.isEmpty() && LocalServiceNodeTable.hasStreaming(serviceName)) {
+            throw new ConnectException("All connections of service [" + serviceName + "] are busy with streams.");
+        }
+        return handlers;
     }
 
     /**
-     * 客户端移除一个失效的连接
+     * 客户端移除一个失效的连接，节点连接池为空时标记节点挂掉，
+     * 否则间隔重连时间后把连接池补齐到最少连接数
      *
-     * @param address 服务地址
+     * @param clientHandler 失效的连接
      */
-    public void inActive(String address) {
+    public void inActive(SimpleClientHandler clientHandler) {
+        String address = clientHandler.getNettyClient().getAddress();
+        if (!LocalServiceNodeTable.removeHandler(clientHandler)) {
+            log.debug("Remove channel {} from node [{}]", clientHandler.getChannel(), address);
+            try {
+                this.eventLoopGroup().schedule(() -> LocalServiceNodeTable.fillConnections(address),
+                        ClientConfig.me().getRetryInterval(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.debug("Client event loop is shutdown, skip refill [{}]", address);
+            }
+            return;
+        }
         // 添加挂掉的节点
         LocalServiceNodeTable.setNodeDead(address);
         log.info("Set node [{}] dead", address);
@@ -231,8 +338,11 @@ public class Connections {
 
     public void shutdown() {
         LocalServiceNodeTable.shutdown();
-        eventLoopGroup.shutdownGracefully();
+        if (null != eventLoopGroup) {
+            eventLoopGroup.shutdownGracefully();
+        }
         LISTENING_EXECUTOR_SERVICE.shutdown();
+        TimeoutManager.me().shutdown();
     }
 
 }
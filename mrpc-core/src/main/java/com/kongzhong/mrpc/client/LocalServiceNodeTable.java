@@ -4,7 +4,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.kongzhong.mrpc.Const;
 import com.kongzhong.mrpc.enums.NodeStatusEnum;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
 import com.kongzhong.mrpc.utils.CollectionUtils;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -33,22 +33,75 @@ public class LocalServiceNodeTable {
      */
     public static final Map<String, Set<String>> SERVICE_MAPPINGS = Maps.newConcurrentMap();
 
-    static List<HttpClientHandler> getAliveNodes(String serviceName) {
+    static List<SimpleClientHandler> getAliveNodes(String serviceName) {
         Set<String> addresses = LocalServiceNodeTable.SERVICE_MAPPINGS.get(serviceName);
         if (CollectionUtils.isEmpty(addresses)) {
             return new ArrayList<>();
         }
 
-        List<HttpClientHandler> clientHandlers = new ArrayList<>();
+        List<SimpleClientHandler> clientHandlers = new ArrayList<>();
 
         addresses.forEach(address -> SERVICE_NODES.stream()
                 .filter(node -> address.equals(node.getServerAddress()) && node.getAliveState() == NodeStatusEnum.ONLINE)
                 .findFirst()
-                .ifPresent(node -> clientHandlers.add(node.getClientHandler())));
+                .map(LocalServiceNodeTable::selectHandler)
+                .ifPresent(clientHandlers::add));
 
         return clientHandlers;
     }
 
+    /**
+     * 选择节点连接池中最空闲的连接，连接繁忙或者都被流式响应占用时触发扩容
+     *
+     * @param node 服务节点
+     * @return 返回选中的连接，没有可选的连接时返回null
+     */
+    private static SimpleClientHandler selectHandler(ServiceNode node) {
+        SimpleClientHandler clientHandler = node.leastPendingHandler();
+        Connections.me().expandIfBusy(node, clientHandler);
+        return clientHandler;
+    }
+
+    /**
+     * 服务的在线节点中是否有正在接收http/1.1流式响应的连接
+     *
+     * @param serviceName 服务全名称
+     * @return 有时返回true
+     */
+    static boolean hasStreaming(String serviceName) {
+        Set<String> addresses = LocalServiceNodeTable.SERVICE_MAPPINGS.get(serviceName);
+        if (CollectionUtils.isEmpty(addresses)) {
+            return false;
+        }
+        return SERVICE_NODES.stream()
+                .filter(node -> addresses.contains(node.getServerAddress()) && node.getAliveState() == NodeStatusEnum.ONLINE)
+                .anyMatch(ServiceNode::hasStreaming);
+    }
+
+    /**
+     * 回收超过最少连接数的空闲连接
+     *
+     * @param minConnections 每个节点最少连接数
+     * @param idleTime       空闲时间，单位/毫秒
+     */
+    static void shrinkIdle(int minConnections, long idleTime) {
+        long now = System.currentTimeMillis();
+        SERVICE_NODES.forEach(node -> {
+            List<SimpleClientHandler> clientHandlers = node.getClientHandlers();
+            for (SimpleClientHandler clientHandler : clientHandlers) {
+                if (clientHandlers.size() <= minConnections) {
+                    break;
+                }
+                // 先移出连接池不再被选中，移出前已经选中它的请求完成后再关闭
+                if (clientHandler.getPending() == 0 && now - clientHandler.getLastActiveTime() > idleTime
+                        && clientHandlers.remove(clientHandler)) {
+                    log.debug("Retire idle channel {}", clientHandler.getChannel());
+                    clientHandler.retire();
+                }
+            }
+        });
+    }
+
     /**
      * 获取所有存活的服务列表
      *
@@ -131,7 +184,7 @@ public class LocalServiceNodeTable {
      */
     public static void setNodeDead(String serverAddress) {
         updateNode(serverAddress, (node) -> {
-            node.setClientHandler(null);
+            node.getClientHandlers().clear();
             node.setAliveState(NodeStatusEnum.OFFLINE);
         });
         SERVICE_MAPPINGS.values().stream()
@@ -145,14 +198,53 @@ public class LocalServiceNodeTable {
      *
      * @param clientHandler 客户端连接Handler
      */
-    public static void setNodeAlive(HttpClientHandler clientHandler) {
+    public static void setNodeAlive(SimpleClientHandler clientHandler) {
         String address = clientHandler.getNettyClient().getAddress();
         updateNode(address, (node) -> {
-            node.setClientHandler(clientHandler);
+            node.getClientHandlers().add(clientHandler);
             node.setAliveState(NodeStatusEnum.ONLINE);
+            Connections.me().fillConnections(node);
         });
     }
 
+    /**
+     * 在线节点的连接池不足最少连接数时补齐
+     *
+     * @param serverAddress 服务地址
+     */
+    static void fillConnections(String serverAddress) {
+        updateNode(serverAddress, node -> {
+            if (node.getAliveState() == NodeStatusEnum.ONLINE) {
+                Connections.me().fillConnections(node);
+            }
+        });
+    }
+
+    /**
+     * 连接池扩容的连接建立结束，无论成功失败
+     *
+     * @param serverAddress 服务地址
+     */
+    public static void pooledConnectFinished(String serverAddress) {
+        updateNode(serverAddress, node -> node.getConnecting().decrementAndGet());
+    }
+
+    /**
+     * 从节点连接池中移除一个连接
+     *
+     * @param clientHandler 客户端连接Handler
+     * @return 返回移除后该节点的连接池是否为空
+     */
+    static boolean removeHandler(SimpleClientHandler clientHandler) {
+        Optional<ServiceNode> serviceNode = findServiceNode(clientHandler.getNettyClient().getAddress());
+        if (!serviceNode.isPresent()) {
+            return true;
+        }
+        List<SimpleClientHandler> clientHandlers = serviceNode.get().getClientHandlers();
+        clientHandlers.remove(clientHandler);
+        return clientHandlers.isEmpty();
+    }
+
     /**
      * 更新节点状态为连接中
      *
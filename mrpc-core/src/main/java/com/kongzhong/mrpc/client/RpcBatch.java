@@ -0,0 +1,179 @@
+package com.kongzhong.mrpc.client;
+
+import com.kongzhong.mrpc.Const;
+import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 批量调用，发往同一个节点的调用合并为一次请求
+ * <p>
+ * <pre>
+ * List&lt;CompletableFuture&lt;Object&gt;&gt; results = RpcBatch.create()
+ *         .add(() -&gt; userService.getUser(1))
+ *         .add(() -&gt; orderService.count(1))
+ *         .execute();
+ * </pre>
+ * add中的调用只记录请求和负载均衡选中的节点，不会发出请求，代理方法返回类型的默认值；
+ * execute时按节点分组，http传输每个节点发送一个/rpc/batch请求，服务端并行执行后一次返回，tcp传输在同一个连接上逐个发送。
+ * <p>
+ * 每个调用的结果或异常放在各自的CompletableFuture中，超时也单独计算。批量调用不经过客户端拦截器，也不按高可用策略重试。
+ *
+ * @author biezhi
+ * 2017/5/8
+ */
+public class RpcBatch {
+
+    /**
+     * 当前线程正在记录的批量调用
+     */
+    private static final ThreadLocal<RpcBatch> RECORDING = new ThreadLocal<>();
+
+    private final List<Call> calls = new ArrayList<>();
+
+    /**
+     * 批量中的一个调用，在lambda中调用一次引用的方法
+     */
+    @FunctionalInterface
+    public interface Invocation {
+        void invoke() throws Throwable;
+    }
+
+    private static class Call {
+        private RpcRequest                request;
+        private SimpleClientHandler       clientHandler;
+        private CompletableFuture<Object> future = new CompletableFuture<>();
+    }
+
+    private RpcBatch() {
+    }
+
+    public static RpcBatch create() {
+        return new RpcBatch();
+    }
+
+    /**
+     * 添加一个调用
+     *
+     * @param invocation 调用一次引用的方法，只记录不发送
+     * @return 返回RpcBatch
+     * @throws RpcException lambda中没有调用或者调用了多次引用的方法时抛出
+     */
+    public RpcBatch add(Invocation invocation) {
+        int size = calls.size();
+        RECORDING.set(this);
+        try {
+            invocation.invoke();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RpcException("Batch record invoke error", t);
+        } finally {
+            RECORDING.remove();
+        }
+        if (calls.size() != size + 1) {
+            while (calls.size() > size) {
+                calls.remove(calls.size() - 1);
+            }
+            throw new RpcException("Batch call must invoke exactly one referer method.");
+        }
+        return this;
+    }
+
+    /**
+     * 当前线程是否在记录批量调用，为true时代理不发送请求，改为调用record
+     */
+    public static boolean isRecording() {
+        return null != RECORDING.get();
+    }
+
+    /**
+     * 记录代理方法的一次调用
+     *
+     * @param request  Rpc请求
+     * @param selector 按负载均衡和过载策略选择连接，没有可用节点时该调用失败
+     */
+    public static void record(RpcRequest request, Callable<SimpleClientHandler> selector) {
+        Call call = new Call();
+        call.request = request;
+        try {
+            call.clientHandler = selector.call();
+            if (null == call.clientHandler) {
+                call.future.completeExceptionally(new RpcException("Service [" + request.getClassName() + "] not found."));
+            }
+        } catch (Exception e) {
+            call.future.completeExceptionally(e);
+        }
+        RECORDING.get().calls.add(call);
+    }
+
+    /**
+     * 按节点分组发送，等待所有调用完成
+     *
+     * @return 返回每个调用的结果，顺序与add一致，调用失败的结果以异常完成
+     */
+    public List<CompletableFuture<Object>> execute() {
+        List<CompletableFuture<Object>> futures = this.executeAsync();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).exceptionally(t -> null).join();
+        return futures;
+    }
+
+    /**
+     * 按节点分组发送，不等待响应
+     *
+     * @return 返回每个调用的结果，顺序与add一致
+     */
+    public List<CompletableFuture<Object>> executeAsync() {
+        Map<SimpleClientHandler, List<Call>> groups = new LinkedHashMap<>();
+        for (Call call : calls) {
+            if (null != call.clientHandler) {
+                groups.computeIfAbsent(call.clientHandler, clientHandler -> new ArrayList<>()).add(call);
+            }
+        }
+        groups.forEach(this::send);
+
+        List<CompletableFuture<Object>> futures = new ArrayList<>(calls.size());
+        calls.forEach(call -> futures.add(call.future));
+        return futures;
+    }
+
+    private void send(SimpleClientHandler clientHandler, List<Call> group) {
+        String[]         address     = clientHandler.getNettyClient().getAddress().split(":");
+        List<RpcRequest> rpcRequests = new ArrayList<>(group.size());
+        for (Call call : group) {
+            call.request.getContext().put(Const.SERVER_HOST, address[0]);
+            call.request.getContext().put(Const.SERVER_PORT, address[1]);
+            rpcRequests.add(call.request);
+            clientHandler.addHit();
+        }
+
+        List<RpcCallbackFuture> rpcCallbackFutures;
+        try {
+            rpcCallbackFutures = clientHandler.asyncSendBatch(rpcRequests);
+        } catch (RuntimeException e) {
+            group.forEach(call -> call.future.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            RpcCallbackFuture rpcCallbackFuture = rpcCallbackFutures.get(i);
+            CompletableFuture<Object> future = group.get(i).future;
+            rpcCallbackFuture.toCompletableFuture().whenComplete((result, t) -> {
+                // 超时未响应的请求也要从连接上移除，保证未完成请求数准确
+                clientHandler.removeCallbackFuture(rpcCallbackFuture);
+                if (null == t) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(t);
+                }
+            });
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.kongzhong.mrpc.client;
 
 import com.kongzhong.mrpc.Const;
+import com.kongzhong.mrpc.config.ClientConfig;
+import com.kongzhong.mrpc.exception.SerializeException;
 import com.kongzhong.mrpc.exception.SystemException;
 import com.kongzhong.mrpc.exception.TimeoutException;
 import com.kongzhong.mrpc.model.RpcContext;
@@ -9,11 +11,15 @@ import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
 import com.kongzhong.mrpc.utils.ReflectUtils;
 import com.kongzhong.mrpc.utils.StringUtils;
+import io.netty.util.Timeout;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * RPC客户端回调
@@ -24,63 +30,246 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class RpcCallbackFuture {
 
+    /**
+     * 调用线程在超时时间之后再等待的时间，单位/毫秒，时间轮没有按时触发时由调用线程自己超时
+     */
+    private static final long TIMEOUT_MARGIN = 1000;
+
+    @Getter
     private RpcRequest     request;
+    @Getter
+    private long           requestId;
     private RpcResponse    response;
     private CountDownLatch latch;
     private long           beginTime;
 
-    public RpcCallbackFuture(RpcRequest request) {
+    /**
+     * 异步调用时的结果，在收到响应或超时时完成
+     */
+    private CompletableFuture<Object> completableFuture;
+
+    /**
+     * TimeoutManager中的超时任务，收到响应时取消
+     */
+    private volatile Timeout timeout;
+    private volatile boolean timedOut;
+
+    /**
+     * 连接断开等原因导致的失败
+     */
+    private volatile Throwable error;
+
+    /**
+     * 是否已经从连接的等待表中移除，响应、超时、失败和取消只有一个能够移除并完成请求
+     */
+    private final AtomicBoolean removed = new AtomicBoolean();
+
+    public RpcCallbackFuture(RpcRequest request, long requestId) {
         this.request = request;
+        this.requestId = requestId;
         this.latch = new CountDownLatch(1);
         this.beginTime = System.currentTimeMillis();
     }
 
-    public Object get(int milliseconds) throws Throwable {
-        if (latch.await(milliseconds, TimeUnit.MILLISECONDS)) {
+    /**
+     * 标记为已经移除，只有第一次调用返回true
+     *
+     * @return 由本次调用移除时返回true
+     */
+    public boolean markRemoved() {
+        return removed.compareAndSet(false, true);
+    }
+
+    public boolean isRemoved() {
+        return removed.get();
+    }
+
+    /**
+     * 登记TimeoutManager中的超时任务，请求已经完成时直接取消
+     *
+     * @param timeout 超时任务
+     */
+    public void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+        // done、fail先于登记执行时没有取消到超时任务
+        if (latch.getCount() == 0) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * 等待响应，截止时间由TimeoutManager管理，超时时抛出TimeoutException；
+     * 时间轮停止等原因没有按时超时的，调用线程等待超时时间加上TIMEOUT_MARGIN后自己抛出TimeoutException
+     *
+     * @return 返回调用结果
+     * @throws Throwable 服务端异常或超时时抛出
+     */
+    public Object get() throws Throwable {
+        long waitTimeout = request.getWaitTimeout() > 0 ? request.getWaitTimeout() : ClientConfig.me().getWaitTimeout();
+        if (!latch.await(waitTimeout + TIMEOUT_MARGIN, TimeUnit.MILLISECONDS)) {
+            throw this.timeoutException();
+        }
+        if (null != error) {
+            throw error;
+        }
+        if (!timedOut) {
             if (null != response) {
-                Map<String, String> context = response.getContext();
-                // TODO: 兼容期，过后删除
+                Map<String, String> context = this.responseContext();
                 if (null != context) {
-                    context.put(Const.SERVER_HOST, this.request.getContext().get(Const.SERVER_HOST));
-                    context.put(Const.SERVER_PORT, this.request.getContext().get(Const.SERVER_PORT));
                     RpcContext.setAttachments(context);
                 }
-                if (response.getSuccess()) {
-                    return response.getResult();
-                } else {
-                    Object object = null;
-                    try {
-                        Class<?> expType = ReflectUtils.from(response.getReturnType());
-                        object = JacksonSerialize.parseObject(response.getException(), expType);
-                    } catch (ClassNotFoundException e) {
-                        if (StringUtils.isNotEmpty(context.get(Const.SERVER_EXCEPTION))) {
-                            object = JacksonSerialize.parseObject(response.getException(), SystemException.class);
-                        } else {
-                            object = e;
-                        }
-                    }
-                    if (object instanceof Exception) {
-                        throw (Exception) object;
-                    }
-                    if (object instanceof Throwable) {
-                        throw (Throwable) object;
-                    }
-                }
+                return this.result();
             }
         } else {
-            long waitTime = System.currentTimeMillis() - beginTime;
-            log.warn("{}.{}() timeout", request.getClassName(), request.getMethodName());
-            log.warn("RequestId: {}", request.getRequestId());
-            log.warn("Invoke time: {}ms", waitTime);
-            String msg = String.format("[Request %s.%s()] timeout", request.getClassName(), request.getMethodName());
-            throw new TimeoutException(msg);
+            throw this.timeoutException();
         }
         return null;
     }
 
+    /**
+     * 转换为异步结果，收到响应时在响应处理线程上完成
+     *
+     * @return 返回调用结果的CompletableFuture
+     */
+    public synchronized CompletableFuture<Object> toCompletableFuture() {
+        if (null == completableFuture) {
+            completableFuture = new CompletableFuture<>();
+            if (null != error) {
+                completableFuture.completeExceptionally(error);
+            } else if (timedOut) {
+                completableFuture.completeExceptionally(this.timeoutException());
+            } else if (latch.getCount() == 0) {
+                this.complete(completableFuture);
+            }
+        }
+        return completableFuture;
+    }
+
+    /**
+     * 请求超时，唤醒等待的调用线程并以TimeoutException完成异步结果
+     */
+    public void timeout() {
+        timedOut = true;
+        latch.countDown();
+
+        CompletableFuture<Object> future;
+        synchronized (this) {
+            future = completableFuture;
+        }
+        if (null != future) {
+            future.completeExceptionally(this.timeoutException());
+        }
+    }
+
+    /**
+     * 请求失败，唤醒等待的调用线程并以该异常完成异步结果
+     *
+     * @param cause 失败原因
+     */
+    public void fail(Throwable cause) {
+        Timeout timeout = this.timeout;
+        if (null != timeout) {
+            timeout.cancel();
+        }
+        error = cause;
+        latch.countDown();
+
+        CompletableFuture<Object> future;
+        synchronized (this) {
+            future = completableFuture;
+        }
+        if (null != future) {
+            future.completeExceptionally(cause);
+        }
+    }
+
     public void done(RpcResponse response) {
+        Timeout timeout = this.timeout;
+        if (null != timeout) {
+            timeout.cancel();
+        }
         this.response = response;
         latch.countDown();
+
+        CompletableFuture<Object> future;
+        synchronized (this) {
+            future = completableFuture;
+        }
+        if (null != future) {
+            this.complete(future);
+        }
+    }
+
+    private void complete(CompletableFuture<Object> future) {
+        if (null == response) {
+            future.complete(null);
+            return;
+        }
+        try {
+            this.responseContext();
+            future.complete(this.result());
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+
+    private Map<String, String> responseContext() {
+        Map<String, String> context = response.getContext();
+        // TODO: 兼容期，过后删除
+        if (null != context) {
+            context.put(Const.SERVER_HOST, this.request.getContext().get(Const.SERVER_HOST));
+            context.put(Const.SERVER_PORT, this.request.getContext().get(Const.SERVER_PORT));
+        }
+        return context;
+    }
+
+    /**
+     * 返回调用结果，服务端返回异常时抛出该异常
+     */
+    private Object result() throws Throwable {
+        if (response.getSuccess()) {
+            return response.getResult();
+        }
+        Throwable exception = exception(response);
+        if (null != exception) {
+            throw exception;
+        }
+        return null;
+    }
+
+    /**
+     * 解析失败响应中的服务端异常
+     *
+     * @param response 失败的响应
+     * @return 返回服务端异常，异常信息不是异常对象时返回null
+     */
+    static Throwable exception(RpcResponse response) {
+        Map<String, String> context = response.getContext();
+        Object              object;
+        try {
+            try {
+                Class<?> expType = ReflectUtils.from(response.getReturnType());
+                object = JacksonSerialize.parseObject(response.getException(), expType);
+            } catch (ClassNotFoundException e) {
+                if (null != context && StringUtils.isNotEmpty(context.get(Const.SERVER_EXCEPTION))) {
+                    object = JacksonSerialize.parseObject(response.getException(), SystemException.class);
+                } else {
+                    object = e;
+                }
+            }
+        } catch (SerializeException e) {
+            object = e;
+        }
+        return object instanceof Throwable ? (Throwable) object : null;
+    }
+
+    private TimeoutException timeoutException() {
+        long waitTime = System.currentTimeMillis() - beginTime;
+        log.warn("{}.{}() timeout", request.getClassName(), request.getMethodName());
+        log.warn("RequestId: {}", request.getRequestId());
+        log.warn("Invoke time: {}ms", waitTime);
+        String msg = String.format("[Request %s.%s()] timeout", request.getClassName(), request.getMethodName());
+        return new TimeoutException(msg);
     }
 
 }
\ No newline at end of file
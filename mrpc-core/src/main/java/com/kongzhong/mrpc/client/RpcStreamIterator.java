@@ -0,0 +1,196 @@
+package com.kongzhong.mrpc.client;
+
+import com.kongzhong.mrpc.config.ClientConfig;
+import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.exception.TimeoutException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import lombok.Getter;
+
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式调用的结果
+ * <p>
+ * 返回Iterator或Stream的方法在收到响应头时就返回该迭代器，元素在读取时才等待到达。
+ * h2c连接上收到还没有读取的元素超过上限时暂停读取该流，读取到下限以下后恢复，客户端内存不随元素个数增长；
+ * http/1.1连接由多个调用共享，不暂停读取，元素全部缓存在客户端，元素很多的流应当使用h2c。
+ * 等待下一个元素超过调用的超时时间时抛出TimeoutException，服务端异常在读取到结束帧时抛出。
+ * 没有读完时需要调用close：h2c连接上关闭该流，服务端随之停止写出；http/1.1连接上丢弃剩余的元素。
+ *
+ * @param <T> 元素类型
+ * @author biezhi
+ * 2017/5/9
+ */
+public class RpcStreamIterator<T> implements Iterator<T>, AutoCloseable {
+
+    /**
+     * 未读取的帧达到该数量时暂停读取h2c的流
+     */
+    private static final int HIGH_WATER_MARK = 1024;
+
+    /**
+     * 未读取的帧降到该数量时恢复读取h2c的流
+     */
+    private static final int LOW_WATER_MARK = 256;
+
+    private final RpcRequest request;
+
+    /**
+     * 元素的泛型类型，帧中的result按此类型解析
+     */
+    @Getter
+    private final Type elementType;
+
+    /**
+     * 等待下一个元素的最长时间，单位/毫秒
+     */
+    private final int waitTimeout;
+
+    /**
+     * 接收该流的Channel，h2c为流的子Channel
+     */
+    private final Channel channel;
+
+    /**
+     * 是否可以暂停读取，只有h2c的流独占Channel
+     */
+    private final boolean pausable;
+
+    /**
+     * 收到的数据帧、结束帧，或者连接断开等原因的异常
+     */
+    private final BlockingQueue<Object> frames = new LinkedBlockingQueue<>();
+
+    private T       next;
+    private boolean fetched;
+    private boolean finished;
+
+    @Getter
+    private volatile boolean closed;
+
+    public RpcStreamIterator(RpcRequest request, Channel channel) {
+        this.request = request;
+        this.elementType = request.getGenericReturnType();
+        this.waitTimeout = request.getWaitTimeout() > 0 ? request.getWaitTimeout() : ClientConfig.me().getWaitTimeout();
+        this.channel = channel;
+        this.pausable = channel instanceof Http2StreamChannel;
+    }
+
+    /**
+     * 收到一帧，在I/O线程上调用
+     *
+     * @param frame 数据帧的success为null，结束帧的success不为null
+     */
+    public void onFrame(RpcResponse frame) {
+        if (closed) {
+            return;
+        }
+        frames.add(frame);
+        if (pausable && frames.size() >= HIGH_WATER_MARK && channel.config().isAutoRead()) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    /**
+     * 流没有收到结束帧就中断，在I/O线程上调用
+     *
+     * @param cause 中断原因
+     */
+    public void onError(Throwable cause) {
+        if (!closed) {
+            frames.add(cause);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (fetched) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        Object frame;
+        try {
+            frame = frames.poll(waitTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("Interrupted while waiting stream [" + request.getRequestId() + "].", e);
+        }
+        if (pausable && frames.size() <= LOW_WATER_MARK && !channel.config().isAutoRead()) {
+            channel.config().setAutoRead(true);
+        }
+
+        if (null == frame) {
+            this.close();
+            throw new TimeoutException(String.format("[Request %s.%s()] stream timeout", request.getClassName(), request.getMethodName()));
+        }
+        if (frame instanceof Throwable) {
+            finished = true;
+            throw toRuntimeException((Throwable) frame);
+        }
+
+        RpcResponse response = (RpcResponse) frame;
+        if (null == response.getSuccess()) {
+            next = this.cast(response.getResult());
+            fetched = true;
+            return true;
+        }
+        finished = true;
+        if (response.getSuccess()) {
+            return false;
+        }
+        Throwable exception = RpcCallbackFuture.exception(response);
+        throw null != exception ? toRuntimeException(exception) : new RpcException("Stream [" + request.getRequestId() + "] failed.");
+    }
+
+    @Override
+    public T next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T element = next;
+        next = null;
+        fetched = false;
+        return element;
+    }
+
+    /**
+     * 停止读取，丢弃未读取的元素
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        frames.clear();
+        if (!finished) {
+            finished = true;
+            if (pausable) {
+                channel.close();
+            }
+        }
+        if (pausable && !channel.config().isAutoRead()) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object element) {
+        return (T) element;
+    }
+
+    private static RuntimeException toRuntimeException(Throwable t) {
+        return t instanceof RuntimeException ? (RuntimeException) t : new RpcException(t);
+    }
+
+}
@@ -2,10 +2,14 @@ package com.kongzhong.mrpc.client;
 
 import com.google.common.collect.Sets;
 import com.kongzhong.mrpc.enums.NodeStatusEnum;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
 import lombok.*;
 
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 服务节点
@@ -23,22 +27,54 @@ public class ServiceNode {
     /**
      * 服务地址，存储在注册中心都地址
      */
-    private String            serverAddress;
+    private String                    serverAddress;
     /**
-     * 客户端连接
+     * 客户端连接池
      */
-    private HttpClientHandler clientHandler;
+    @Builder.Default
+    private List<SimpleClientHandler> clientHandlers = new CopyOnWriteArrayList<>();
+    /**
+     * 连接池正在建立中的连接数
+     */
+    @Builder.Default
+    private AtomicInteger             connecting     = new AtomicInteger();
     /**
      * 节点存活状态
      */
-    private NodeStatusEnum    aliveState;
+    private NodeStatusEnum            aliveState;
     /**
      * 是否开始尝试连接
      */
-    private boolean           connected;
+    private boolean                   connected;
     /**
      * 该节点下都服务列表
      */
-    private Set<String>       services = Sets.newHashSet();
+    @Builder.Default
+    private Set<String>               services       = Sets.newHashSet();
+
+    /**
+     * 从连接池中选择未完成请求最少的连接，正在接收http/1.1流式响应的连接被流独占，不选中
+     *
+     * @return 返回最空闲的连接，没有可选的连接时返回null
+     */
+    public SimpleClientHandler leastPendingHandler() {
+        return clientHandlers.stream()
+                .filter(handler -> isActive(handler) && !handler.isStreaming())
+                .min(Comparator.comparingInt(SimpleClientHandler::getPending))
+                .orElse(null);
+    }
+
+    /**
+     * 连接池中是否有正在接收http/1.1流式响应的连接
+     *
+     * @return 有时返回true
+     */
+    public boolean hasStreaming() {
+        return clientHandlers.stream().anyMatch(handler -> isActive(handler) && handler.isStreaming());
+    }
+
+    private static boolean isActive(SimpleClientHandler handler) {
+        return null != handler.getChannel() && handler.getChannel().isActive();
+    }
 
 }
@@ -11,6 +11,8 @@ import com.kongzhong.mrpc.enums.HaStrategyEnum;
 import com.kongzhong.mrpc.enums.LbStrategyEnum;
 import com.kongzhong.mrpc.enums.NodeStatusEnum;
 import com.kongzhong.mrpc.enums.RegistryEnum;
+import com.kongzhong.mrpc.enums.TransportEnum;
+import com.kongzhong.mrpc.exception.InitializeException;
 import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.exception.SystemException;
 import com.kongzhong.mrpc.interceptor.RpcClientInterceptor;
@@ -21,7 +23,7 @@ import com.kongzhong.mrpc.registry.DefaultDiscovery;
 import com.kongzhong.mrpc.registry.ServiceDiscovery;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
 import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
 import com.kongzhong.mrpc.utils.HttpRequest;
 import com.kongzhong.mrpc.utils.NetUtils;
 import com.kongzhong.mrpc.utils.ReflectUtils;
@@ -62,6 +64,12 @@ public abstract class SimpleRpcClient {
     @Setter
     protected String serialize;
 
+    /**
+     * 传输协议，http/tcp，默认http
+     */
+    @Setter
+    protected String transport;
+
     /**
      * 客户端是否已经初始化
      */
@@ -202,6 +210,9 @@ public abstract class SimpleRpcClient {
         if (null == haStrategy) {
             haStrategy = HaStrategyEnum.FAILOVER.name();
         }
+        if (StringUtils.isEmpty(transport)) {
+            transport = TransportEnum.HTTP.name();
+        }
 
         RpcSerialize rpcSerialize = null;
         if ("kyro".equalsIgnoreCase(serialize)) {
@@ -213,11 +224,17 @@ public abstract class SimpleRpcClient {
 
         LbStrategyEnum lbStrategyEnum = LbStrategyEnum.valueOf(this.lbStrategy.toUpperCase());
         HaStrategyEnum haStrategyEnum = HaStrategyEnum.valueOf(this.haStrategy.toUpperCase());
+        TransportEnum  transportEnum  = TransportEnum.valueOf(this.transport.toUpperCase());
+
+        if (transportEnum == TransportEnum.TCP && null == rpcSerialize) {
+            throw new InitializeException("RPC client serialize is null.");
+        }
 
         ClientConfig.me().setAppId(appId);
         ClientConfig.me().setRpcSerialize(rpcSerialize);
         ClientConfig.me().setHaStrategy(haStrategyEnum);
         ClientConfig.me().setLbStrategy(lbStrategyEnum);
+        ClientConfig.me().setTransport(transportEnum);
         ClientConfig.me().setSkipBind(skipBind);
         ClientConfig.me().setRetryInterval(retryInterval);
         ClientConfig.me().setRetryCount(retryCount);
@@ -425,7 +442,7 @@ public abstract class SimpleRpcClient {
                 return;
             }
             log.info("UnRegistering mrpc client on shutdown");
-            HttpClientHandler.shutdown();
+            SimpleClientHandler.shutdown();
             Connections.me().shutdown();
         } finally {
             isClosed = true;
@@ -0,0 +1,89 @@
+package com.kongzhong.mrpc.client;
+
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端请求超时管理
+ * <p>
+ * 所有请求的截止时间由一个HashedWheelTimer统一管理，到期时从等待表中移除请求并以TimeoutException完成，
+ * 迟到或者丢失的响应不会在连接的等待表中残留，同步和异步调用使用同一套超时。
+ *
+ * @author biezhi
+ * 2017/4/29
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class TimeoutManager {
+
+    /**
+     * 时间轮每一格的时长，超时的精度
+     */
+    private static final long TICK_DURATION = 10;
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(new DefaultThreadFactory("mrpc-timeout", true),
+            TICK_DURATION, TimeUnit.MILLISECONDS);
+
+    /**
+     * 超时的请求总数
+     */
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * 登记请求的截止时间
+     *
+     * @param clientHandler     发送请求的连接
+     * @param rpcCallbackFuture 请求回调
+     * @param milliseconds      超时时长
+     * @return 返回定时任务，收到响应时取消
+     */
+    public Timeout newTimeout(SimpleClientHandler clientHandler, RpcCallbackFuture rpcCallbackFuture, long milliseconds) {
+        return timer.newTimeout(timeout -> {
+            // 已经被响应或连接错误移除的请求不算超时
+            if (clientHandler.removeCallbackFuture(rpcCallbackFuture)) {
+                timeouts.increment();
+                clientHandler.addTimeout();
+                rpcCallbackFuture.timeout();
+            }
+        }, milliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 延迟执行任务，任务在时间轮线程上执行，耗时的任务需要自己交给其他线程池
+     *
+     * @param task         任务
+     * @param milliseconds 延迟时长
+     * @throws IllegalStateException 时间轮已经停止时抛出
+     */
+    public void schedule(Runnable task, long milliseconds) {
+        timer.newTimeout(timeout -> task.run(), milliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 超时的请求总数
+     *
+     * @return 返回超时的请求总数
+     */
+    public long getTimeouts() {
+        return timeouts.longValue();
+    }
+
+    public void shutdown() {
+        timer.stop().forEach(Timeout::cancel);
+    }
+
+    private static final class TimeoutManagerHolder {
+        private static final TimeoutManager INSTANCE = new TimeoutManager();
+    }
+
+    public static TimeoutManager me() {
+        return TimeoutManagerHolder.INSTANCE;
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.kongzhong.mrpc.client.cluster;
 
 import com.kongzhong.mrpc.client.invoke.RpcInvoker;
+import com.kongzhong.mrpc.enums.OverloadPolicyEnum;
 import com.kongzhong.mrpc.model.RpcRequest;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * HA策略
@@ -15,10 +18,55 @@ public interface HaStrategy {
 
     Object call(RpcRequest request, LoadBalance loadBalance) throws Throwable;
 
+    /**
+     * 异步调用，默认不重试
+     *
+     * @param request     Rpc请求
+     * @param loadBalance 负载均衡器
+     * @return 返回调用结果的CompletableFuture，调用失败时以异常完成
+     */
+    default CompletableFuture<Object> callAsync(RpcRequest request, LoadBalance loadBalance) {
+        try {
+            return invokeAsync(request, loadBalance);
+        } catch (Throwable t) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            return future;
+        }
+    }
+
+    /**
+     * 选择发送请求的连接，过载策略为REROUTE时跳过已经过载的节点
+     *
+     * @param request     Rpc请求
+     * @param loadBalance 负载均衡器
+     * @return 返回选中的连接，所有节点都过载时返回最后一次选中的连接，由连接按快速失败处理
+     * @throws Exception 没有可用节点时抛出
+     */
+    default SimpleClientHandler select(RpcRequest request, LoadBalance loadBalance) throws Exception {
+        SimpleClientHandler clientHandler = loadBalance.next(request.getAppId(), request.getClassName());
+        if (null == clientHandler || clientHandler.getOverloadPolicy() != OverloadPolicyEnum.REROUTE) {
+            return clientHandler;
+        }
+        int nodes = loadBalance.handlers(request.getAppId(), request.getClassName()).size();
+        for (int i = 1; i < nodes && clientHandler.isOverloaded(); i++) {
+            clientHandler.addRerouted();
+            clientHandler = loadBalance.next(request.getAppId(), request.getClassName());
+        }
+        return clientHandler;
+    }
+
     default Object invoke(RpcRequest request, LoadBalance loadBalance) throws Throwable {
-        HttpClientHandler clientHandler = loadBalance.next(request.getAppId(), request.getClassName());
+        SimpleClientHandler clientHandler = select(request, loadBalance);
         clientHandler.addHit();
         RpcInvoker rpcInvoker = new RpcInvoker(request, clientHandler);
         return rpcInvoker.invoke();
     }
+
+    default CompletableFuture<Object> invokeAsync(RpcRequest request, LoadBalance loadBalance) throws Throwable {
+        SimpleClientHandler clientHandler = select(request, loadBalance);
+        clientHandler.addHit();
+        RpcInvoker rpcInvoker = new RpcInvoker(request, clientHandler);
+        return rpcInvoker.invokeAsync();
+    }
 }
\ No newline at end of file
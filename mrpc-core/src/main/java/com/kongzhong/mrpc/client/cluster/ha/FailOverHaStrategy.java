@@ -1,5 +1,7 @@
 package com.kongzhong.mrpc.client.cluster.ha;
 
+import com.kongzhong.mrpc.client.Connections;
+import com.kongzhong.mrpc.client.TimeoutManager;
 import com.kongzhong.mrpc.client.cluster.HaStrategy;
 import com.kongzhong.mrpc.client.cluster.LoadBalance;
 import com.kongzhong.mrpc.config.ClientConfig;
@@ -8,6 +10,9 @@ import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.model.RpcRequest;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -19,6 +24,11 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class FailOverHaStrategy implements HaStrategy {
 
+    /**
+     * 连接异常后重试的间隔，单位/毫秒
+     */
+    private static final long RETRY_INTERVAL = 100;
+
     @Override
     public Object call(RpcRequest request, LoadBalance loadBalance) throws Throwable {
         int rc    = ClientConfig.me().getFailOverRetry();
@@ -36,7 +46,7 @@ public class FailOverHaStrategy implements HaStrategy {
                         log.error("Connection error", e);
                         throw e;
                     }
-                    TimeUnit.MILLISECONDS.sleep(100);
+                    TimeUnit.MILLISECONDS.sleep(RETRY_INTERVAL);
                     log.debug("Failover retry [{}]", i + 1);
                 } else {
                     throw e;
@@ -46,4 +56,62 @@ public class FailOverHaStrategy implements HaStrategy {
         throw new RpcException("Failover processor should not come here!");
     }
 
+    @Override
+    public CompletableFuture<Object> callAsync(RpcRequest request, LoadBalance loadBalance) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        try {
+            int rc    = ClientConfig.me().getFailOverRetry();
+            int nodes = loadBalance.handlers(request.getAppId(), request.getClassName()).size();
+            if (nodes == 1 || rc < 0) {
+                rc = 0;
+            }
+            this.attempt(request, loadBalance, 0, rc, future);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 异步调用的一次尝试，连接异常时与同步调用一样间隔一段时间后在客户端线程池中发起下一次，
+     * 结果回调可能运行在I/O线程上，不在回调中直接重试
+     */
+    private void attempt(RpcRequest request, LoadBalance loadBalance, int i, int rc, CompletableFuture<Object> future) {
+        CompletableFuture<Object> attempt = HaStrategy.super.callAsync(request, loadBalance);
+        attempt.whenComplete((result, t) -> {
+            if (null == t) {
+                future.complete(result);
+                return;
+            }
+            Throwable cause = t instanceof CompletionException && null != t.getCause() ? t.getCause() : t;
+            if (cause instanceof ConnectException && i < rc) {
+                log.debug("Failover retry [{}]", i + 1);
+                Runnable retry = () -> {
+                    try {
+                        this.attempt(request, loadBalance, i + 1, rc, future);
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                };
+                try {
+                    TimeoutManager.me().schedule(() -> {
+                        try {
+                            Connections.me().getExecutor().execute(retry);
+                        } catch (RejectedExecutionException e) {
+                            future.completeExceptionally(cause);
+                        }
+                    }, RETRY_INTERVAL);
+                } catch (IllegalStateException e) {
+                    // 客户端已经关闭
+                    future.completeExceptionally(cause);
+                }
+            } else {
+                if (cause instanceof ConnectException) {
+                    log.error("Connection error", cause);
+                }
+                future.completeExceptionally(cause);
+            }
+        });
+    }
+
 }
\ No newline at end of file
@@ -1,7 +1,7 @@
 package com.kongzhong.mrpc.client.cluster.loadblance;
 
 import com.kongzhong.mrpc.client.cluster.LoadBalance;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
@@ -17,12 +17,12 @@ import java.util.Random;
 public class WeightRandomStrategy implements LoadBalance {
 
     @Override
-    public HttpClientHandler next(String appId, String serviceName) throws Exception {
-        List<HttpClientHandler> handlers = handlers(appId, serviceName);
+    public SimpleClientHandler next(String appId, String serviceName) throws Exception {
+        List<SimpleClientHandler> handlers = handlers(appId, serviceName);
         if (handlers.size() == 1) {
             return handlers.get(0);
         }
-        List<HttpClientHandler> serverList = new ArrayList<>();
+        List<SimpleClientHandler> serverList = new ArrayList<>();
         handlers.forEach(handler -> {
             int weight = handler.getNettyClient().getWeight();
             for (int i = 0; i < weight; i++) {
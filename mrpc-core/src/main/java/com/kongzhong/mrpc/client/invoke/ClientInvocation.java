@@ -24,16 +24,24 @@ public class ClientInvocation implements Invocation {
 
     private RpcInvoker rpcInvoker;
 
+    //异步调用时next()返回CompletableFuture
+    private boolean async;
+
     public ClientInvocation(RpcInvoker rpcInvoker, List<RpcClientInterceptor> interceptors) {
+        this(rpcInvoker, interceptors, false);
+    }
+
+    public ClientInvocation(RpcInvoker rpcInvoker, List<RpcClientInterceptor> interceptors, boolean async) {
         this.rpcInvoker = rpcInvoker;
         this.interceptors = interceptors;
+        this.async = async;
     }
 
     @Override
     public Object next() throws Throwable {
         if (this.currentIndex == this.interceptors.size() - 1) {
             try {
-                return rpcInvoker.invoke();
+                return async ? rpcInvoker.invokeAsync() : rpcInvoker.invoke();
             } catch (Exception e) {
                 if (e instanceof InvocationTargetException) {
                     throw e.getCause();
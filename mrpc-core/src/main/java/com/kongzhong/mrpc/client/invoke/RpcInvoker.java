@@ -2,12 +2,16 @@ package com.kongzhong.mrpc.client.invoke;
 
 import com.kongzhong.mrpc.Const;
 import com.kongzhong.mrpc.client.RpcCallbackFuture;
+import com.kongzhong.mrpc.client.cluster.HaStrategy;
+import com.kongzhong.mrpc.client.cluster.LoadBalance;
 import com.kongzhong.mrpc.exception.ConnectException;
 import com.kongzhong.mrpc.model.RpcContext;
 import com.kongzhong.mrpc.model.RpcRequest;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
 import lombok.Getter;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Rpc执行器
  * <p>
@@ -16,10 +20,29 @@ import lombok.Getter;
 public class RpcInvoker {
 
     @Getter
-    private RpcRequest        request;
-    private HttpClientHandler clientHandler;
+    private RpcRequest          request;
+    private SimpleClientHandler clientHandler;
+
+    /**
+     * 没有指定连接时由高可用策略选择连接
+     */
+    private HaStrategy  haStrategy;
+    private LoadBalance loadBalance;
 
-    public RpcInvoker(RpcRequest request, HttpClientHandler clientHandler) {
+    /**
+     * 由高可用策略选择连接的执行器，连接异常时按策略切换节点
+     *
+     * @param request     Rpc请求
+     * @param haStrategy  高可用策略
+     * @param loadBalance 负载均衡器
+     */
+    public RpcInvoker(RpcRequest request, HaStrategy haStrategy, LoadBalance loadBalance) {
+        this.request = request;
+        this.haStrategy = haStrategy;
+        this.loadBalance = loadBalance;
+    }
+
+    public RpcInvoker(RpcRequest request, SimpleClientHandler clientHandler) {
         this.request = request;
         this.clientHandler = clientHandler;
         String address = clientHandler.getNettyClient().getAddress();
@@ -28,12 +51,39 @@ public class RpcInvoker {
     }
 
     public Object invoke() throws Throwable {
+        if (null == clientHandler) {
+            return haStrategy.call(request, loadBalance);
+        }
         if (!clientHandler.getChannel().isActive()) {
             throw new ConnectException(String.format("Server channel %s unActive.", clientHandler.getChannel()));
         }
         RpcContext.setAttachments(request.getContext());
         RpcCallbackFuture rpcCallbackFuture = clientHandler.asyncSendRequest(request);
-        return rpcCallbackFuture.get(request.getWaitTimeout());
+        try {
+            return rpcCallbackFuture.get();
+        } finally {
+            // 超时未响应的请求也要从连接上移除，保证未完成请求数准确
+            clientHandler.removeCallbackFuture(rpcCallbackFuture);
+        }
+    }
+
+    /**
+     * 异步调用，不阻塞调用线程
+     *
+     * @return 返回收到响应、服务端异常或者超时时完成的CompletableFuture
+     * @throws Throwable 连接不可用时抛出
+     */
+    public CompletableFuture<Object> invokeAsync() throws Throwable {
+        if (null == clientHandler) {
+            return haStrategy.callAsync(request, loadBalance);
+        }
+        if (!clientHandler.getChannel().isActive()) {
+            throw new ConnectException(String.format("Server channel %s unActive.", clientHandler.getChannel()));
+        }
+        RpcCallbackFuture         rpcCallbackFuture = clientHandler.asyncSendRequest(request);
+        CompletableFuture<Object> future            = rpcCallbackFuture.toCompletableFuture();
+        future.whenComplete((result, t) -> clientHandler.removeCallbackFuture(rpcCallbackFuture));
+        return future;
     }
 
 }
\ No newline at end of file
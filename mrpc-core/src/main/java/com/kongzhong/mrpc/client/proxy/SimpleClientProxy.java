@@ -1,10 +1,13 @@
 package com.kongzhong.mrpc.client.proxy;
 
+import com.google.common.base.Defaults;
 import com.google.common.reflect.AbstractInvocationHandler;
 import com.kongzhong.mrpc.Const;
 import com.kongzhong.mrpc.annotation.Command;
 import com.kongzhong.mrpc.annotation.Comment;
 import com.kongzhong.mrpc.client.LocalServiceNodeTable;
+import com.kongzhong.mrpc.client.RpcBatch;
+import com.kongzhong.mrpc.client.RpcStreamIterator;
 import com.kongzhong.mrpc.client.cluster.HaStrategy;
 import com.kongzhong.mrpc.client.cluster.LoadBalance;
 import com.kongzhong.mrpc.client.cluster.ha.HighAvailableFactory;
@@ -17,16 +20,29 @@ import com.kongzhong.mrpc.enums.HaStrategyEnum;
 import com.kongzhong.mrpc.enums.LbStrategyEnum;
 import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.exception.SystemException;
+import com.kongzhong.mrpc.exception.TimeoutException;
 import com.kongzhong.mrpc.interceptor.InterceptorChain;
 import com.kongzhong.mrpc.interceptor.Invocation;
 import com.kongzhong.mrpc.interceptor.RpcClientInterceptor;
+import com.kongzhong.mrpc.model.RpcContext;
 import com.kongzhong.mrpc.model.RpcRequest;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
+import com.kongzhong.mrpc.utils.ReflectUtils;
 import com.kongzhong.mrpc.utils.StringUtils;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.kongzhong.mrpc.Const.CLIENT_INTERCEPTOR_PREFIX;
 
@@ -113,30 +129,67 @@ public class SimpleClientProxy extends AbstractInvocationHandler {
     @Override
     protected Object handleInvocation(Object proxy, Method method, Object[] args) throws Throwable {
 
-        String appId = this.getAppId(method.getDeclaringClass());
+        String  appId  = this.getAppId(method.getDeclaringClass());
+        boolean async  = isAsync(method);
+        boolean stream = ReflectUtils.isStreamType(method.getReturnType());
+
+        int waitTimeout;
+        try {
+            waitTimeout = this.inheritWaitTimeout(method);
+        } catch (TimeoutException e) {
+            // 异步方法的异常都通过返回的CompletableFuture通知
+            if (async) {
+                return failedFuture(e);
+            }
+            throw e;
+        }
 
         RpcRequest request = RpcRequest.builder()
                 .appId(appId)
-                .requestId(StringUtils.getUUID())
                 .methodName(method.getName())
                 .className(method.getDeclaringClass().getName())
                 .parameterTypes(method.getParameterTypes())
                 .parameters(args)
                 .returnType(method.getReturnType())
-                .waitTimeout(this.getWaitTimeout(method))
+                .genericReturnType(async || stream ? typeArgument(method) : method.getGenericReturnType())
+                .waitTimeout(waitTimeout)
                 .timestamp(System.currentTimeMillis())
                 .fallbackType(this.getFallbackType(method))
                 .fallbackMethod(this.getFallbackMethod(method))
                 .build();
 
+        Command batchCommand = this.getBatchCommand(method);
+        if (null != batchCommand) {
+            request.setBatchWindow(batchCommand.batchWindow());
+            request.setBatchSize(batchCommand.batchSize());
+        }
+
         setContext(request, method);
 
         HaStrategy haStrategy = HighAvailableFactory.getHaStrategy(this.getHaStrategy(method));
+        if (RpcBatch.isRecording()) {
+            if (stream) {
+                throw new RpcException("Stream method [" + request.getClassName() + "." + request.getMethodName() + "] can not be batched.");
+            }
+            // 批量调用只记录请求和选中的连接，在RpcBatch.execute时按连接合并发送
+            RpcBatch.record(request, () -> haStrategy.select(request, loadBalance));
+            return Defaults.defaultValue(method.getReturnType());
+        }
         if (!hasInterceptors) {
-            return haStrategy.call(request, loadBalance);
+            return async ? haStrategy.callAsync(request, loadBalance) : toReturnType(method, haStrategy.call(request, loadBalance));
         }
 
-        HttpClientHandler clientHandler = loadBalance.next(appId, request.getClassName());
+        if (async) {
+            // 异步调用与没有拦截器时一样由高可用策略选择连接，连接异常时切换节点
+            Invocation invocation = new ClientInvocation(new RpcInvoker(request, haStrategy, loadBalance), interceptors, true);
+            try {
+                return invocation.next();
+            } catch (Throwable t) {
+                return failedFuture(t);
+            }
+        }
+
+        SimpleClientHandler clientHandler = haStrategy.select(request, loadBalance);
         if (null == clientHandler) {
             log.warn("Local service mappings: {}", LocalServiceNodeTable.SERVICE_MAPPINGS);
             throw new RpcException("Service [" + request.getClassName() + "] not found.");
@@ -144,7 +197,58 @@ public class SimpleClientProxy extends AbstractInvocationHandler {
 
         RpcInvoker rpcInvoker = new RpcInvoker(request, clientHandler);
         Invocation invocation = new ClientInvocation(rpcInvoker, interceptors);
-        return invocation.next();
+        return toReturnType(method, invocation.next());
+    }
+
+    private static CompletableFuture<Object> failedFuture(Throwable t) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    /**
+     * 返回CompletableFuture或CompletionStage的方法异步调用，调用线程不等待响应
+     *
+     * @param method 调用的方法
+     * @return 是否异步调用
+     */
+    private static boolean isAsync(Method method) {
+        Class<?> returnType = method.getReturnType();
+        return returnType == CompletableFuture.class || returnType == CompletionStage.class;
+    }
+
+    /**
+     * 流式方法的结果转换为方法的返回类型
+     * <p>
+     * http传输返回的是RpcStreamIterator，tcp传输服务端一次读完，返回的是List。
+     *
+     * @param method 调用的方法
+     * @param result 调用结果
+     * @return 返回Iterator或Stream，Stream关闭时关闭迭代器
+     */
+    private static Object toReturnType(Method method, Object result) {
+        Class<?> returnType = method.getReturnType();
+        if (!ReflectUtils.isStreamType(returnType) || returnType.isInstance(result)) {
+            return result;
+        }
+        Iterator<?> iterator = result instanceof Iterable ? ((Iterable<?>) result).iterator()
+                : null != result ? (Iterator<?>) result : Collections.emptyIterator();
+        if (returnType == Iterator.class) {
+            return iterator;
+        }
+        Stream<?> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+        return iterator instanceof RpcStreamIterator ? stream.onClose(((RpcStreamIterator<?>) iterator)::close) : stream;
+    }
+
+    /**
+     * 异步方法的结果类型或流式方法的元素类型，即返回类型的泛型参数
+     */
+    private static Type typeArgument(Method method) {
+        Type genericReturnType = method.getGenericReturnType();
+        if (genericReturnType instanceof ParameterizedType) {
+            return ((ParameterizedType) genericReturnType).getActualTypeArguments()[0];
+        }
+        return Object.class;
     }
 
     /**
@@ -195,6 +299,25 @@ public class SimpleClientProxy extends AbstractInvocationHandler {
         return timeout;
     }
 
+    /**
+     * 在服务方法中发起的调用，超时时间取自身超时和上游请求剩余时间中较小的值
+     *
+     * @param method 调用的方法
+     * @return 返回本次调用的超时时长
+     */
+    private int inheritWaitTimeout(Method method) {
+        int  timeout   = this.getWaitTimeout(method);
+        long remaining = RpcContext.getRemainingTime();
+        if (remaining < 0) {
+            return timeout;
+        }
+        if (remaining == 0) {
+            RpcRequest upstream = RpcContext.getRpcRequest();
+            throw new TimeoutException("Upstream request [" + upstream.getRequestId() + "] expired, skip invoke [" + method.getDeclaringClass().getName() + "." + method.getName() + "]");
+        }
+        return timeout > 0 ? (int) Math.min(timeout, remaining) : (int) remaining;
+    }
+
     private void setContext(RpcRequest request, Method method) {
         Comment comment = method.getDeclaringClass().getAnnotation(Comment.class);
         if (null != comment) {
@@ -207,6 +330,20 @@ public class SimpleClientProxy extends AbstractInvocationHandler {
         }
     }
 
+    /**
+     * 获取开启了微批量的Command，方法上的配置优先于接口上的配置
+     *
+     * @param method 调用的方法
+     * @return 没有开启微批量时返回null
+     */
+    private Command getBatchCommand(Method method) {
+        Command command = method.getAnnotation(Command.class);
+        if (null == command) {
+            command = method.getDeclaringClass().getAnnotation(Command.class);
+        }
+        return null != command && command.batchWindow() > 0 ? command : null;
+    }
+
     private String getFallbackType(Method method) {
         Command command = method.getAnnotation(Command.class);
         if (null != command && !"".equals(command.fallbackType())) {
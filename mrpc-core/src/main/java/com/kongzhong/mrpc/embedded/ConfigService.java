@@ -24,6 +24,13 @@ public interface ConfigService {
      */
     void setBusinessThreadPoolSize(int threadPoolSize);
 
+    /**
+     * 获取业务线程池的使用情况，包括共享线程池和服务独立线程池
+     *
+     * @return 返回[线程池名称->使用情况]，共享线程池的名称为default
+     */
+    Map<String, Map<String, Object>> getThreadPoolStatus();
+
     /**
      * 设置客户端全局超时等待时间
      *
@@ -28,6 +28,11 @@ public class ConfigServiceImpl implements ConfigService {
     public void setBusinessThreadPoolSize(int threadPoolSize) {
         SimpleRpcServer.setListeningExecutorService(threadPoolSize);
     }
+
+    @Override
+    public Map<String, Map<String, Object>> getThreadPoolStatus() {
+        return SimpleRpcServer.getThreadPoolStatus();
+    }
     /*---------------------服务端:END------------------------*/
 
     /*---------------------客户端:START----------------------*/
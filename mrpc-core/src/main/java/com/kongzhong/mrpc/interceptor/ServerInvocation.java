@@ -1,10 +1,9 @@
 package com.kongzhong.mrpc.interceptor;
 
 import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.server.ServiceMethod;
 import lombok.Data;
-import org.springframework.cglib.reflect.FastMethod;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
 /**
@@ -17,7 +16,7 @@ public class ServerInvocation implements Invocation {
 
     private Object target;
     private RpcRequest request;
-    private FastMethod fastMethod;
+    private ServiceMethod serviceMethod;
     private Object[] parameters;
 
     //拦截器
@@ -26,25 +25,18 @@ public class ServerInvocation implements Invocation {
     //当前Interceptor索引值，初始值：-1，范围：0-interceptor.size()-1
     private int currentIndex = -1;
 
-    public ServerInvocation(FastMethod fastMethod, Object target, Object[] parameters, RpcRequest request, List<RpcServerInterceptor> interceptors) {
-        this.fastMethod = fastMethod;
-        this.target = target;
+    public ServerInvocation(ServiceMethod serviceMethod, Object[] parameters, RpcRequest request) {
+        this.serviceMethod = serviceMethod;
+        this.target = serviceMethod.getBean();
         this.request = request;
         this.parameters = parameters;
-        this.interceptors = interceptors;
+        this.interceptors = serviceMethod.getInterceptors();
     }
 
     @Override
     public Object next() throws Throwable {
         if (this.currentIndex == this.interceptors.size() - 1) {
-            try {
-                return fastMethod.invoke(this.target, this.parameters);
-            } catch (Exception e) {
-                if (e instanceof InvocationTargetException) {
-                    throw e.getCause();
-                }
-                throw e;
-            }
+            return serviceMethod.invoke(this.parameters);
         } else {
             RpcInterceptor interceptor = this.interceptors.get(++this.currentIndex);
             return interceptor.execute(this);
@@ -0,0 +1,277 @@
+package com.kongzhong.mrpc.serialize;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.google.common.reflect.TypeToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * 二进制附件
+ * <p>
+ * byte[]、ByteBuffer、ByteBuf、InputStream、File和Path类型的参数和返回值作为附件以原始字节传输，不经过json编码。
+ * 发送方：内存中的数据包装为ByteBuf，不复制；文件由传输层通过FileRegion写出；其他InputStream读入堆外内存。
+ * 接收方：附件是从聚合后的报文中切出的ByteBuf，声明为ByteBuf和InputStream时不复制，
+ * byte[]和ByteBuffer复制一次，File和Path写入临时文件。
+ * <p>
+ * 服务端的附件参数在调用结束后释放：ByteBuf和InputStream释放，临时文件删除，需要保留时服务方法自己retain或者复制；
+ * 客户端收到的ByteBuf由调用方release，InputStream由调用方close，临时文件由调用方删除。
+ *
+ * @author biezhi
+ * 2017/5/10
+ */
+@Slf4j
+public final class AttachmentCodec {
+
+    private static final Set<Class<?>> ATTACHMENT_TYPES = ImmutableSet.of(
+            byte[].class, ByteBuffer.class, ByteBuf.class, InputStream.class, File.class, Path.class);
+
+    private AttachmentCodec() {
+    }
+
+    /**
+     * 是否为附件类型
+     *
+     * @param type 方法声明的参数或返回值类型
+     * @return byte[]、ByteBuffer、ByteBuf、InputStream、File、Path返回true
+     */
+    public static boolean isAttachmentType(Class<?> type) {
+        return ATTACHMENT_TYPES.contains(type);
+    }
+
+    /**
+     * 是否为附件，服务端按返回值的实际类型判断，返回Object或异步类型的方法同样适用
+     *
+     * @param value 参数或返回值
+     * @return 返回是否作为附件传输
+     */
+    public static boolean isAttachment(Object value) {
+        return value instanceof byte[] || value instanceof ByteBuffer || value instanceof ByteBuf
+                || value instanceof InputStream || value instanceof File || value instanceof Path;
+    }
+
+    /**
+     * 方法是否有附件参数
+     *
+     * @param parameterTypes 方法参数类型
+     * @return 有任意一个附件类型的参数时返回true
+     */
+    public static boolean hasAttachments(Class<?>[] parameterTypes) {
+        if (null == parameterTypes) {
+            return false;
+        }
+        for (Class<?> parameterType : parameterTypes) {
+            if (isAttachmentType(parameterType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 泛型类型的原始类型，用于按声明类型解码附件
+     *
+     * @param type 泛型类型，可以为null
+     * @return 返回原始类型，type为null时返回byte[]
+     */
+    public static Class<?> rawType(Type type) {
+        return null == type ? byte[].class : TypeToken.of(type).getRawType();
+    }
+
+    /**
+     * 发送方把附件转换为可以写出的对象
+     *
+     * @param value     附件，ByteBuf的引用计数不变，InputStream读完后关闭
+     * @param allocator 读取InputStream使用的分配器
+     * @return 内存中的数据返回ByteBuf，文件返回File，value为null时返回null
+     * @throws IOException 文件不存在或者读取InputStream出错时抛出
+     */
+    public static Object encode(Object value, ByteBufAllocator allocator) throws IOException {
+        if (null == value) {
+            return null;
+        }
+        if (value instanceof byte[]) {
+            return Unpooled.wrappedBuffer((byte[]) value);
+        }
+        if (value instanceof ByteBuffer) {
+            return Unpooled.wrappedBuffer(((ByteBuffer) value).duplicate());
+        }
+        if (value instanceof ByteBuf) {
+            return ((ByteBuf) value).retainedDuplicate();
+        }
+        if (value instanceof File || value instanceof Path) {
+            File file = value instanceof Path ? ((Path) value).toFile() : (File) value;
+            if (!file.isFile()) {
+                throw new FileNotFoundException(file.getPath());
+            }
+            return file;
+        }
+        if (value instanceof InputStream) {
+            ByteBuf buf = allocator.directBuffer();
+            try (InputStream in = (InputStream) value) {
+                int read;
+                do {
+                    read = buf.writeBytes(in, 8192);
+                } while (read >= 0);
+                return buf;
+            } catch (IOException | RuntimeException e) {
+                buf.release();
+                throw e;
+            }
+        }
+        throw new IllegalArgumentException("Not an attachment: " + value.getClass().getName());
+    }
+
+    /**
+     * 已转换附件的字节数
+     *
+     * @param encoded encode的返回值
+     * @return 返回字节数，附件为null时返回-1
+     */
+    public static long length(Object encoded) {
+        if (null == encoded) {
+            return -1;
+        }
+        return encoded instanceof File ? ((File) encoded).length() : ((ByteBuf) encoded).readableBytes();
+    }
+
+    /**
+     * 接收方把附件转换为声明的类型
+     *
+     * @param content 附件内容，引用交给这里，为null时返回null
+     * @param type    声明的类型，不是附件类型时按byte[]解码
+     * @return 返回声明类型的附件
+     * @throws IOException 写入临时文件出错时抛出
+     */
+    public static Object decode(ByteBuf content, Class<?> type) throws IOException {
+        if (null == content) {
+            return null;
+        }
+        if (ByteBuf.class == type) {
+            return content;
+        }
+        if (InputStream.class == type) {
+            return new ByteBufInputStream(content, true);
+        }
+        try {
+            if (ByteBuffer.class == type) {
+                ByteBuffer buffer = ByteBuffer.allocate(content.readableBytes());
+                content.getBytes(content.readerIndex(), buffer);
+                buffer.flip();
+                return buffer;
+            }
+            if (File.class == type || Path.class == type) {
+                Path path = writeTempFile(content);
+                return File.class == type ? path.toFile() : path;
+            }
+            return ByteBufUtil.getBytes(content);
+        } finally {
+            content.release();
+        }
+    }
+
+    private static Path writeTempFile(ByteBuf content) throws IOException {
+        Path path = Files.createTempFile("mrpc-", ".attachment");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            int index = content.readerIndex();
+            int end   = content.writerIndex();
+            while (index < end) {
+                index += content.getBytes(index, channel, end - index);
+            }
+            return path;
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * tcp传输的附件在报文中作为byte[]发送，读出附件的全部字节
+     *
+     * @param value 附件，ByteBuf的引用计数不变，InputStream读完后关闭
+     * @return 返回附件的字节，value为null或者不是附件时原样返回
+     * @throws IOException 读取文件或InputStream出错时抛出
+     */
+    public static Object toBytes(Object value) throws IOException {
+        if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            byte[]     bytes  = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+        if (value instanceof ByteBuf) {
+            return ByteBufUtil.getBytes((ByteBuf) value);
+        }
+        if (value instanceof File || value instanceof Path) {
+            return Files.readAllBytes(value instanceof File ? ((File) value).toPath() : (Path) value);
+        }
+        if (value instanceof InputStream) {
+            try (InputStream in = (InputStream) value) {
+                return ByteStreams.toByteArray(in);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 把附件参数转换为byte[]
+     *
+     * @param parameterTypes 方法参数类型
+     * @param parameters     参数，不修改
+     * @return 没有附件参数时返回parameters，否则返回转换后的新数组
+     * @throws IOException 读取文件或InputStream出错时抛出
+     */
+    public static Object[] toBytes(Class<?>[] parameterTypes, Object[] parameters) throws IOException {
+        if (null == parameters || !hasAttachments(parameterTypes)) {
+            return parameters;
+        }
+        Object[] converted = parameters.clone();
+        for (int i = 0; i < parameterTypes.length && i < converted.length; i++) {
+            if (isAttachmentType(parameterTypes[i])) {
+                converted[i] = toBytes(converted[i]);
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * 释放decode得到的附件：ByteBuf和InputStream释放，临时文件删除
+     *
+     * @param attachment decode的返回值
+     */
+    public static void release(Object attachment) {
+        try {
+            if (attachment instanceof ByteBuf) {
+                if (((ByteBuf) attachment).refCnt() > 0) {
+                    ReferenceCountUtil.safeRelease(attachment);
+                }
+            } else if (attachment instanceof InputStream) {
+                ((InputStream) attachment).close();
+            } else if (attachment instanceof File) {
+                Files.deleteIfExists(((File) attachment).toPath());
+            } else if (attachment instanceof Path) {
+                Files.deleteIfExists((Path) attachment);
+            }
+        } catch (IOException e) {
+            log.warn("Release attachment error", e);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.kongzhong.mrpc.serialize;
+
+import com.kongzhong.mrpc.enums.CompressEnum;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.compression.Snappy;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 报文压缩
+ * <p>
+ * 客户端声明自己支持的算法，服务端在服务配置的算法和客户端支持的算法之间协商，
+ * 老版本客户端只声明gzip或者不声明，服务端相应地使用gzip或者不压缩。
+ *
+ * @author biezhi
+ * 2017/5/4
+ */
+public final class CompressCodec {
+
+    /**
+     * 客户端支持的压缩算法，http中作为Accept-Encoding，tcp中放在请求上下文
+     */
+    public static final String ACCEPT_ENCODING = "snappy, gzip";
+
+    /**
+     * tcp帧长度的最高位表示报文已压缩，长度之后的一个字节是压缩算法id
+     */
+    public static final int COMPRESSED_FLAG = 0x80000000;
+
+    private CompressCodec() {
+    }
+
+    /**
+     * 协商压缩算法
+     *
+     * @param compress       服务配置的压缩算法
+     * @param acceptEncoding 客户端支持的压缩算法，逗号分隔
+     * @return 客户端支持服务配置的算法时使用该算法，否则退回gzip，都不支持时不压缩
+     */
+    public static CompressEnum negotiate(CompressEnum compress, String acceptEncoding) {
+        if (null == compress || compress == CompressEnum.NONE || null == acceptEncoding) {
+            return CompressEnum.NONE;
+        }
+        boolean gzip = false;
+        for (String encoding : acceptEncoding.split(",")) {
+            int    index = encoding.indexOf(';');
+            String name  = (index > 0 ? encoding.substring(0, index) : encoding).trim();
+            if (compress.encoding().equalsIgnoreCase(name)) {
+                return compress;
+            }
+            gzip |= CompressEnum.GZIP.encoding().equalsIgnoreCase(name);
+        }
+        return gzip ? CompressEnum.GZIP : CompressEnum.NONE;
+    }
+
+    /**
+     * 压缩in中可读的字节并写入out
+     *
+     * @param compress 压缩算法
+     * @param in       原始报文
+     * @param out      压缩后的报文
+     * @throws Exception
+     */
+    public static void compress(CompressEnum compress, ByteBuf in, ByteBuf out) throws Exception {
+        switch (compress) {
+            case GZIP:
+                try (OutputStream outputStream = new GZIPOutputStream(new ByteBufOutputStream(out))) {
+                    in.getBytes(in.readerIndex(), outputStream, in.readableBytes());
+                }
+                break;
+            case SNAPPY:
+                new Snappy().encode(in, out, in.readableBytes());
+                break;
+            default:
+                out.writeBytes(in);
+        }
+    }
+
+    /**
+     * 解压in中可读的字节并写入out，out的最大容量限制了解压后的报文大小
+     *
+     * @param compress 压缩算法
+     * @param in       压缩后的报文
+     * @param out      解压后的报文
+     * @throws Exception
+     */
+    public static void decompress(CompressEnum compress, ByteBuf in, ByteBuf out) throws Exception {
+        switch (compress) {
+            case GZIP:
+                try (InputStream inputStream = new GZIPInputStream(new ByteBufInputStream(in))) {
+                    // 只在确实解压出字节时检查容量，解压后恰好等于最大容量的报文可以通过，超过时抛出IndexOutOfBoundsException
+                    byte[] buffer = new byte[8192];
+                    int    read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        out.writeBytes(buffer, 0, read);
+                    }
+                }
+                break;
+            case SNAPPY:
+                new Snappy().decode(in, out);
+                break;
+            default:
+                out.writeBytes(in);
+        }
+    }
+
+}
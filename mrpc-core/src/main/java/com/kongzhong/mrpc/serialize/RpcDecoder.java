@@ -1,8 +1,12 @@
 package com.kongzhong.mrpc.serialize;
 
+import com.kongzhong.mrpc.enums.CompressEnum;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
 
 import java.util.List;
 
@@ -13,10 +17,16 @@ public class RpcDecoder extends ByteToMessageDecoder {
 
     private RpcSerialize rpcSerialize;
     private Class<?> genericClass;
+    private int maxFrameLength;
 
     public RpcDecoder(RpcSerialize rpcSerialize, Class<?> genericClass) {
+        this(rpcSerialize, genericClass, Integer.MAX_VALUE);
+    }
+
+    public RpcDecoder(RpcSerialize rpcSerialize, Class<?> genericClass, int maxFrameLength) {
         this.rpcSerialize = rpcSerialize;
         this.genericClass = genericClass;
+        this.maxFrameLength = maxFrameLength;
     }
 
     @Override
@@ -25,15 +35,50 @@ public class RpcDecoder extends ByteToMessageDecoder {
             return;
         }
         in.markReaderIndex();
-        int dataLength = in.readInt();
+        int     dataLength = in.readInt();
+        boolean compressed = (dataLength & CompressCodec.COMPRESSED_FLAG) != 0;
+        dataLength &= ~CompressCodec.COMPRESSED_FLAG;
+        if (dataLength > maxFrameLength) {
+            // 帧长度在读取报文之前校验，超出上限直接断开，不再缓冲后续数据
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            throw new TooLongFrameException("Frame length " + dataLength + " exceeds " + maxFrameLength);
+        }
+        if (compressed && dataLength < 1) {
+            // 压缩帧至少包含1字节的压缩算法
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            throw new CorruptedFrameException("Compressed frame length " + dataLength + " is less than 1");
+        }
         if (in.readableBytes() < dataLength) {
             in.resetReaderIndex();
             return;
         }
-        byte[] data = new byte[dataLength];
-        in.readBytes(data);
+        byte[] data;
+        if (compressed) {
+            data = this.decompress(ctx, in, dataLength);
+        } else {
+            data = new byte[dataLength];
+            in.readBytes(data);
+        }
         Object obj = rpcSerialize.deserialize(data, genericClass);
         out.add(obj);
     }
 
+    /**
+     * 解压报文，解压后同样不能超过帧长度上限
+     */
+    private byte[] decompress(ChannelHandlerContext ctx, ByteBuf in, int dataLength) throws Exception {
+        CompressEnum compress = CompressEnum.valueOf(in.readByte());
+        ByteBuf      data     = ctx.alloc().buffer((int) Math.min(dataLength * 4L, maxFrameLength), maxFrameLength);
+        try {
+            CompressCodec.decompress(compress, in.readSlice(dataLength - 1), data);
+            return ByteBufUtil.getBytes(data);
+        } catch (IndexOutOfBoundsException e) {
+            throw new TooLongFrameException("Decompressed frame length exceeds " + maxFrameLength);
+        } finally {
+            data.release();
+        }
+    }
+
 }
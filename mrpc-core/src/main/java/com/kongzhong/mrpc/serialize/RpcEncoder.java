@@ -1,6 +1,9 @@
 package com.kongzhong.mrpc.serialize;
 
+import com.kongzhong.mrpc.enums.CompressEnum;
+import com.kongzhong.mrpc.model.RpcResponse;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
@@ -11,18 +14,44 @@ public class RpcEncoder extends MessageToByteEncoder {
 
     private RpcSerialize rpcSerialize;
     private Class<?> genericClass;
+    private int compressThreshold;
 
     public RpcEncoder(RpcSerialize rpcSerialize, Class<?> genericClass) {
+        this(rpcSerialize, genericClass, Integer.MAX_VALUE);
+    }
+
+    public RpcEncoder(RpcSerialize rpcSerialize, Class<?> genericClass, int compressThreshold) {
         this.rpcSerialize = rpcSerialize;
         this.genericClass = genericClass;
+        this.compressThreshold = compressThreshold;
     }
 
     @Override
     public void encode(ChannelHandlerContext ctx, Object in, ByteBuf out) throws Exception {
         if (genericClass.isInstance(in)) {
-            byte[] data = rpcSerialize.serialize(in);
-            out.writeInt(data.length);
-            out.writeBytes(data);
+            // 先占位长度，序列化直接写入池化的ByteBuf后回填
+            int start = out.writerIndex();
+            out.writeInt(0);
+            rpcSerialize.serialize(in, new ByteBufOutputStream(out));
+            int length = out.writerIndex() - start - RpcSerialize.MESSAGE_LENGTH;
+
+            CompressEnum compress = in instanceof RpcResponse ? ((RpcResponse) in).getCompress() : null;
+            if (null != compress && compress != CompressEnum.NONE && length >= compressThreshold) {
+                // 压缩帧：长度最高位置1，长度之后是压缩算法id，压缩后没有变小时仍然发送原始报文
+                ByteBuf compressed = ctx.alloc().buffer(length);
+                try {
+                    CompressCodec.compress(compress, out.slice(start + RpcSerialize.MESSAGE_LENGTH, length), compressed);
+                    if (compressed.readableBytes() + 1 < length) {
+                        out.writerIndex(start + RpcSerialize.MESSAGE_LENGTH);
+                        out.writeByte(compress.getId());
+                        out.writeBytes(compressed);
+                        length = (out.writerIndex() - start - RpcSerialize.MESSAGE_LENGTH) | CompressCodec.COMPRESSED_FLAG;
+                    }
+                } finally {
+                    compressed.release();
+                }
+            }
+            out.setInt(start, length);
         }
     }
 }
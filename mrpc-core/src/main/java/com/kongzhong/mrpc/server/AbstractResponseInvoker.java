@@ -1,61 +1,228 @@
 package com.kongzhong.mrpc.server;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.kongzhong.mrpc.Const;
 import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.exception.SerializeException;
 import com.kongzhong.mrpc.exception.SystemException;
-import com.kongzhong.mrpc.interceptor.InterceptorChain;
+import com.kongzhong.mrpc.exception.TimeoutException;
 import com.kongzhong.mrpc.interceptor.Invocation;
-import com.kongzhong.mrpc.interceptor.RpcServerInterceptor;
 import com.kongzhong.mrpc.interceptor.ServerInvocation;
 import com.kongzhong.mrpc.model.RpcContext;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.model.ServiceBean;
+import com.kongzhong.mrpc.serialize.AttachmentCodec;
 import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
-import com.kongzhong.mrpc.utils.CollectionUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cglib.reflect.FastClass;
-import org.springframework.cglib.reflect.FastMethod;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-
-import static com.kongzhong.mrpc.Const.SERVER_INTERCEPTOR_PREFIX;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
 
 /**
  * 抽象响应回调处理
+ * <p>
+ * 服务方法返回CompletableFuture、ListenableFuture等异步类型时，业务线程在方法返回后立即释放，
+ * 响应在异步结果完成的线程上构建。
  *
  * @param <T>
  */
 @Slf4j
-public abstract class AbstractResponseInvoker<T> implements Callable<T> {
+public abstract class AbstractResponseInvoker<T> implements Callable<ListenableFuture<T>> {
 
-    private   Map<String, ServiceBean>   serviceBeanMap  = null;
-    private   List<RpcServerInterceptor> interceptors    = null;
-    private   boolean                    hasInterceptors = false;
-    protected RpcRequest                 request         = null;
-    protected RpcResponse                response        = null;
+    private   Map<String, ServiceBean> serviceBeanMap = null;
+    protected RpcRequest               request        = null;
+    protected RpcResponse              response       = null;
+
+    /**
+     * 请求的服务方法，http请求解码时已经找到的直接传入，否则第一次使用时查找一次
+     */
+    private ServiceMethod serviceMethod;
 
     public AbstractResponseInvoker(RpcRequest request, RpcResponse response, Map<String, ServiceBean> serviceBeanMap) {
         this.request = request;
         this.response = response;
         this.serviceBeanMap = serviceBeanMap;
-        this.interceptors = RpcMapping.me().getServerInterceptors();
-        if (CollectionUtils.isNotEmpty(interceptors)) {
-            hasInterceptors = true;
-            int pos = interceptors.size();
-            for (RpcServerInterceptor interceptor : interceptors) {
-                InterceptorChain interceptorChain = new InterceptorChain();
-                interceptorChain.addLast(SERVER_INTERCEPTOR_PREFIX + (pos--), interceptor);
-            }
+    }
+
+    /**
+     * 设置已经找到的服务方法，调度和执行时不再查找
+     *
+     * @param serviceMethod 请求的服务方法
+     */
+    public void setServiceMethod(ServiceMethod serviceMethod) {
+        this.serviceMethod = serviceMethod;
+    }
+
+    /**
+     * @return 返回请求的服务方法，找不到时返回null
+     */
+    ServiceMethod getServiceMethod() {
+        if (null == serviceMethod) {
+            serviceMethod = RpcMapping.me().getServiceMethod(request.getClassName(), request.getMethodName(), request.getParameterTypes());
+        }
+        return serviceMethod;
+    }
+
+    /**
+     * 不执行服务方法，直接以异常构建响应，用于过载时快速返回
+     *
+     * @param t 拒绝原因
+     * @return 返回已经完成的响应Future
+     */
+    public ListenableFuture<T> reject(Throwable t) {
+        try {
+            return Futures.immediateFuture(buildResponse(null, t));
+        } catch (Throwable e) {
+            return Futures.immediateFailedFuture(e);
+        } finally {
+            this.releaseAttachments();
         }
     }
 
     @Override
-    public abstract T call() throws Exception;
+    public ListenableFuture<T> call() throws Exception {
+        // 出队时客户端已经超时的请求不再执行
+        if (request.getWaitTimeout() > 0 && System.nanoTime() - request.getDeadline() >= 0) {
+            log.debug("Request [{}] expired before execute, waitTimeout: {}ms", request.getRequestId(), request.getWaitTimeout());
+            return this.reject(new TimeoutException("Request [" + request.getRequestId() + "] expired before execute."));
+        }
+        ListenableFuture<Object> result;
+        try {
+            result = toListenableFuture(this.invokeMethod(request));
+        } catch (Throwable t) {
+            result = Futures.immediateFailedFuture(t);
+        }
+
+        SettableFuture<T> future = SettableFuture.create();
+        Futures.addCallback(result, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object value) {
+                this.complete(value, null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                this.complete(null, t);
+            }
+
+            private void complete(Object value, Throwable t) {
+                try {
+                    future.set(buildResponse(value, t));
+                } catch (Throwable e) {
+                    future.setException(e);
+                } finally {
+                    releaseAttachments();
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    /**
+     * 服务方法执行完成后构建响应
+     *
+     * @param result 方法返回值，异步方法为异步结果的值
+     * @param t      方法抛出的异常，执行成功时为null
+     * @return 返回要写给客户端的响应
+     * @throws Exception 构建响应出错时抛出
+     */
+    protected abstract T buildResponse(Object result, Throwable t) throws Exception;
+
+    /**
+     * 把服务方法的返回值转换为ListenableFuture，同步返回值转换为已完成的Future
+     *
+     * @param value 服务方法返回值
+     * @return 返回值完成时完成的ListenableFuture
+     */
+    @SuppressWarnings("unchecked")
+    private static ListenableFuture<Object> toListenableFuture(Object value) {
+        if (value instanceof ListenableFuture) {
+            return (ListenableFuture<Object>) value;
+        }
+        if (value instanceof CompletionStage) {
+            SettableFuture<Object> future = SettableFuture.create();
+            ((CompletionStage<?>) value).whenComplete((result, t) -> {
+                if (null == t) {
+                    future.set(result);
+                } else {
+                    future.setException(t instanceof CompletionException && null != t.getCause() ? t.getCause() : t);
+                }
+            });
+            return future;
+        }
+        if (value instanceof io.netty.util.concurrent.Future) {
+            SettableFuture<Object> future = SettableFuture.create();
+            ((io.netty.util.concurrent.Future<?>) value).addListener(f -> {
+                if (f.isSuccess()) {
+                    future.set(f.getNow());
+                } else {
+                    future.setException(f.cause());
+                }
+            });
+            return future;
+        }
+        return Futures.immediateFuture(value);
+    }
+
+    /**
+     * 不能分块写出的响应(tcp、批量请求)把流式方法的返回值一次读完，作为List返回
+     *
+     * @param result 服务方法返回值
+     * @return Iterator或Stream读完后返回List，其他返回值原样返回
+     */
+    protected static Object collectStream(Object result) {
+        if (!(result instanceof Iterator) && !(result instanceof Stream)) {
+            return result;
+        }
+        try {
+            Iterator<?>  iterator = result instanceof Stream ? ((Stream<?>) result).iterator() : (Iterator<?>) result;
+            List<Object> elements = new ArrayList<>();
+            iterator.forEachRemaining(elements::add);
+            return elements;
+        } finally {
+            closeStream(result);
+        }
+    }
+
+    /**
+     * 关闭流式方法的返回值，释放数据库游标等资源
+     *
+     * @param result 服务方法返回值，Stream或实现了AutoCloseable的Iterator
+     */
+    protected static void closeStream(Object result) {
+        if (!(result instanceof AutoCloseable)) {
+            return;
+        }
+        try {
+            ((AutoCloseable) result).close();
+        } catch (Exception e) {
+            log.warn("Close stream error", e);
+        }
+    }
+
+    /**
+     * 调用结束后释放请求中解码出的二进制参数，异步方法在异步结果完成后释放
+     */
+    private void releaseAttachments() {
+        List<Object> attachments = request.getAttachments();
+        if (null != attachments) {
+            request.setAttachments(null);
+            attachments.forEach(AttachmentCodec::release);
+        }
+    }
 
     /**
      * 执行请求的方法
@@ -70,28 +237,29 @@ public abstract class AbstractResponseInvoker<T> implements Callable<T> {
         long   startTime   = System.currentTimeMillis();
 
         try {
-            ServiceBean serviceBean = serviceBeanMap.get(serviceName);
-            if (null == serviceBean) {
-                throw new RpcException("Not found service bean define [" + serviceName + "]");
-            }
-
-            Object bean = serviceBean.getBean();
-            if (null == bean) {
-                throw new RpcException("Not found service bean [" + serviceName + "]");
+            // 调度时已经查找过，这里直接使用
+            ServiceMethod serviceMethod = this.getServiceMethod();
+            if (null == serviceMethod) {
+                ServiceBean serviceBean = serviceBeanMap.get(serviceName);
+                if (null == serviceBean) {
+                    throw new RpcException("Not found service bean define [" + serviceName + "]");
+                }
+                if (null == serviceBean.getBean()) {
+                    throw new RpcException("Not found service bean [" + serviceName + "]");
+                }
+                throw new RpcException("Not found method [" + serviceName + "." + methodName + Arrays.toString(request.getParameterTypes()) + "]");
             }
 
-            Class<?>   serviceClass      = bean.getClass();
-            Class<?>[] parameterTypes    = request.getParameterTypes();
-            Object[]   parameters        = request.getParameters();
-            FastClass  serviceFastClass  = FastClass.create(serviceClass);
-            FastMethod serviceFastMethod = serviceFastClass.getMethod(methodName, parameterTypes);
+            // 服务方法中可以通过RpcContext读取剩余时间，嵌套调用自动继承
+            RpcContext.setRpcRequest(request);
 
-            if (!hasInterceptors) {
-                return serviceFastMethod.invoke(bean, parameters);
+            Object[] parameters = request.getParameters();
+            if (serviceMethod.getInterceptors().isEmpty()) {
+                return serviceMethod.invoke(parameters);
             }
 
             //执行拦截器
-            Invocation invocation = new ServerInvocation(serviceFastMethod, bean, parameters, request, interceptors);
+            Invocation invocation = new ServerInvocation(serviceMethod, parameters, request);
             return invocation.next();
         } finally {
             log.debug("[{}.{}]", serviceName, methodName);
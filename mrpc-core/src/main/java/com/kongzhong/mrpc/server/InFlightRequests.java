@@ -0,0 +1,168 @@
+package com.kongzhong.mrpc.server;
+
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端未完成的请求
+ * <p>
+ * 每个连接上的未完成请求数保存在Channel属性中，请求提交和响应写出时只做原子加减；
+ * 停机排空时连接上的请求全部完成后立即关闭该连接，总数归零时唤醒等待停机的线程。
+ *
+ * @author biezhi
+ * 2017/5/2
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class InFlightRequests {
+
+    private static final AttributeKey<AtomicInteger> IN_FLIGHT = AttributeKey.valueOf("mrpc.inFlight");
+
+    /**
+     * 停机下线时在每个连接上触发的用户事件，由各传输的服务端handler通知客户端
+     */
+    public static final Object OFFLINE_EVENT = "mrpc.offline";
+
+    /**
+     * 所有连接上未完成的请求数
+     */
+    private final AtomicInteger total = new AtomicInteger();
+
+    /**
+     * 客户端连接，关闭的连接自动移除
+     */
+    private final ChannelGroup channels = new DefaultChannelGroup("mrpc-server", GlobalEventExecutor.INSTANCE);
+
+    private volatile boolean draining;
+
+    /**
+     * 登记客户端连接
+     *
+     * @param channel 客户端连接
+     */
+    public void register(Channel channel) {
+        channels.add(channel);
+    }
+
+    /**
+     * 请求提交时调用
+     *
+     * @param channel 请求所在的连接
+     */
+    public void acquire(Channel channel) {
+        counter(channel).incrementAndGet();
+        total.incrementAndGet();
+    }
+
+    /**
+     * 响应写出或请求失败时调用
+     *
+     * @param channel 请求所在的连接
+     */
+    public void release(Channel channel) {
+        int pending = counter(channel).decrementAndGet();
+        if (draining && pending == 0) {
+            channel.close();
+        }
+        if (total.decrementAndGet() == 0 && draining) {
+            synchronized (this) {
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 在所有连接上触发下线事件，客户端收到通知后不再向本节点发送新请求
+     */
+    public void offline() {
+        channels.forEach(channel -> channel.pipeline().fireUserEventTriggered(OFFLINE_EVENT));
+    }
+
+    /**
+     * 开始排空，空闲连接立即关闭，其他连接在请求全部完成后关闭
+     */
+    public void drain() {
+        draining = true;
+        channels.forEach(channel -> {
+            if (counter(channel).get() == 0) {
+                channel.close();
+            }
+        });
+    }
+
+    /**
+     * 等待所有未完成的请求
+     *
+     * @param milliseconds 最长等待时间
+     * @return 在等待时间内全部完成返回true
+     */
+    public boolean awaitDrained(long milliseconds) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        synchronized (this) {
+            while (total.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 关闭所有客户端连接
+     */
+    public void closeAll() {
+        channels.forEach(channel -> {
+            int pending = counter(channel).get();
+            if (pending > 0) {
+                log.warn("Close channel {} with {} requests in flight", channel, pending);
+            }
+        });
+        channels.close().awaitUninterruptibly(1, TimeUnit.SECONDS);
+    }
+
+    public int getInFlight() {
+        return total.get();
+    }
+
+    public int getInFlight(Channel channel) {
+        return counter(channel).get();
+    }
+
+    private static AtomicInteger counter(Channel channel) {
+        AtomicInteger counter = channel.attr(IN_FLIGHT).get();
+        if (null == counter) {
+            AtomicInteger created = new AtomicInteger();
+            counter = channel.attr(IN_FLIGHT).setIfAbsent(created);
+            if (null == counter) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    private static final class InFlightRequestsHolder {
+        private static final InFlightRequests INSTANCE = new InFlightRequests();
+    }
+
+    public static InFlightRequests me() {
+        return InFlightRequestsHolder.INSTANCE;
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.kongzhong.mrpc.server;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.kongzhong.mrpc.annotation.Command;
 import com.kongzhong.mrpc.annotation.RpcService;
+import com.kongzhong.mrpc.enums.CompressEnum;
 import com.kongzhong.mrpc.exception.SystemException;
 import com.kongzhong.mrpc.interceptor.RpcServerInterceptor;
 import com.kongzhong.mrpc.model.NoInterface;
@@ -13,7 +16,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
 
+import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -32,6 +38,11 @@ public class RpcMapping {
     private Map<String, ServiceBean>   serviceBeanMap     = Maps.newConcurrentMap();
     private List<RpcServerInterceptor> serverInterceptors = Lists.newArrayList();
 
+    /**
+     * 服务分发表：服务名 -> 方法名 -> 该方法名的所有重载
+     */
+    private Map<String, Map<String, List<ServiceMethod>>> serviceMethods = Maps.newConcurrentMap();
+
     /**
      * 添加一个服务Bean
      *
@@ -65,6 +76,13 @@ public class RpcMapping {
                     serviceBean.setRegistry(registry);
                     serviceBean.setAddress(address);
                     serviceBean.setElasticIp(elasticIp);
+                    serviceBean.setMaxRequestSize(rpcService.maxRequestSize());
+                    serviceBean.setMaxResponseSize(rpcService.maxResponseSize());
+                    serviceBean.setThreadPoolSize(rpcService.threadPoolSize());
+                    serviceBean.setQueueSize(rpcService.queueSize());
+                    serviceBean.setRejectPolicy(rpcService.rejectPolicy());
+                    serviceBean.setIoThread(rpcService.ioThread());
+                    serviceBean.setCompress(parseCompress(rpcService.compress()));
                     this.addServiceBean(serviceBean);
                 } else {
                     Stream.of(interfaces).map(Class::getName)
@@ -77,6 +95,13 @@ public class RpcMapping {
                                 serviceBean.setRegistry(registry);
                                 serviceBean.setAddress(address);
                                 serviceBean.setElasticIp(elasticIp);
+                                serviceBean.setMaxRequestSize(rpcService.maxRequestSize());
+                                serviceBean.setMaxResponseSize(rpcService.maxResponseSize());
+                                serviceBean.setThreadPoolSize(rpcService.threadPoolSize());
+                                serviceBean.setQueueSize(rpcService.queueSize());
+                                serviceBean.setRejectPolicy(rpcService.rejectPolicy());
+                                serviceBean.setIoThread(rpcService.ioThread());
+                                serviceBean.setCompress(parseCompress(rpcService.compress()));
                                 this.addServiceBean(serviceBean);
                             });
                 }
@@ -92,6 +117,130 @@ public class RpcMapping {
             throw new SystemException("Service bean not is null");
         }
         serviceBeanMap.put(serviceBean.getServiceName(), serviceBean);
+        if (null != serviceBean.getBean()) {
+            serviceMethods.put(serviceBean.getServiceName(), this.compile(serviceBean));
+        }
+    }
+
+    /**
+     * 为服务的每个公开方法创建ServiceMethod，按方法名分组
+     */
+    private Map<String, List<ServiceMethod>> compile(ServiceBean serviceBean) {
+        List<RpcServerInterceptor>       interceptors = ImmutableList.copyOf(serverInterceptors);
+        Map<String, List<ServiceMethod>> methods      = Maps.newHashMap();
+        for (Method method : this.publicMethods(serviceBean)) {
+            if (method.getDeclaringClass() == Object.class || method.isBridge() || method.isSynthetic()) {
+                continue;
+            }
+            boolean       ioThread      = serviceBean.isIoThread() || this.isIoThread(serviceBean, method);
+            ServiceMethod serviceMethod = new ServiceMethod(serviceBean.getServiceName(), serviceBean.getBean(), method, ioThread);
+            serviceMethod.setInterceptors(interceptors);
+            methods.computeIfAbsent(method.getName(), name -> Lists.newArrayList()).add(serviceMethod);
+        }
+        return methods;
+    }
+
+    /**
+     * 实现方法上标注了@Command(ioThread = true)
+     */
+    private boolean isIoThread(ServiceBean serviceBean, Method method) {
+        Method  targetMethod = ClassUtils.getMostSpecificMethod(method, AopUtils.getTargetClass(serviceBean.getBean()));
+        Command command      = AnnotationUtils.findAnnotation(targetMethod, Command.class);
+        return null != command && command.ioThread();
+    }
+
+    /**
+     * 注解未配置压缩算法时返回null，使用netty全局配置
+     */
+    private static CompressEnum parseCompress(String compress) {
+        return StringUtils.isEmpty(compress) ? null : CompressEnum.valueOf(compress.toUpperCase());
+    }
+
+    /**
+     * 服务名是Bean实现的接口时只发布接口方法，否则发布目标类的所有公开方法
+     */
+    private Method[] publicMethods(ServiceBean serviceBean) {
+        Object   bean        = serviceBean.getBean();
+        Class<?> targetClass = AopUtils.getTargetClass(bean);
+        try {
+            Class<?> serviceType = ClassUtils.forName(serviceBean.getServiceName(), targetClass.getClassLoader());
+            if (serviceType.isInstance(bean)) {
+                return serviceType.getMethods();
+            }
+        } catch (ClassNotFoundException e) {
+            log.debug("Service class [{}] not found, use bean class [{}]", serviceBean.getServiceName(), targetClass.getName());
+        }
+        return targetClass.getMethods();
+    }
+
+    /**
+     * 根据参数类型查找服务方法
+     *
+     * @param serviceName    服务名
+     * @param methodName     方法名
+     * @param parameterTypes 参数类型，为null时只有方法没有重载才能找到
+     * @return 返回服务方法，没有完全一致的重载时按参数类型兼容查找，仍然找不到或者有多个兼容的重载时返回null
+     */
+    public ServiceMethod getServiceMethod(String serviceName, String methodName, Class<?>[] parameterTypes) {
+        List<ServiceMethod> overloads = this.overloads(serviceName, methodName);
+        if (null == overloads) {
+            return null;
+        }
+        if (null == parameterTypes) {
+            return overloads.size() == 1 ? overloads.get(0) : null;
+        }
+        for (ServiceMethod serviceMethod : overloads) {
+            if (serviceMethod.matches(parameterTypes)) {
+                return serviceMethod;
+            }
+        }
+        // 客户端接口的参数类型可能是服务端签名的子类或者包装类型，唯一兼容的重载即为目标方法
+        ServiceMethod assignable = null;
+        for (ServiceMethod serviceMethod : overloads) {
+            if (serviceMethod.isAssignableFrom(parameterTypes)) {
+                if (null != assignable) {
+                    return null;
+                }
+                assignable = serviceMethod;
+            }
+        }
+        return assignable;
+    }
+
+    /**
+     * 根据参数类型名查找服务方法
+     *
+     * @param serviceName        服务名
+     * @param methodName         方法名
+     * @param parameterTypeNames 参数类型全限定名，为null时只有方法没有重载才能找到
+     * @return 返回服务方法，没有完全一致的重载时，方法没有重载且参数个数一致即返回该方法，否则返回null
+     */
+    public ServiceMethod getServiceMethod(String serviceName, String methodName, List<String> parameterTypeNames) {
+        List<ServiceMethod> overloads = this.overloads(serviceName, methodName);
+        if (null == overloads) {
+            return null;
+        }
+        if (null == parameterTypeNames) {
+            return overloads.size() == 1 ? overloads.get(0) : null;
+        }
+        for (ServiceMethod serviceMethod : overloads) {
+            if (serviceMethod.matches(parameterTypeNames)) {
+                return serviceMethod;
+            }
+        }
+        // 类型名不一致时没有重载的方法仍然可以确定，参数由json按方法签名解析
+        if (overloads.size() == 1 && overloads.get(0).getParameterTypes().length == parameterTypeNames.size()) {
+            return overloads.get(0);
+        }
+        return null;
+    }
+
+    private List<ServiceMethod> overloads(String serviceName, String methodName) {
+        if (null == serviceName || null == methodName) {
+            return null;
+        }
+        Map<String, List<ServiceMethod>> methods = serviceMethods.get(serviceName);
+        return null != methods ? methods.get(methodName) : null;
     }
 
     /**
@@ -105,6 +254,11 @@ public class RpcMapping {
         }
         log.info("Add server interceptor [{}]", rpcServerInterceptor);
         this.serverInterceptors.add(rpcServerInterceptor);
+
+        // 已经发布的方法替换为新的拦截器链
+        List<RpcServerInterceptor> interceptors = ImmutableList.copyOf(serverInterceptors);
+        serviceMethods.values().forEach(methods -> methods.values()
+                .forEach(overloads -> overloads.forEach(serviceMethod -> serviceMethod.setInterceptors(interceptors))));
     }
 
     private static final class RpcMappingHolder {
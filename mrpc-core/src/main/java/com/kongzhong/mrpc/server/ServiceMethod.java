@@ -0,0 +1,182 @@
+package com.kongzhong.mrpc.server;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.kongzhong.mrpc.exception.SystemException;
+import com.kongzhong.mrpc.interceptor.RpcServerInterceptor;
+import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
+import com.kongzhong.mrpc.utils.ReflectUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 预编译的服务方法
+ * <p>
+ * 服务发布时为每个方法创建一次，持有绑定到服务Bean的MethodHandle和该方法的拦截器链，
+ * 请求处理时直接调用，不再每次创建FastClass和查找方法。
+ *
+ * @author biezhi
+ * 2017/4/24
+ */
+@Slf4j
+public class ServiceMethod {
+
+    private static final Object[] EMPTY_PARAMETERS = new Object[0];
+
+    /**
+     * 阻塞I/O线程达到该次数后切换回业务线程池
+     */
+    private static final int MAX_BLOCKED_COUNT = 3;
+
+    @Getter
+    private final String     serviceName;
+    @Getter
+    private final Object     bean;
+    @Getter
+    private final Method     method;
+    @Getter
+    private final Class<?>[] parameterTypes;
+
+    /**
+     * 泛型参数对应的JavaType，http请求体按此类型直接解析参数
+     */
+    @Getter
+    private final JavaType[] parameterJavaTypes;
+
+    /**
+     * 返回Iterator或Stream的流式方法，http传输下逐个元素分块写出
+     */
+    @Getter
+    private final boolean streaming;
+
+    /**
+     * (Object[])Object形式的调用句柄，参数数组展开后调用bean上的方法
+     */
+    private final MethodHandle invoker;
+
+    /**
+     * 该方法的拦截器链，拦截器变化时由RpcMapping整体替换
+     */
+    @Getter
+    private volatile List<RpcServerInterceptor> interceptors = Collections.emptyList();
+
+    /**
+     * 是否直接在I/O线程上执行，多次阻塞I/O线程后切换回业务线程池
+     */
+    @Getter
+    private volatile boolean ioThread;
+
+    /**
+     * 在I/O线程上执行超时的次数
+     */
+    private final AtomicInteger blockedCount = new AtomicInteger();
+
+    ServiceMethod(String serviceName, Object bean, Method method, boolean ioThread) {
+        this.serviceName = serviceName;
+        this.bean = bean;
+        this.method = method;
+        this.streaming = ReflectUtils.isStreamType(method.getReturnType());
+        // 流式方法写出时会等待连接可写，不能占用I/O线程
+        this.ioThread = ioThread && !streaming;
+        this.parameterTypes = method.getParameterTypes();
+        this.parameterJavaTypes = Stream.of(method.getGenericParameterTypes())
+                .map(JacksonSerialize::getJavaType)
+                .toArray(JavaType[]::new);
+        try {
+            method.setAccessible(true);
+            this.invoker = MethodHandles.lookup().unreflect(method)
+                    .bindTo(bean)
+                    .asSpreader(Object[].class, parameterTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (Exception e) {
+            throw new SystemException("Create invoker of [" + serviceName + "." + method.getName() + "] error", e);
+        }
+    }
+
+    void setInterceptors(List<RpcServerInterceptor> interceptors) {
+        this.interceptors = interceptors;
+    }
+
+    /**
+     * 直接调用服务方法，不经过拦截器
+     *
+     * @param parameters 方法参数，个数必须和方法签名一致
+     * @return 返回方法返回值
+     * @throws Throwable 服务方法抛出的异常原样抛出
+     */
+    public Object invoke(Object[] parameters) throws Throwable {
+        return invoker.invokeExact(null != parameters ? parameters : EMPTY_PARAMETERS);
+    }
+
+    /**
+     * 记录一次阻塞I/O线程的调用，达到上限后该方法改为在业务线程池执行
+     *
+     * @param elapsed 本次执行时间，单位/毫秒
+     */
+    void blocked(long elapsed) {
+        int count = blockedCount.incrementAndGet();
+        log.warn("Service method [{}.{}] blocked I/O thread {}ms, {} times", serviceName, method.getName(), elapsed, count);
+        if (ioThread && count >= MAX_BLOCKED_COUNT) {
+            ioThread = false;
+            log.warn("Service method [{}.{}] moved to business thread pool", serviceName, method.getName());
+        }
+    }
+
+    /**
+     * 参数类型是否和方法签名完全一致
+     */
+    boolean matches(Class<?>[] types) {
+        if (null == types) {
+            return parameterTypes.length == 0;
+        }
+        if (types.length != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] != parameterTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 参数类型是否都可以赋值给方法签名中的参数，基本类型和包装类型互相兼容，null表示参数值为null的任意引用类型
+     */
+    boolean isAssignableFrom(Class<?>[] types) {
+        if (types.length != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (null == types[i] ? parameterTypes[i].isPrimitive() : !ClassUtils.isAssignable(parameterTypes[i], types[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 参数类型名是否和方法签名完全一致
+     */
+    boolean matches(List<String> typeNames) {
+        if (typeNames.size() != parameterTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (!parameterTypes[i].getName().equals(typeNames.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.kongzhong.mrpc.server;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.kongzhong.mrpc.common.thread.AbortPolicyWithReport;
+import com.kongzhong.mrpc.common.thread.RpcThreadPool;
+import com.kongzhong.mrpc.enums.RejectPolicyEnum;
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 业务线程池
+ * <p>
+ * 共享业务线程池和服务独立线程池都使用该类，独立线程池隔离慢服务，一个服务占满自己的线程后不会影响其他服务。
+ *
+ * @author biezhi
+ * 2017/4/30
+ */
+public class ServiceThreadPool {
+
+    @Getter
+    private final String                   name;
+    @Getter
+    private final RejectPolicyEnum         rejectPolicy;
+    private final ThreadPoolExecutor       executor;
+    @Getter
+    private final ListeningExecutorService executorService;
+    @Getter
+    private final AbortPolicyWithReport    abortPolicy;
+
+    /**
+     * @param name         线程池名称，同时作为线程名前缀
+     * @param threads      线程数
+     * @param queues       队列长度，-1表示无界队列，0表示不排队
+     * @param rejectPolicy 线程池满时的拒绝策略
+     */
+    ServiceThreadPool(String name, int threads, int queues, RejectPolicyEnum rejectPolicy) {
+        this.name = name;
+        this.rejectPolicy = rejectPolicy;
+        this.executor = (ThreadPoolExecutor) RpcThreadPool.getExecutor(name, threads, queues);
+        this.executorService = MoreExecutors.listeningDecorator(executor);
+        this.abortPolicy = (AbortPolicyWithReport) executor.getRejectedExecutionHandler();
+    }
+
+    /**
+     * 线程池使用情况
+     *
+     * @return 返回线程数、活跃线程数、排队数、使用率以及拒绝和超时丢弃的任务数
+     */
+    public Map<String, Object> status() {
+        int                 active = executor.getActiveCount();
+        int                 max    = executor.getMaximumPoolSize();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("poolSize", executor.getPoolSize());
+        status.put("maxPoolSize", max);
+        status.put("activeCount", active);
+        status.put("queueSize", executor.getQueue().size());
+        status.put("queueRemaining", executor.getQueue().remainingCapacity());
+        status.put("completedTaskCount", executor.getCompletedTaskCount());
+        status.put("utilization", max > 0 ? (double) active / max : 0D);
+        status.put("rejected", abortPolicy.getRejected());
+        status.put("expired", abortPolicy.getExpired());
+        return status;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
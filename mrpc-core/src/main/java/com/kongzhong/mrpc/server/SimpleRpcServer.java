@@ -1,10 +1,9 @@
 package com.kongzhong.mrpc.server;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.*;
 import com.kongzhong.mrpc.Const;
-import com.kongzhong.mrpc.common.thread.RpcThreadPool;
+import com.kongzhong.mrpc.common.thread.AbortPolicyWithReport;
 import com.kongzhong.mrpc.config.AdminConfig;
 import com.kongzhong.mrpc.config.NettyConfig;
 import com.kongzhong.mrpc.config.ServerConfig;
@@ -13,23 +12,32 @@ import com.kongzhong.mrpc.embedded.ConfigServiceImpl;
 import com.kongzhong.mrpc.enums.EventType;
 import com.kongzhong.mrpc.enums.NodeStatusEnum;
 import com.kongzhong.mrpc.enums.RegistryEnum;
+import com.kongzhong.mrpc.enums.RejectPolicyEnum;
+import com.kongzhong.mrpc.enums.TransportEnum;
 import com.kongzhong.mrpc.event.EventManager;
 import com.kongzhong.mrpc.exception.InitializeException;
 import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.exception.OverloadException;
 import com.kongzhong.mrpc.exception.SystemException;
 import com.kongzhong.mrpc.model.*;
 import com.kongzhong.mrpc.registry.DefaultRegistry;
 import com.kongzhong.mrpc.registry.ServiceRegistry;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
 import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
+import com.kongzhong.mrpc.transport.http.Http2ServerChannelInitializer;
 import com.kongzhong.mrpc.transport.http.HttpServerChannelInitializer;
 import com.kongzhong.mrpc.transport.http.HttpServerHandler;
+import com.kongzhong.mrpc.transport.netty.NettyTransport;
+import com.kongzhong.mrpc.transport.tcp.TcpServerChannelInitializer;
 import com.kongzhong.mrpc.utils.*;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.ReferenceCountUtil;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -37,15 +45,17 @@ import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 import static com.kongzhong.mrpc.Const.COMMON_DATE_TIME_FORMATTER;
-import static com.kongzhong.mrpc.Const.HEADER_REQUEST_ID;
 
 /**
  * 抽象服务端请求处理器
@@ -78,11 +88,30 @@ public abstract class SimpleRpcServer {
     private static final Map<String, String> SERVER_CONTEXT = Maps.newHashMap();
 
     /**
-     * 服务端处理线程池
+     * 共享业务线程池，没有配置独立线程池的服务使用
      */
-    private static ListeningExecutorService LISTENING_EXECUTOR_SERVICE;
+    private static ServiceThreadPool SHARED_POOL;
 
-    private static List<ListenableFuture> listenableFutures = Lists.newCopyOnWriteArrayList();
+    /**
+     * 每个连接上未完成的请求，停机时等待这些请求完成
+     */
+    private static final InFlightRequests IN_FLIGHT_REQUESTS = InFlightRequests.me();
+
+    /**
+     * 服务独立线程池 [服务名->线程池]
+     */
+    private static final Map<String, ServiceThreadPool> SERVICE_POOLS = Maps.newConcurrentMap();
+
+    /**
+     * 业务线程池队列长度和请求最长排队时间
+     */
+    private static int BUSINESS_QUEUE_SIZE = -1;
+    private static int MAX_QUEUE_TIME;
+
+    /**
+     * I/O线程上执行的服务方法超过该时间视为阻塞
+     */
+    private static int IO_THREAD_BLOCK_TIME;
 
     /**
      * 服务端拦截器，多个用逗号相隔，顺序拦截
@@ -125,6 +154,13 @@ public abstract class SimpleRpcServer {
     @Setter
     protected String serialize;
 
+    /**
+     * 传输协议，http/tcp，默认http
+     */
+    @Getter
+    @Setter
+    protected String transport;
+
     /**
      * appId
      */
@@ -183,6 +219,9 @@ public abstract class SimpleRpcServer {
         if (null == serialize) {
             serialize = "kyro";
         }
+        if (StringUtils.isEmpty(transport)) {
+            transport = TransportEnum.HTTP.name();
+        }
 
         if (CollectionUtils.isNotEmpty(SERVICE_REGISTRY_MAP)) {
             usedRegistry = true;
@@ -200,14 +239,127 @@ public abstract class SimpleRpcServer {
             throw new InitializeException("RPC server serialize is null.");
         }
 
+        ServerConfig.me().setRpcSerialize(rpcSerialize);
+        ServerConfig.me().setTransport(TransportEnum.valueOf(transport.toUpperCase()));
+
         int businessThreadPoolSize = nettyConfig.getBusinessThreadPoolSize();
-        setListeningExecutorService(businessThreadPoolSize);
+        setListeningExecutorService(businessThreadPoolSize, nettyConfig.getBusinessQueueSize(), nettyConfig.getMaxQueueTime());
+        IO_THREAD_BLOCK_TIME = nettyConfig.getIoThreadBlockTime();
     }
 
     public static void setListeningExecutorService(int businessThreadPoolSize) {
-        LISTENING_EXECUTOR_SERVICE = MoreExecutors.listeningDecorator((ThreadPoolExecutor) RpcThreadPool.getExecutor(businessThreadPoolSize, -1));
+        setListeningExecutorService(businessThreadPoolSize, BUSINESS_QUEUE_SIZE, MAX_QUEUE_TIME);
+    }
+
+    /**
+     * 创建业务线程池
+     *
+     * @param businessThreadPoolSize 线程数
+     * @param businessQueueSize      队列长度，-1表示无界队列，0表示不排队
+     * @param maxQueueTime           请求最长排队时间，单位/毫秒，0表示不限制
+     */
+    public static void setListeningExecutorService(int businessThreadPoolSize, int businessQueueSize, int maxQueueTime) {
+        BUSINESS_QUEUE_SIZE = businessQueueSize;
+        MAX_QUEUE_TIME = maxQueueTime;
+        SHARED_POOL = new ServiceThreadPool("mrpc-pool", businessThreadPoolSize, businessQueueSize, RejectPolicyEnum.ABORT);
+    }
+
+    public static AbortPolicyWithReport getAbortPolicy() {
+        return null != SHARED_POOL ? SHARED_POOL.getAbortPolicy() : null;
+    }
+
+    /**
+     * 所有业务线程池的使用情况
+     *
+     * @return 返回[线程池名称->使用情况]，共享业务线程池的名称为default
+     */
+    public static Map<String, Map<String, Object>> getThreadPoolStatus() {
+        Map<String, Map<String, Object>> status = new LinkedHashMap<>();
+        if (null != SHARED_POOL) {
+            status.put("default", SHARED_POOL.status());
+        }
+        SERVICE_POOLS.forEach((serviceName, pool) -> status.put(serviceName, pool.status()));
+        return status;
+    }
+
+    /**
+     * 获取服务使用的线程池，配置了独立线程池的服务第一次请求时创建
+     */
+    private static ServiceThreadPool servicePool(String serviceName) {
+        ServiceThreadPool pool = SERVICE_POOLS.get(serviceName);
+        if (null != pool) {
+            return pool;
+        }
+        ServiceBean serviceBean = RpcMapping.me().getServiceBeanMap().get(serviceName);
+        if (null == serviceBean || serviceBean.getThreadPoolSize() <= 0) {
+            return SHARED_POOL;
+        }
+        return SERVICE_POOLS.computeIfAbsent(serviceName, name -> new ServiceThreadPool(
+                "mrpc-pool-" + name.substring(name.lastIndexOf('.') + 1),
+                serviceBean.getThreadPoolSize(), serviceBean.getQueueSize(), serviceBean.getRejectPolicy()));
+    }
+
+    /**
+     * 提交到业务线程池执行
+     * <p>
+     * 队列满或者请求排队时间超过上限时不再执行服务方法，直接返回过载响应，
+     * 过载的服务端只处理客户端还在等待的请求，延迟有上界，负载下降后能很快恢复。
+     */
+    private static <T> ListenableFuture<T> execute(AbstractResponseInvoker<T> task) {
+        long enqueueTime = System.nanoTime();
+        // 客户端传来的是剩余时间，截止时间按本地时钟计算，不受两端时钟偏差影响
+        if (task.request.getWaitTimeout() > 0) {
+            task.request.setDeadline(enqueueTime + TimeUnit.MILLISECONDS.toNanos(task.request.getWaitTimeout()));
+        }
+        ServiceMethod serviceMethod = task.getServiceMethod();
+        if (null != serviceMethod && serviceMethod.isIoThread()) {
+            return executeOnIoThread(serviceMethod, task);
+        }
+        ServiceThreadPool pool = servicePool(task.request.getClassName());
+        try {
+            return execute(pool, task, enqueueTime);
+        } catch (RejectedExecutionException e) {
+            // 不在接收请求的I/O线程上执行，慢服务占满线程池后不能阻塞该EventLoop上的其他连接
+            if (pool.getRejectPolicy() == RejectPolicyEnum.SHARED && pool != SHARED_POOL) {
+                try {
+                    return execute(SHARED_POOL, task, enqueueTime);
+                } catch (RejectedExecutionException e1) {
+                    log.debug("Shared pool rejected [{}]", task.request.getRequestId());
+                }
+            }
+            return task.reject(new OverloadException("Server overloaded, thread pool [" + pool.getName() + "] is full."));
+        }
+    }
+
+    /**
+     * 在接收请求的I/O线程上直接执行，省去两次线程切换，执行时间过长时记录阻塞
+     */
+    private static <T> ListenableFuture<T> executeOnIoThread(ServiceMethod serviceMethod, AbstractResponseInvoker<T> task) {
+        long startTime = System.nanoTime();
+        try {
+            return task.call();
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        } finally {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            if (IO_THREAD_BLOCK_TIME > 0 && elapsed > IO_THREAD_BLOCK_TIME) {
+                serviceMethod.blocked(elapsed);
+            }
+        }
     }
 
+    private static <T> ListenableFuture<T> execute(ServiceThreadPool pool, AbstractResponseInvoker<T> task, long enqueueTime) {
+        return Futures.dereference(pool.getExecutorService().submit(() -> {
+            long queueTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueueTime);
+            if (MAX_QUEUE_TIME > 0 && queueTime > MAX_QUEUE_TIME) {
+                pool.getAbortPolicy().reportExpired(queueTime);
+                return task.reject(new OverloadException("Server overloaded, request queued " + queueTime + "ms."));
+            }
+            return task.call();
+        }));
+    }
+
+
     private void bindRpcServer() {
 
         if (enableAdmin()) {
@@ -220,16 +372,19 @@ public abstract class SimpleRpcServer {
 //        ThreadFactory threadRpcFactory = new NamedThreadFactory(poolName);
 //        int parallel = Runtime.getRuntime().availableProcessors() * 2;
 
-        EventLoopGroup boss   = new NioEventLoopGroup(1);
-        EventLoopGroup worker = new NioEventLoopGroup();
+        // SO_REUSEPORT下每个acceptor占用一个boss线程
+        int            bossThreads = nettyConfig.isReusePort() ? Math.max(nettyConfig.getBossThreads(), nettyConfig.getAcceptors()) : nettyConfig.getBossThreads();
+        EventLoopGroup boss        = NettyTransport.newEventLoopGroup(bossThreads, nettyConfig);
+        EventLoopGroup worker      = NettyTransport.newEventLoopGroup(nettyConfig.getWorkerThreads(), nettyConfig);
 
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(boss, worker).channel(NioServerSocketChannel.class)
-                    .childHandler(new HttpServerChannelInitializer())
+            bootstrap.group(boss, worker)
+                    .childHandler(this.createChannelInitializer())
                     .option(ChannelOption.SO_BACKLOG, nettyConfig.getBacklog())
                     .childOption(ChannelOption.SO_KEEPALIVE, nettyConfig.isKeepalive())
                     .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(nettyConfig.getLowWaterMark(), nettyConfig.getHighWaterMark()));
+            NettyTransport.server(bootstrap, nettyConfig);
 
             String[] ipAddress = address.split(":");
             String   host      = null;
@@ -248,7 +403,11 @@ public abstract class SimpleRpcServer {
 
             //获取服务器IP地址和端口
             ServerConfig.me().setElasticIp(elasticIp);
-            ChannelFuture future = bootstrap.bind(host, port).sync();
+            ChannelFuture future    = bootstrap.bind(host, port).sync();
+            int           acceptors = NettyTransport.acceptors(bootstrap, nettyConfig);
+            for (int i = 1; i < acceptors; i++) {
+                bootstrap.bind(host, port).sync();
+            }
 
             this.registerEmbedded();
 
@@ -283,7 +442,8 @@ public abstract class SimpleRpcServer {
                 }
             });
 
-            log.info("Publish services finished, mrpc version [{}]", Const.VERSION);
+            log.info("Publish services finished, transport [{}], {} acceptor(s) on {}, mrpc version [{}]",
+                    transport.toLowerCase(), acceptors, boss.getClass().getSimpleName(), Const.VERSION);
 
             // 服务启动后
             EventManager.fireEvent(EventType.SERVER_ONLINE);
@@ -300,6 +460,21 @@ public abstract class SimpleRpcServer {
         }
     }
 
+    /**
+     * 根据传输协议创建服务端ChannelInitializer
+     *
+     * @return 返回http、h2c或tcp的ChannelInitializer
+     */
+    private ChannelInitializer<SocketChannel> createChannelInitializer() {
+        if (ServerConfig.me().getTransport() == TransportEnum.TCP) {
+            return new TcpServerChannelInitializer(ServerConfig.me().getRpcSerialize(), nettyConfig);
+        }
+        if (ServerConfig.me().getTransport() == TransportEnum.H2C) {
+            return new Http2ServerChannelInitializer(nettyConfig);
+        }
+        return new HttpServerChannelInitializer(nettyConfig);
+    }
+
     /**
      * 注册内置服务
      */
@@ -442,16 +617,21 @@ public abstract class SimpleRpcServer {
 
     /**
      * 提交任务,异步获取结果.
+     * <p>
+     * 任务返回的Future在服务方法（包括异步返回值）完成后才完成，回调直接在完成的线程上写出响应，不再占用业务线程。
      *
      * @param task     任务
      * @param ctx      Netty上下文
      * @param request  RpcRequest请求对象
      * @param response RpcResponse请求对象
      */
-    public static void submit(Callable<Boolean> task, final ChannelHandlerContext ctx, final RpcRequest request, final RpcResponse response) {
+    public static void submit(AbstractResponseInvoker<Boolean> task, final ChannelHandlerContext ctx, final RpcRequest request, final RpcResponse response) {
+
+        Channel channel = ctx.channel();
+        IN_FLIGHT_REQUESTS.acquire(channel);
 
         //提交任务, 异步获取结果
-        ListenableFuture<Boolean> listenableFuture = LISTENING_EXECUTOR_SERVICE.submit(task);
+        ListenableFuture<Boolean> listenableFuture = execute(task);
 
         //注册回调函数, 在task执行完之后 异步调用回调函数
         Futures.addCallback(listenableFuture, new FutureCallback<Boolean>() {
@@ -462,28 +642,84 @@ public abstract class SimpleRpcServer {
                 String requestId = request.getRequestId();
                 ctx.writeAndFlush(response).addListener((ChannelFutureListener) channelFuture -> {
                     log.debug("Server execute [{}] success.", requestId);
-                    listenableFutures.remove(listenableFuture);
+                    IN_FLIGHT_REQUESTS.release(channel);
                 });
             }
 
             @Override
             public void onFailure(Throwable t) {
-//                log.error("", t);
+                log.error("Server execute [{}] error", request.getRequestId(), t);
+                // 构建响应出错时返回异常响应，客户端不用等到超时
+                response.setResult(null);
+                task.buildErrorResponse(t, response);
+                if (channel.isActive()) {
+                    ctx.writeAndFlush(response).addListener((ChannelFutureListener) channelFuture -> IN_FLIGHT_REQUESTS.release(channel));
+                } else {
+                    IN_FLIGHT_REQUESTS.release(channel);
+                }
             }
-        }, LISTENING_EXECUTOR_SERVICE);
-        listenableFutures.add(listenableFuture);
+        }, MoreExecutors.directExecutor());
     }
 
-    public static void submit(Callable<FullHttpResponse> task, final ChannelHandlerContext ctx) {
+    /**
+     * 提交http请求，流式方法的任务在执行中写出响应头和分块，返回的是最后一个分块
+     *
+     * @param task        任务
+     * @param httpRequest 请求，构建响应出错时按它返回错误响应
+     * @param ctx         Netty上下文
+     */
+    public static void submit(AbstractResponseInvoker<? extends HttpObject> task, HttpMessage httpRequest, final ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
+        IN_FLIGHT_REQUESTS.acquire(channel);
+
         //提交任务, 异步获取结果
-        ListenableFuture<FullHttpResponse> listenableFuture = LISTENING_EXECUTOR_SERVICE.submit(task);
+        ListenableFuture<? extends HttpObject> listenableFuture = execute(task);
+        writeResponse(listenableFuture, task.request.getRequestId(), httpRequest, ctx);
+    }
+
+    /**
+     * 批量请求中的调用分别提交到所属服务的线程池并行执行，全部完成后合并为一个http响应写回
+     * <p>
+     * 每个调用的成功或异常各自放在自己的RpcResponse中，某个调用构建响应出错不影响其他调用。
+     *
+     * @param tasks       批量中的调用，rejects中对应位置不为null的调用不再执行，直接以该异常响应
+     * @param rejects     服务或方法不存在等原因在执行前就已经失败的调用
+     * @param merger      按请求顺序合并所有调用的响应
+     * @param httpRequest 批量请求，合并出错时按它返回整个批量的错误响应
+     * @param ctx         NettyChannel上下文
+     */
+    public static void submitBatch(List<? extends AbstractResponseInvoker<RpcResponse>> tasks, List<Throwable> rejects,
+                                   AsyncFunction<List<RpcResponse>, FullHttpResponse> merger, HttpMessage httpRequest, final ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
+        IN_FLIGHT_REQUESTS.acquire(channel);
+
+        List<ListenableFuture<RpcResponse>> futures = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            AbstractResponseInvoker<RpcResponse> task = tasks.get(i);
+            ListenableFuture<RpcResponse> future = null != rejects.get(i) ? task.reject(rejects.get(i)) : execute(task);
+            futures.add(Futures.catching(future, Throwable.class, t -> {
+                log.error("Server execute [{}] error", task.request.getRequestId(), t);
+                RpcResponse response = new RpcResponse();
+                response.setRequestId(task.request.getRequestId());
+                task.buildErrorResponse(t, response);
+                return response;
+            }));
+        }
+        String requestIds = tasks.stream().map(invoker -> invoker.request.getRequestId()).collect(Collectors.joining(","));
+        writeResponse(Futures.transformAsync(Futures.allAsList(futures), merger, MoreExecutors.directExecutor()), requestIds, httpRequest, ctx);
+    }
+
+    /**
+     * 响应完成后写回客户端，写出后归还连接上的未完成请求名额；构建响应出错时返回错误响应，客户端不用等到超时
+     */
+    private static void writeResponse(ListenableFuture<? extends HttpObject> listenableFuture, String requestId,
+                                      HttpMessage httpRequest, final ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
         //注册回调函数, 在task执行完之后 异步调用回调函数
-        Futures.addCallback(listenableFuture, new FutureCallback<FullHttpResponse>() {
+        Futures.addCallback(listenableFuture, new FutureCallback<HttpObject>() {
             @Override
-            public void onSuccess(FullHttpResponse response) {
+            public void onSuccess(HttpObject response) {
                 //为返回msg回客户端添加一个监听器,当消息成功发送回客户端时被异步调用
-                String requestId = response.headers().get(HEADER_REQUEST_ID);
-
                 if (ctx.channel().isActive()) {
                     ctx.writeAndFlush(response).addListener((ChannelFutureListener) channelFuture -> {
                         if (channelFuture.isSuccess()) {
@@ -491,16 +727,33 @@ public abstract class SimpleRpcServer {
                         } else {
                             log.debug("Server send to {} fail, requestId [{}]", ctx.channel(), requestId);
                         }
-                        listenableFutures.remove(listenableFuture);
+                        IN_FLIGHT_REQUESTS.release(channel);
                     });
+                } else {
+                    // 响应体是池化的ByteBuf，没有写出时需要释放
+                    ReferenceCountUtil.release(response);
+                    IN_FLIGHT_REQUESTS.release(channel);
                 }
             }
             @Override
             public void onFailure(Throwable t) {
-                log.error("", t);
+                log.error("Server execute [{}] error", requestId, t);
+                if (!channel.isActive()) {
+                    IN_FLIGHT_REQUESTS.release(channel);
+                    return;
+                }
+                FullHttpResponse errorResponse;
+                try {
+                    errorResponse = HttpServerHandler.errorResponse(httpRequest, HttpResponseStatus.INTERNAL_SERVER_ERROR,
+                            new RpcException("Server build response error: " + t.getMessage()));
+                } catch (Exception e) {
+                    log.error("Server build error response [{}] error", requestId, e);
+                    IN_FLIGHT_REQUESTS.release(channel);
+                    return;
+                }
+                ctx.writeAndFlush(errorResponse).addListener((ChannelFutureListener) channelFuture -> IN_FLIGHT_REQUESTS.release(channel));
             }
-        }, LISTENING_EXECUTOR_SERVICE);
-        listenableFutures.add(listenableFuture);
+        }, MoreExecutors.directExecutor());
     }
 
     /**
@@ -557,16 +810,11 @@ public abstract class SimpleRpcServer {
             log.info("UnRegistering mrpc server on shutdown");
             isClosed = true;
 
-            // 拒绝连接
+            // 第一阶段：拒绝新请求，从注册中心摘除节点，并在已有连接上通知客户端不再路由到本节点。
+            // h2c连接发送GOAWAY，http/1.1连接的响应带上Connection: close；tcp协议没有可以主动发送的通知，
+            // 只有通过注册中心发现服务的客户端会避开本节点，直连的tcp客户端在连接关闭或收到下线异常后切换
             HttpServerHandler.offline();
-
-            for (ListenableFuture listenableFuture : listenableFutures) {
-                while (!listenableFuture.isDone()) {
-                    TimeUtils.sleep(100);
-                }
-            }
-
-            LISTENING_EXECUTOR_SERVICE.shutdown();
+            IN_FLIGHT_REQUESTS.offline();
             rpcMapping.getServiceBeanMap().values().forEach(serviceBean -> {
                 String          serviceName     = serviceBean.getServiceName();
                 ServiceRegistry serviceRegistry = getRegistry(serviceBean);
@@ -579,6 +827,22 @@ public abstract class SimpleRpcServer {
                     log.error("UnRegister service error", e);
                 }
             });
+
+            // 第二阶段：关闭空闲连接，等待未完成的请求，连接上的请求完成后关闭该连接
+            IN_FLIGHT_REQUESTS.drain();
+            int drainTimeout = null != nettyConfig ? nettyConfig.getDrainTimeout() : 0;
+            if (IN_FLIGHT_REQUESTS.awaitDrained(drainTimeout)) {
+                log.info("All in-flight requests finished");
+            } else {
+                log.warn("Drain timeout after {}ms, {} requests in flight", drainTimeout, IN_FLIGHT_REQUESTS.getInFlight());
+            }
+
+            // 第三阶段：关闭连接和业务线程池
+            IN_FLIGHT_REQUESTS.closeAll();
+            if (null != SHARED_POOL) {
+                SHARED_POOL.shutdown();
+            }
+            SERVICE_POOLS.values().forEach(ServiceThreadPool::shutdown);
         } finally {
             lock.unlock();
         }
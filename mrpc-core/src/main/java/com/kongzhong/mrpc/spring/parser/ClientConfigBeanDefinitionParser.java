@@ -27,6 +27,7 @@ public class ClientConfigBeanDefinitionParser extends AbstractBeanDefinitionPars
         String pingInterval = element.getAttribute("pingInterval");
 
         builder.addPropertyValue("appId", appId);
+        builder.addPropertyValue("transport", transport);
         builder.addPropertyValue("serialize", serialize);
         builder.addPropertyValue("directAddress", directAddress);
         builder.addPropertyValue("haStrategy", haStrategy);
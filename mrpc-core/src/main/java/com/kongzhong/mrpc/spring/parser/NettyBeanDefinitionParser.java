@@ -1,6 +1,8 @@
 package com.kongzhong.mrpc.spring.parser;
 
 import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.enums.CompressEnum;
+import com.kongzhong.mrpc.enums.OverloadPolicyEnum;
 import com.kongzhong.mrpc.utils.StringUtils;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
@@ -16,8 +18,33 @@ public class NettyBeanDefinitionParser extends AbstractBeanDefinitionParser {
 
         String connTimeout = element.getAttribute("connTimeout");
         String backlog = element.getAttribute("backlog");
+        String businessQueueSize = element.getAttribute("businessQueueSize");
+        String maxQueueTime = element.getAttribute("maxQueueTime");
+        String ioThreadBlockTime = element.getAttribute("ioThreadBlockTime");
+        String drainTimeout = element.getAttribute("drainTimeout");
         String lowWaterMark = element.getAttribute("lowWaterMark");
         String highWaterMark = element.getAttribute("highWaterMark");
+        String minConnections = element.getAttribute("minConnections");
+        String maxConnections = element.getAttribute("maxConnections");
+        String connectionPending = element.getAttribute("connectionPending");
+        String connectionIdleTime = element.getAttribute("connectionIdleTime");
+        String maxInFlight = element.getAttribute("maxInFlight");
+        String overloadPolicy = element.getAttribute("overloadPolicy");
+        String overloadWaitTime = element.getAttribute("overloadWaitTime");
+        String flushBatch = element.getAttribute("flushBatch");
+        String flushBatchCount = element.getAttribute("flushBatchCount");
+        String flushBatchBytes = element.getAttribute("flushBatchBytes");
+        String nativeEpoll = element.getAttribute("nativeEpoll");
+        String bossThreads = element.getAttribute("bossThreads");
+        String workerThreads = element.getAttribute("workerThreads");
+        String tcpNoDelay = element.getAttribute("tcpNoDelay");
+        String tcpQuickAck = element.getAttribute("tcpQuickAck");
+        String reusePort = element.getAttribute("reusePort");
+        String acceptors = element.getAttribute("acceptors");
+        String maxRequestSize = element.getAttribute("maxRequestSize");
+        String maxResponseSize = element.getAttribute("maxResponseSize");
+        String compress = element.getAttribute("compress");
+        String compressThreshold = element.getAttribute("compressThreshold");
 
         if (StringUtils.isNotEmpty(connTimeout)) {
             builder.addPropertyValue("connTimeout", Integer.valueOf(connTimeout));
@@ -27,6 +54,22 @@ public class NettyBeanDefinitionParser extends AbstractBeanDefinitionParser {
             builder.addPropertyValue("backlog", Integer.valueOf(backlog));
         }
 
+        if (StringUtils.isNotEmpty(businessQueueSize)) {
+            builder.addPropertyValue("businessQueueSize", Integer.valueOf(businessQueueSize));
+        }
+
+        if (StringUtils.isNotEmpty(maxQueueTime)) {
+            builder.addPropertyValue("maxQueueTime", Integer.valueOf(maxQueueTime));
+        }
+
+        if (StringUtils.isNotEmpty(ioThreadBlockTime)) {
+            builder.addPropertyValue("ioThreadBlockTime", Integer.valueOf(ioThreadBlockTime));
+        }
+
+        if (StringUtils.isNotEmpty(drainTimeout)) {
+            builder.addPropertyValue("drainTimeout", Integer.valueOf(drainTimeout));
+        }
+
         if (StringUtils.isNotEmpty(lowWaterMark)) {
             builder.addPropertyValue("lowWaterMark", Integer.valueOf(lowWaterMark));
         }
@@ -35,6 +78,90 @@ public class NettyBeanDefinitionParser extends AbstractBeanDefinitionParser {
             builder.addPropertyValue("highWaterMark", Integer.valueOf(highWaterMark));
         }
 
+        if (StringUtils.isNotEmpty(minConnections)) {
+            builder.addPropertyValue("minConnections", Integer.valueOf(minConnections));
+        }
+
+        if (StringUtils.isNotEmpty(maxConnections)) {
+            builder.addPropertyValue("maxConnections", Integer.valueOf(maxConnections));
+        }
+
+        if (StringUtils.isNotEmpty(connectionPending)) {
+            builder.addPropertyValue("connectionPending", Integer.valueOf(connectionPending));
+        }
+
+        if (StringUtils.isNotEmpty(connectionIdleTime)) {
+            builder.addPropertyValue("connectionIdleTime", Integer.valueOf(connectionIdleTime));
+        }
+
+        if (StringUtils.isNotEmpty(maxInFlight)) {
+            builder.addPropertyValue("maxInFlight", Integer.valueOf(maxInFlight));
+        }
+
+        if (StringUtils.isNotEmpty(overloadPolicy)) {
+            builder.addPropertyValue("overloadPolicy", OverloadPolicyEnum.valueOf(overloadPolicy.toUpperCase()));
+        }
+
+        if (StringUtils.isNotEmpty(overloadWaitTime)) {
+            builder.addPropertyValue("overloadWaitTime", Integer.valueOf(overloadWaitTime));
+        }
+
+        if (StringUtils.isNotEmpty(flushBatch)) {
+            builder.addPropertyValue("flushBatch", Boolean.valueOf(flushBatch));
+        }
+
+        if (StringUtils.isNotEmpty(flushBatchCount)) {
+            builder.addPropertyValue("flushBatchCount", Integer.valueOf(flushBatchCount));
+        }
+
+        if (StringUtils.isNotEmpty(flushBatchBytes)) {
+            builder.addPropertyValue("flushBatchBytes", Integer.valueOf(flushBatchBytes));
+        }
+
+        if (StringUtils.isNotEmpty(nativeEpoll)) {
+            builder.addPropertyValue("nativeEpoll", Boolean.valueOf(nativeEpoll));
+        }
+
+        if (StringUtils.isNotEmpty(bossThreads)) {
+            builder.addPropertyValue("bossThreads", Integer.valueOf(bossThreads));
+        }
+
+        if (StringUtils.isNotEmpty(workerThreads)) {
+            builder.addPropertyValue("workerThreads", Integer.valueOf(workerThreads));
+        }
+
+        if (StringUtils.isNotEmpty(tcpNoDelay)) {
+            builder.addPropertyValue("tcpNoDelay", Boolean.valueOf(tcpNoDelay));
+        }
+
+        if (StringUtils.isNotEmpty(tcpQuickAck)) {
+            builder.addPropertyValue("tcpQuickAck", Boolean.valueOf(tcpQuickAck));
+        }
+
+        if (StringUtils.isNotEmpty(reusePort)) {
+            builder.addPropertyValue("reusePort", Boolean.valueOf(reusePort));
+        }
+
+        if (StringUtils.isNotEmpty(acceptors)) {
+            builder.addPropertyValue("acceptors", Integer.valueOf(acceptors));
+        }
+
+        if (StringUtils.isNotEmpty(maxRequestSize)) {
+            builder.addPropertyValue("maxRequestSize", Integer.valueOf(maxRequestSize));
+        }
+
+        if (StringUtils.isNotEmpty(maxResponseSize)) {
+            builder.addPropertyValue("maxResponseSize", Integer.valueOf(maxResponseSize));
+        }
+
+        if (StringUtils.isNotEmpty(compress)) {
+            builder.addPropertyValue("compress", CompressEnum.valueOf(compress.toUpperCase()));
+        }
+
+        if (StringUtils.isNotEmpty(compressThreshold)) {
+            builder.addPropertyValue("compressThreshold", Integer.valueOf(compressThreshold));
+        }
+
         return builder.getBeanDefinition();
     }
 
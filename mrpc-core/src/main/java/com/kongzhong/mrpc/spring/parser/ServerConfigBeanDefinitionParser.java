@@ -30,6 +30,7 @@ public class ServerConfigBeanDefinitionParser extends AbstractBeanDefinitionPars
         }
         builder.addPropertyValue("elasticIp", elasticIp);
         builder.addPropertyValue("serialize", serialize);
+        builder.addPropertyValue("transport", transport);
         builder.addPropertyValue("interceptors", interceptors);
         builder.addPropertyValue("test", test);
 
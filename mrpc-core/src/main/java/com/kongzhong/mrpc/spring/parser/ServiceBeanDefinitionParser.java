@@ -1,5 +1,7 @@
 package com.kongzhong.mrpc.spring.parser;
 
+import com.kongzhong.mrpc.enums.CompressEnum;
+import com.kongzhong.mrpc.enums.RejectPolicyEnum;
 import com.kongzhong.mrpc.model.ServiceBean;
 import com.kongzhong.mrpc.utils.StringUtils;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
@@ -21,6 +23,13 @@ public class ServiceBeanDefinitionParser extends AbstractBeanDefinitionParser {
         String address = element.getAttribute("address");
         String elasticIp = element.getAttribute("elasticIp");
         String registry = element.getAttribute("registry");
+        String maxRequestSize = element.getAttribute("maxRequestSize");
+        String maxResponseSize = element.getAttribute("maxResponseSize");
+        String threadPoolSize = element.getAttribute("threadPoolSize");
+        String queueSize = element.getAttribute("queueSize");
+        String rejectPolicy = element.getAttribute("rejectPolicy");
+        String ioThread = element.getAttribute("ioThread");
+        String compress = element.getAttribute("compress");
 
         builder.addPropertyValue("serviceName", serviceName);
         if (StringUtils.isNotEmpty(appId)) {
@@ -44,6 +53,27 @@ public class ServiceBeanDefinitionParser extends AbstractBeanDefinitionParser {
         if (StringUtils.isNotEmpty(version)) {
             builder.addPropertyValue("version", version);
         }
+        if (StringUtils.isNotEmpty(maxRequestSize)) {
+            builder.addPropertyValue("maxRequestSize", Integer.valueOf(maxRequestSize));
+        }
+        if (StringUtils.isNotEmpty(maxResponseSize)) {
+            builder.addPropertyValue("maxResponseSize", Integer.valueOf(maxResponseSize));
+        }
+        if (StringUtils.isNotEmpty(threadPoolSize)) {
+            builder.addPropertyValue("threadPoolSize", Integer.valueOf(threadPoolSize));
+        }
+        if (StringUtils.isNotEmpty(queueSize)) {
+            builder.addPropertyValue("queueSize", Integer.valueOf(queueSize));
+        }
+        if (StringUtils.isNotEmpty(rejectPolicy)) {
+            builder.addPropertyValue("rejectPolicy", RejectPolicyEnum.valueOf(rejectPolicy.toUpperCase()));
+        }
+        if (StringUtils.isNotEmpty(ioThread)) {
+            builder.addPropertyValue("ioThread", Boolean.valueOf(ioThread));
+        }
+        if (StringUtils.isNotEmpty(compress)) {
+            builder.addPropertyValue("compress", CompressEnum.valueOf(compress.toUpperCase()));
+        }
         return builder.getBeanDefinition();
     }
 
@@ -0,0 +1,51 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.Const;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.model.ServiceBean;
+import com.kongzhong.mrpc.server.AbstractResponseInvoker;
+import com.kongzhong.mrpc.server.SimpleRpcServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * 批量请求中单个调用的响应回调处理，所有调用完成后由HttpServerHandler合并为一个http响应
+ *
+ * @author biezhi
+ * 2017/5/8
+ */
+@Slf4j
+public class BatchResponseInvoker extends AbstractResponseInvoker<RpcResponse> {
+
+    public BatchResponseInvoker(RpcRequest request, Map<String, ServiceBean> serviceBeanMap) {
+        super(request, null, serviceBeanMap);
+    }
+
+    @Override
+    protected RpcResponse buildResponse(Object result, Throwable t) throws Exception {
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setRequestId(request.getRequestId());
+        if (null != request.getContext()) {
+            rpcResponse.getContext().putAll(request.getContext());
+        }
+        rpcResponse.getContext().putIfAbsent(Const.APP_NAME, SimpleRpcServer.getContext(Const.APP_NAME));
+        rpcResponse.getContext().putIfAbsent(Const.SERVER_OWNER, SimpleRpcServer.getContext(Const.SERVER_OWNER));
+
+        if (null == t) {
+            rpcResponse.setResult(collectStream(result));
+            if (null != request.getReturnType()) {
+                rpcResponse.setReturnType(request.getReturnType().getName());
+            }
+            rpcResponse.setSuccess(true);
+        } else {
+            t = buildErrorResponse(t, rpcResponse);
+            if (SimpleRpcServer.PRINT_ERROR_LOG) {
+                log.error("Service method invoke error", t);
+            }
+        }
+        return rpcResponse;
+    }
+
+}
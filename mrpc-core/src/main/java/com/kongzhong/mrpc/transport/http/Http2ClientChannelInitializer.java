@@ -0,0 +1,39 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.transport.netty.FlushBatchHandler;
+import com.kongzhong.mrpc.transport.netty.NettyClient;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http2.Http2MultiplexCodecBuilder;
+
+/**
+ * h2c客户端ChannelInitializer
+ * <p>
+ * 以prior knowledge方式直接使用http/2，连接上只有帧编解码，每次请求由HttpClientHandler新建一个流发送。
+ *
+ * @author biezhi
+ * 2017/5/3
+ */
+public class Http2ClientChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    private NettyClient nettyClient;
+
+    public Http2ClientChannelInitializer(NettyClient nettyClient) {
+        this.nettyClient = nettyClient;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel socketChannel) throws Exception {
+        NettyConfig       nettyConfig       = nettyClient.getNettyConfig();
+        HttpClientHandler httpClientHandler = new HttpClientHandler(nettyClient, true);
+
+        socketChannel.pipeline()
+                // 每次请求新建一个流，流的响应聚合后交给HttpClientHandler
+                .addLast(Http2MultiplexCodecBuilder.forClient(new Http2StreamInitializer(nettyClient, httpClientHandler)).build())
+                .addLast(httpClientHandler);
+        if (nettyConfig.isFlushBatch()) {
+            socketChannel.pipeline().addFirst(new FlushBatchHandler(nettyConfig.getFlushBatchCount(), nettyConfig.getFlushBatchBytes()));
+        }
+    }
+}
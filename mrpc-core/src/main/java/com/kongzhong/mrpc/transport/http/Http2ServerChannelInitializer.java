@@ -0,0 +1,72 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.server.RpcMapping;
+import com.kongzhong.mrpc.transport.netty.FlushBatchHandler;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.*;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AsciiString;
+
+/**
+ * h2c服务端ChannelInitializer
+ * <p>
+ * 每个RPC请求是一个http/2流，流内转换为http对象后复用http传输的聚合和处理逻辑，/rpc 报文不变；
+ * 支持prior knowledge直连和Upgrade: h2c升级，未升级的http/1.1请求按http传输处理。
+ *
+ * @author biezhi
+ * 2017/5/3
+ */
+public class Http2ServerChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    private NettyConfig nettyConfig;
+
+    public Http2ServerChannelInitializer(NettyConfig nettyConfig) {
+        this.nettyConfig = nettyConfig;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel socketChannel) throws Exception {
+        HttpServerCodec          sourceCodec    = new HttpServerCodec();
+        Http2MultiplexCodec      multiplexCodec = Http2MultiplexCodecBuilder.forServer(new StreamChannelInitializer()).build();
+        HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec, protocol ->
+                AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol) ? new Http2ServerUpgradeCodec(multiplexCodec) : null);
+
+        socketChannel.pipeline()
+                .addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler, multiplexCodec))
+                // 未升级的http/1.1请求
+                .addLast(new HttpAttachmentWriter(false))
+                .addLast(new RpcContentDecompressor())
+                .addLast(new RpcContentCompressor(nettyConfig))
+                .addLast(new HttpStreamSequencer())
+                .addLast(new HttpRequestAggregator(nettyConfig, RpcMapping.me().getServiceBeanMap()))
+                .addLast(new HttpServerHandler(nettyConfig));
+
+        if (nettyConfig.isFlushBatch()) {
+            socketChannel.pipeline().addFirst(new FlushBatchHandler(nettyConfig.getFlushBatchCount(), nettyConfig.getFlushBatchBytes()));
+        }
+    }
+
+    /**
+     * http/2流的ChannelInitializer，每个流一个子Channel
+     */
+    private class StreamChannelInitializer extends ChannelInitializer<Channel> {
+
+        @Override
+        protected void initChannel(Channel channel) throws Exception {
+            channel.pipeline()
+                    .addLast(new Http2StreamFrameToHttpObjectCodec(true))
+                    .addLast(new ChunkedWriteHandler())
+                    .addLast(new HttpAttachmentWriter(true))
+                    .addLast(new RpcContentDecompressor())
+                    .addLast(new RpcContentCompressor(nettyConfig))
+                    .addLast(new HttpRequestAggregator(nettyConfig, RpcMapping.me().getServiceBeanMap()))
+                    .addLast(new HttpServerHandler(nettyConfig));
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.transport.netty.NettyClient;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * h2c客户端流的ChannelInitializer
+ * <p>
+ * 流上的http/2帧转换为http对象并聚合，完整响应交给连接上的HttpClientHandler处理；
+ * 流式响应不聚合，由HttpStreamDecoder逐帧交给迭代器。
+ *
+ * @author biezhi
+ * 2017/5/3
+ */
+@Slf4j
+class Http2StreamInitializer extends ChannelInitializer<Channel> {
+
+    private final NettyClient       nettyClient;
+    private final HttpClientHandler httpClientHandler;
+
+    Http2StreamInitializer(NettyClient nettyClient, HttpClientHandler httpClientHandler) {
+        this.nettyClient = nettyClient;
+        this.httpClientHandler = httpClientHandler;
+    }
+
+    @Override
+    protected void initChannel(Channel channel) throws Exception {
+        channel.pipeline()
+                .addLast(new Http2StreamFrameToHttpObjectCodec(false))
+                .addLast(new ChunkedWriteHandler())
+                .addLast(new HttpAttachmentWriter(true))
+                .addLast(new RpcContentDecompressor())
+                .addLast(new HttpStreamDecoder(httpClientHandler))
+                .addLast(new HttpObjectAggregator(nettyClient.getNettyConfig().getMaxResponseSize()))
+                .addLast(new StreamResponseHandler());
+    }
+
+    private class StreamResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse httpResponse) throws Exception {
+            httpClientHandler.onResponse(httpResponse);
+        }
+
+        /**
+         * 关闭流，流上还在等待响应的调用由发送时注册的closeFuture监听器失败
+         */
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            log.warn("Stream {} error", ctx.channel(), cause);
+            ctx.close();
+        }
+    }
+
+}
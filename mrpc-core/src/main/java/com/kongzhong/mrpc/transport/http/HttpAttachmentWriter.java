@@ -0,0 +1,170 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.transport.http.HttpAttachments.AttachmentMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpMessage;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseCombiner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带附件的消息拆分写出
+ * <p>
+ * 放在HttpObjectEncoder之后，出站方向在编码器之前、压缩器之后，带附件的完整消息拆成消息头、json和各个附件依次写出：
+ * 内存中的附件直接作为分块写出，不复制；http/1.1连接上文件以FileRegion写出，由sendfile从页缓存直接发送到socket。
+ * h2c的数据必须封装为DATA帧，不能sendfile，文件经ChunkedWriteHandler按块读出，内存不随文件大小增长。
+ * 拆分在一次write中完成，同一连接上的其他消息不会插入附件之间。
+ *
+ * @author biezhi
+ * 2017/5/10
+ */
+class HttpAttachmentWriter extends ChannelOutboundHandlerAdapter {
+
+    /**
+     * h2c连接上每次从文件读出的字节数
+     */
+    private static final int FILE_CHUNK_SIZE = 64 * 1024;
+
+    private final boolean http2;
+
+    HttpAttachmentWriter(boolean http2) {
+        this.http2 = http2;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof AttachmentMessage)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        FullHttpMessage message = (FullHttpMessage) msg;
+        List<Object>    parts;
+        try {
+            parts = this.toParts(((AttachmentMessage) msg).attachments());
+        } catch (IOException e) {
+            ReferenceCountUtil.release(message);
+            promise.setFailure(e);
+            return;
+        }
+
+        PromiseCombiner combiner = new PromiseCombiner();
+        combiner.add(ctx.write(head(message)));
+        combiner.add(ctx.write(new DefaultHttpContent(message.content())));
+        for (Object part : parts) {
+            combiner.add(ctx.write(part));
+        }
+        combiner.add(ctx.write(LastHttpContent.EMPTY_LAST_CONTENT));
+        combiner.finish(promise);
+    }
+
+    /**
+     * 附件转换为写出的对象，ByteBuf的引用交给写出的分块
+     */
+    private List<Object> toParts(List<Object> attachments) throws IOException {
+        List<Object> parts = new ArrayList<>(attachments.size());
+        try {
+            for (Object attachment : attachments) {
+                if (attachment instanceof ByteBuf) {
+                    parts.add(new DefaultHttpContent((ByteBuf) attachment));
+                } else if (attachment instanceof File && ((File) attachment).length() > 0) {
+                    File file = (File) attachment;
+                    parts.add(http2 ? new FileContentInput(new ChunkedNioFile(FileChannel.open(file.toPath(), StandardOpenOption.READ), 0, file.length(), FILE_CHUNK_SIZE))
+                            : new DefaultFileRegion(file, 0, file.length()));
+                }
+            }
+        } catch (IOException e) {
+            for (Object part : parts) {
+                if (part instanceof FileContentInput) {
+                    closeQuietly((FileContentInput) part);
+                } else if (!(part instanceof HttpContent)) {
+                    ReferenceCountUtil.release(part);
+                }
+            }
+            throw e;
+        }
+        return parts;
+    }
+
+    private static HttpMessage head(FullHttpMessage message) {
+        if (message instanceof FullHttpRequest) {
+            FullHttpRequest request = (FullHttpRequest) message;
+            return new DefaultHttpRequest(request.protocolVersion(), request.method(), request.uri(), request.headers());
+        }
+        FullHttpResponse response = (FullHttpResponse) message;
+        return new DefaultHttpResponse(response.protocolVersion(), response.status(), response.headers());
+    }
+
+    private static void closeQuietly(ChunkedInput<?> input) {
+        try {
+            input.close();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    /**
+     * h2c连接上按块读出文件，每块作为一个http分块
+     */
+    private static final class FileContentInput implements ChunkedInput<HttpContent> {
+
+        private final ChunkedNioFile file;
+
+        private FileContentInput(ChunkedNioFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public boolean isEndOfInput() throws Exception {
+            return file.isEndOfInput();
+        }
+
+        @Override
+        public void close() throws Exception {
+            file.close();
+        }
+
+        @Deprecated
+        @Override
+        public HttpContent readChunk(ChannelHandlerContext ctx) throws Exception {
+            return this.readChunk(ctx.alloc());
+        }
+
+        @Override
+        public HttpContent readChunk(ByteBufAllocator allocator) throws Exception {
+            ByteBuf chunk = file.readChunk(allocator);
+            return null == chunk ? null : new DefaultHttpContent(chunk);
+        }
+
+        @Override
+        public long length() {
+            return file.length();
+        }
+
+        @Override
+        public long progress() {
+            return file.progress();
+        }
+    }
+
+}
@@ -0,0 +1,275 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.serialize.AttachmentCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.kongzhong.mrpc.Const.HEADER_ATTACHMENT;
+
+/**
+ * http报文中的二进制附件
+ * <p>
+ * 报文体先是json，之后依次是各个附件的原始字节，attachment头按顺序列出每个附件的字节数，-1表示附件为null。
+ * 请求的附件按顺序对应方法中的附件参数，json中这些参数为null；响应的附件是方法的返回值，json中result为null。
+ * 附件计入请求体和响应体的大小上限，带附件的请求不参与批量。
+ *
+ * @author biezhi
+ * 2017/5/10
+ */
+final class HttpAttachments {
+
+    private HttpAttachments() {
+    }
+
+    /**
+     * 把请求中的附件参数转换为可以写出的附件
+     *
+     * @return 方法没有附件参数时返回null
+     */
+    static List<Object> encodeParameters(RpcRequest rpcRequest, ByteBufAllocator allocator) throws IOException {
+        Class<?>[] parameterTypes = rpcRequest.getParameterTypes();
+        if (!AttachmentCodec.hasAttachments(parameterTypes)) {
+            return null;
+        }
+        Object[]     parameters  = rpcRequest.getParameters();
+        List<Object> attachments = new ArrayList<>();
+        try {
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (AttachmentCodec.isAttachmentType(parameterTypes[i])) {
+                    attachments.add(AttachmentCodec.encode(null != parameters && i < parameters.length ? parameters[i] : null, allocator));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            releaseAll(attachments);
+            throw e;
+        }
+        return attachments;
+    }
+
+    /**
+     * json中的参数，附件参数为null
+     */
+    static List<Object> jsonParameters(RpcRequest rpcRequest) {
+        Class<?>[] parameterTypes = rpcRequest.getParameterTypes();
+        Object[]   parameters     = rpcRequest.getParameters();
+        if (null == parameters || !AttachmentCodec.hasAttachments(parameterTypes)) {
+            return null != parameters ? Arrays.asList(parameters) : null;
+        }
+        List<Object> jsonParameters = new ArrayList<>(Arrays.asList(parameters));
+        for (int i = 0; i < parameterTypes.length && i < jsonParameters.size(); i++) {
+            if (AttachmentCodec.isAttachmentType(parameterTypes[i])) {
+                jsonParameters.set(i, null);
+            }
+        }
+        return jsonParameters;
+    }
+
+    /**
+     * 服务端把附件解码到请求的附件参数中，解码出的参数登记到请求上，调用结束后释放
+     *
+     * @param rpcRequest 已经解析json参数的请求
+     * @param content    聚合后的请求体
+     * @param lengths    附件的字节数，没有attachment头时为null，附件参数保留json中的值
+     * @throws IOException 附件个数与附件参数不一致或者写入临时文件出错时抛出
+     */
+    static void decodeParameters(RpcRequest rpcRequest, ByteBuf content, int[] lengths) throws IOException {
+        Class<?>[] parameterTypes = rpcRequest.getParameterTypes();
+        if (null == lengths) {
+            return;
+        }
+        int count = (int) Arrays.stream(parameterTypes).filter(AttachmentCodec::isAttachmentType).count();
+        if (lengths.length != count) {
+            throw new IOException("Expect " + count + " attachments, but " + lengths.length + ".");
+        }
+
+        Object[]      parameters  = rpcRequest.getParameters();
+        List<ByteBuf> slices      = slices(content, lengths);
+        List<Object>  attachments = new ArrayList<>(count);
+        rpcRequest.setAttachments(attachments);
+        int index = 0;
+        try {
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (AttachmentCodec.isAttachmentType(parameterTypes[i])) {
+                    Object attachment = AttachmentCodec.decode(slices.get(index++), parameterTypes[i]);
+                    parameters[i] = attachment;
+                    attachments.add(attachment);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            releaseAll(slices.subList(index, slices.size()));
+            attachments.forEach(AttachmentCodec::release);
+            rpcRequest.setAttachments(null);
+            throw e;
+        }
+    }
+
+    /**
+     * 客户端把响应的附件解码为方法的返回类型
+     *
+     * @param content    聚合后的响应体
+     * @param lengths    附件的字节数
+     * @param resultType 方法的泛型返回类型
+     * @return 返回声明类型的返回值
+     */
+    static Object decodeResult(ByteBuf content, int[] lengths, Type resultType) throws IOException {
+        if (lengths.length != 1) {
+            throw new IOException("Expect 1 attachment, but " + lengths.length + ".");
+        }
+        return AttachmentCodec.decode(slices(content, lengths).get(0), AttachmentCodec.rawType(resultType));
+    }
+
+    /**
+     * 解析attachment头
+     *
+     * @return 返回每个附件的字节数，没有attachment头时返回null
+     */
+    static int[] lengths(HttpHeaders headers) {
+        String header = headers.get(HEADER_ATTACHMENT);
+        if (null == header) {
+            return null;
+        }
+        int[] lengths = header.isEmpty() ? new int[0] : Arrays.stream(header.split(",")).mapToInt(length -> Integer.parseInt(length.trim())).toArray();
+        for (int length : lengths) {
+            if (length < -1) {
+                throw new IllegalArgumentException("Illegal attachment length: " + header);
+            }
+        }
+        return lengths;
+    }
+
+    /**
+     * 报文体中的json部分
+     *
+     * @param content 聚合后的报文体
+     * @param lengths 附件的字节数，为null时返回整个报文体
+     * @return 返回json部分的切片，不复制
+     */
+    static ByteBuf json(ByteBuf content, int[] lengths) {
+        if (null == lengths) {
+            return content;
+        }
+        long size = Arrays.stream(lengths).filter(length -> length > 0).asLongStream().sum();
+        if (size > content.readableBytes()) {
+            throw new IllegalArgumentException("Attachments length " + size + " exceed the body " + content.readableBytes() + ".");
+        }
+        return content.slice(content.readerIndex(), content.readableBytes() - (int) size);
+    }
+
+    /**
+     * 从报文体末尾依次切出附件，与报文体共享内存
+     *
+     * @return 返回引用计数独立的切片，附件为null时对应null
+     */
+    static List<ByteBuf> slices(ByteBuf content, int[] lengths) {
+        int           index  = content.readerIndex() + json(content, lengths).readableBytes();
+        List<ByteBuf> slices = new ArrayList<>(lengths.length);
+        for (int length : lengths) {
+            if (length < 0) {
+                slices.add(null);
+            } else {
+                slices.add(content.retainedSlice(index, length));
+                index += length;
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * 附件的总字节数
+     */
+    static long length(List<Object> attachments) {
+        return null == attachments ? 0 : attachments.stream().mapToLong(attachment -> Math.max(0, AttachmentCodec.length(attachment))).sum();
+    }
+
+    /**
+     * attachment头
+     */
+    static String header(List<Object> attachments) {
+        return attachments.stream().map(attachment -> Long.toString(AttachmentCodec.length(attachment))).collect(Collectors.joining(","));
+    }
+
+    static void releaseAll(List<?> attachments) {
+        if (null != attachments) {
+            attachments.forEach(ReferenceCountUtil::safeRelease);
+        }
+    }
+
+    /**
+     * 带附件的消息，由HttpAttachmentWriter拆分写出
+     */
+    interface AttachmentMessage {
+
+        /**
+         * @return 返回encode转换后的附件，ByteBuf或File
+         */
+        List<Object> attachments();
+    }
+
+    /**
+     * 带附件的请求，content为json部分，没有写出时release同时释放附件
+     */
+    static final class AttachmentRequest extends DefaultFullHttpRequest implements AttachmentMessage {
+        private final List<Object> attachments;
+
+        AttachmentRequest(String uri, ByteBuf content, List<Object> attachments) {
+            super(HttpVersion.HTTP_1_1, HttpMethod.POST, uri, content, false);
+            this.attachments = attachments;
+        }
+
+        @Override
+        public List<Object> attachments() {
+            return attachments;
+        }
+
+        @Override
+        public boolean release() {
+            boolean released = super.release();
+            if (released) {
+                HttpAttachments.releaseAll(attachments);
+            }
+            return released;
+        }
+    }
+
+    /**
+     * 带附件的响应，content为json部分，没有写出时release同时释放附件
+     */
+    static final class AttachmentResponse extends DefaultFullHttpResponse implements AttachmentMessage {
+        private final List<Object> attachments;
+
+        AttachmentResponse(HttpResponseStatus status, ByteBuf content, List<Object> attachments) {
+            super(HttpVersion.HTTP_1_1, status, content, false);
+            this.attachments = attachments;
+        }
+
+        @Override
+        public List<Object> attachments() {
+            return attachments;
+        }
+
+        @Override
+        public boolean release() {
+            boolean released = super.release();
+            if (released) {
+                HttpAttachments.releaseAll(attachments);
+            }
+            return released;
+        }
+    }
+
+}
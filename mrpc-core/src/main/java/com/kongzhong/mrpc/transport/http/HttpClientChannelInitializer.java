@@ -1,9 +1,10 @@
 package com.kongzhong.mrpc.transport.http;
 
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.transport.netty.FlushBatchHandler;
 import com.kongzhong.mrpc.transport.netty.NettyClient;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpContentDecompressor;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestEncoder;
 import io.netty.handler.codec.http.HttpResponseDecoder;
@@ -21,14 +22,23 @@ public class HttpClientChannelInitializer extends ChannelInitializer<SocketChann
 
     @Override
     protected void initChannel(SocketChannel socketChannel) throws Exception {
+        NettyConfig       nettyConfig       = nettyClient.getNettyConfig();
+        HttpClientHandler httpClientHandler = new HttpClientHandler(nettyClient);
 
         socketChannel.pipeline()
                 // 客户端接收到的是httpResponse响应，所以要使用HttpResponseDecoder进行解码
                 .addLast(new HttpResponseDecoder())
-                .addLast(new HttpContentDecompressor())
+                .addLast(new RpcContentDecompressor())
                 // 客户端发送的是httprequest，所以要使用HttpRequestEncoder进行编码
                 .addLast(new HttpRequestEncoder())
-                .addLast(new HttpObjectAggregator(Integer.MAX_VALUE))
-                .addLast(new HttpClientHandler(nettyClient));
+                // 带附件的请求拆分写出，文件通过FileRegion发送
+                .addLast(new HttpAttachmentWriter(false))
+                // 流式响应不经过聚合
+                .addLast(new HttpStreamDecoder(httpClientHandler))
+                .addLast(new HttpObjectAggregator(nettyConfig.getMaxResponseSize()))
+                .addLast(httpClientHandler);
+        if (nettyConfig.isFlushBatch()) {
+            socketChannel.pipeline().addFirst(new FlushBatchHandler(nettyConfig.getFlushBatchCount(), nettyConfig.getFlushBatchBytes()));
+        }
     }
 }
@@ -1,83 +1,94 @@
 package com.kongzhong.mrpc.transport.http;
 
-import com.google.common.collect.Maps;
-import com.kongzhong.mrpc.Const;
-import com.kongzhong.mrpc.client.Connections;
 import com.kongzhong.mrpc.client.RpcCallbackFuture;
-import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.client.RpcStreamIterator;
+import com.kongzhong.mrpc.exception.ConnectException;
 import com.kongzhong.mrpc.exception.SerializeException;
 import com.kongzhong.mrpc.exception.SystemException;
 import com.kongzhong.mrpc.model.RequestBody;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.serialize.AttachmentCodec;
+import com.kongzhong.mrpc.serialize.CompressCodec;
 import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
+import com.kongzhong.mrpc.transport.http.HttpAttachments.AttachmentRequest;
 import com.kongzhong.mrpc.transport.netty.NettyClient;
-import com.kongzhong.mrpc.utils.ReflectUtils;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
 import com.kongzhong.mrpc.utils.StringUtils;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpScheme;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
-import io.netty.util.AttributeKey;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.HttpConversionUtil;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
-import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.IOException;
-import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.kongzhong.mrpc.Const.*;
 import static io.netty.handler.codec.http.HttpHeaderValues.KEEP_ALIVE;
 import static io.netty.handler.codec.http.HttpHeaderValues.TEXT_PLAIN;
 import static io.netty.handler.codec.http.HttpHeaders.Names.*;
-import static io.netty.handler.codec.http.HttpHeaders.Values.GZIP;
 
 /**
  * @author biezhi
  * 2017/4/19
  */
 @Slf4j
-public class HttpClientHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+public class HttpClientHandler extends SimpleClientHandler<FullHttpResponse> {
 
-    protected NettyConfig nettyConfig;
-
-    @Getter
-    protected volatile Channel channel;
-
-    @Getter
-    @Setter
-    protected NettyClient nettyClient;
-
-    protected static boolean isShutdown;
+    /**
+     * 是否为h2c连接，h2c连接的每次请求新建一个流
+     */
+    private final boolean http2;
 
-    protected LongAdder hits = new LongAdder();
+    private Http2StreamChannelBootstrap streamBootstrap;
 
-    public static final Map<String, RpcCallbackFuture> CALLBACK_FUTURE_MAP = Maps.newConcurrentMap();
+    /**
+     * 微批量中等待发送的请求，按调用的方法分别开窗，窗口结束或者达到请求数上限时合并为一个/rpc/batch请求
+     */
+    private final Object                                     batchLock = new Object();
+    private final Map<List<Object>, List<RpcCallbackFuture>> batching  = new HashMap<>();
 
     HttpClientHandler(NettyClient nettyClient) {
-        this.nettyClient = nettyClient;
+        this(nettyClient, false);
     }
 
-    @Override
-    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
-        this.channel = ctx.channel();
-        super.channelRegistered(ctx);
+    HttpClientHandler(NettyClient nettyClient, boolean http2) {
+        super(nettyClient);
+        this.http2 = http2;
     }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        log.debug("Channel active: {}", this.channel);
+        if (http2) {
+            this.streamBootstrap = new Http2StreamChannelBootstrap(ctx.channel()).handler(new Http2StreamInitializer(nettyClient, this));
+        }
         super.channelActive(ctx);
     }
 
@@ -87,65 +98,305 @@ public class HttpClientHandler extends SimpleChannelInboundHandler<FullHttpRespo
      * @param rpcRequest RpcRequest
      * @return return RpcCallbackFuture
      */
+    @Override
     public RpcCallbackFuture asyncSendRequest(RpcRequest rpcRequest) {
         if (isShutdown) {
             throw new SystemException("Rpc client has been shutdown.");
         }
-        RpcCallbackFuture rpcCallbackFuture = new RpcCallbackFuture(rpcRequest);
-        CALLBACK_FUTURE_MAP.put(rpcRequest.getRequestId(), rpcCallbackFuture);
+        this.acquire();
+        RpcCallbackFuture rpcCallbackFuture = this.addCallbackFuture(rpcRequest);
 
-        RequestBody requestBody = RequestBody.builder()
-                .requestId(rpcRequest.getRequestId())
-                .service(rpcRequest.getClassName())
-                .method(rpcRequest.getMethodName())
-                .context(rpcRequest.getContext())
-                .parameters(Arrays.asList(rpcRequest.getParameters()))
-                .build();
+        if (rpcRequest.getBatchWindow() > 0) {
+            this.enqueueBatch(rpcCallbackFuture);
+        } else {
+            this.sendRequest(rpcCallbackFuture);
+        }
+        return rpcCallbackFuture;
+    }
 
+    private void sendRequest(RpcCallbackFuture rpcCallbackFuture) {
+        RpcRequest   rpcRequest  = rpcCallbackFuture.getRequest();
+        ByteBuf      content     = channel.alloc().buffer();
+        List<Object> attachments = null;
         try {
-            String sendBody = JacksonSerialize.toJSONString(requestBody);
+            // 请求体直接序列化到池化的ByteBuf，请求头和请求体由HttpRequestEncoder分别写出，二进制参数作为附件跟在json之后
+            attachments = HttpAttachments.encodeParameters(rpcRequest, channel.alloc());
+            JacksonSerialize.writeTo(toRequestBody(rpcRequest), new ByteBufOutputStream(content));
 
-            log.debug("Client send body: {}", JacksonSerialize.toJSONString(requestBody));
+            if (log.isDebugEnabled()) {
+                log.debug("Client send body: {}", content.toString(CharsetUtil.UTF_8));
+            }
 
-            DefaultFullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/rpc", false);
-            req.headers().set(CONNECTION, KEEP_ALIVE);
-            req.headers().set(ACCEPT_ENCODING, GZIP);
-            req.headers().set(CONTENT_TYPE, TEXT_PLAIN);
-            req.headers().set(HEADER_REQUEST_ID, rpcRequest.getRequestId());
+            DefaultFullHttpRequest req = newRequest("/rpc", content, attachments, rpcRequest.getRequestId(), rpcRequest.getWaitTimeout());
             req.headers().set(HEADER_SERVICE_CLASS, rpcRequest.getClassName());
             req.headers().set(HEADER_METHOD_NAME, rpcRequest.getMethodName());
 
-            ByteBuf bodyBuf = Unpooled.wrappedBuffer(sendBody != null ? sendBody.getBytes(CharsetUtil.UTF_8) : new byte[0]);
-            req.headers().set(CONTENT_LENGTH, bodyBuf.readableBytes());
-            req.content().clear().writeBytes(bodyBuf);
-
-            this.setChannelRequestId(rpcRequest.getRequestId());
-
-            if (channel.isActive() && channel.isOpen() && channel.isWritable()) {
-                channel.writeAndFlush(req).addListener(new GenericFutureListener<Future<? super Void>>() {
-                    @Override
-                    public void operationComplete(Future<? super Void> future) throws Exception {
-                        if (future.isSuccess()) {
-                            log.debug("Client send [{}] success.", rpcRequest.getRequestId());
-                        } else {
-                            log.debug("Client send [{}] fail.", rpcRequest.getRequestId());
-                            throw new SystemException("Client send [" + rpcRequest.getRequestId() + "] fail.");
-                        }
+            this.send(req, Collections.singletonList(rpcCallbackFuture));
+        } catch (Exception e) {
+            ReferenceCountUtil.safeRelease(content);
+            HttpAttachments.releaseAll(attachments);
+            log.error("Client send request error", e);
+            this.failSend(rpcCallbackFuture, e);
+        }
+    }
+
+    /**
+     * 微批量：每个方法的第一个请求按该方法@Command的配置打开窗口并在EventLoop上定时发送，
+     * 窗口内其他线程对同一方法的调用加入同一个窗口
+     *
+     * @param rpcCallbackFuture 已经登记的请求
+     */
+    private void enqueueBatch(RpcCallbackFuture rpcCallbackFuture) {
+        RpcRequest              rpcRequest = rpcCallbackFuture.getRequest();
+        List<Object>            key        = batchKey(rpcRequest);
+        List<RpcCallbackFuture> opened     = null;
+        List<RpcCallbackFuture> full       = null;
+        synchronized (batchLock) {
+            List<RpcCallbackFuture> window = batching.get(key);
+            if (null == window) {
+                window = new ArrayList<>();
+                batching.put(key, window);
+                opened = window;
+            }
+            window.add(rpcCallbackFuture);
+            if (window.size() >= Math.max(1, rpcRequest.getBatchSize())) {
+                batching.remove(key);
+                full = window;
+            }
+        }
+        if (null != full) {
+            this.writeBatch(full);
+        } else if (null != opened) {
+            List<RpcCallbackFuture> window = opened;
+            try {
+                channel.eventLoop().schedule(() -> this.flushBatch(key, window), rpcRequest.getBatchWindow(), TimeUnit.MICROSECONDS);
+            } catch (RejectedExecutionException e) {
+                this.flushBatch(key, window);
+            }
+        }
+    }
+
+    /**
+     * 窗口结束，发送这个窗口中还没有因为达到上限而发出的请求
+     */
+    private void flushBatch(List<Object> key, List<RpcCallbackFuture> window) {
+        synchronized (batchLock) {
+            if (batching.get(key) != window) {
+                return;
+            }
+            batching.remove(key);
+        }
+        this.writeBatch(window);
+    }
+
+    /**
+     * 窗口内的请求合并为一个/rpc/batch请求，由服务端拆分后分别执行，每个调用的结果和超时各自独立；
+     * 在窗口中已经超时、取消或者失败的请求不再发送
+     */
+    private void writeBatch(List<RpcCallbackFuture> window) {
+        List<RpcCallbackFuture> sending = window.stream().filter(rpcCallbackFuture -> !rpcCallbackFuture.isRemoved()).collect(Collectors.toList());
+        if (!sending.isEmpty()) {
+            this.sendBatch(sending);
+        }
+    }
+
+    /**
+     * 微批量窗口的key，@Command配置在方法上，按服务、方法名和参数类型区分
+     */
+    private static List<Object> batchKey(RpcRequest rpcRequest) {
+        Class<?>[] parameterTypes = rpcRequest.getParameterTypes();
+        return Arrays.asList(rpcRequest.getClassName(), rpcRequest.getMethodName(),
+                null != parameterTypes ? Arrays.asList(parameterTypes) : Collections.emptyList());
+    }
+
+    /**
+     * 批量请求合并为一个/rpc/batch请求，请求头中的请求id为逗号分隔的所有请求id
+     * <p>
+     * 服务端等待时间取批量中最长的超时时间，每个请求的超时仍然在客户端单独计算。
+     *
+     * @param rpcRequests 发往该连接的请求
+     * @return 返回每个请求的回调，顺序与请求一致
+     */
+    @Override
+    public List<RpcCallbackFuture> asyncSendBatch(List<RpcRequest> rpcRequests) {
+        if (isShutdown) {
+            throw new SystemException("Rpc client has been shutdown.");
+        }
+        List<RpcCallbackFuture> rpcCallbackFutures = new ArrayList<>(rpcRequests.size());
+        List<RpcCallbackFuture> sending            = new ArrayList<>(rpcRequests.size());
+        for (RpcRequest rpcRequest : rpcRequests) {
+            try {
+                this.acquire();
+                RpcCallbackFuture rpcCallbackFuture = this.addCallbackFuture(rpcRequest);
+                rpcCallbackFutures.add(rpcCallbackFuture);
+                sending.add(rpcCallbackFuture);
+            } catch (RuntimeException e) {
+                rpcCallbackFutures.add(failedFuture(rpcRequest, e));
+            }
+        }
+        if (!sending.isEmpty()) {
+            this.sendBatch(sending);
+        }
+        return rpcCallbackFutures;
+    }
+
+    /**
+     * 把已经登记的请求合并为一个/rpc/batch请求发送，只有一个请求时按普通请求发送，带附件的请求单独发送
+     *
+     * @param registered 已经登记的请求
+     */
+    private void sendBatch(List<RpcCallbackFuture> registered) {
+        List<RpcCallbackFuture> sending = new ArrayList<>(registered.size());
+        for (RpcCallbackFuture rpcCallbackFuture : registered) {
+            if (AttachmentCodec.hasAttachments(rpcCallbackFuture.getRequest().getParameterTypes())) {
+                this.sendRequest(rpcCallbackFuture);
+            } else {
+                sending.add(rpcCallbackFuture);
+            }
+        }
+        if (sending.isEmpty()) {
+            return;
+        }
+        if (sending.size() == 1) {
+            this.sendRequest(sending.get(0));
+            return;
+        }
+        List<RequestBody> requestBodies = new ArrayList<>(sending.size());
+        int               waitTimeout   = 0;
+        ByteBuf           content       = channel.alloc().buffer();
+        try {
+            for (RpcCallbackFuture rpcCallbackFuture : sending) {
+                requestBodies.add(toRequestBody(rpcCallbackFuture.getRequest()));
+                waitTimeout = Math.max(waitTimeout, rpcCallbackFuture.getRequest().getWaitTimeout());
+            }
+            JacksonSerialize.writeTo(requestBodies, new ByteBufOutputStream(content));
+
+            if (log.isDebugEnabled()) {
+                log.debug("Client send batch body: {}", content.toString(CharsetUtil.UTF_8));
+            }
+
+            String requestIds = sending.stream().map(future -> Long.toString(future.getRequestId())).collect(Collectors.joining(","));
+
+            DefaultFullHttpRequest req = newRequest("/rpc/batch", content, null, requestIds, waitTimeout);
+            req.headers().set(HEADER_BATCH, Boolean.TRUE.toString());
+
+            this.send(req, sending);
+        } catch (Exception e) {
+            ReferenceCountUtil.safeRelease(content);
+            log.error("Client send batch request error", e);
+            sending.forEach(rpcCallbackFuture -> this.failSend(rpcCallbackFuture, e));
+        }
+    }
+
+    private static RequestBody toRequestBody(RpcRequest rpcRequest) {
+        return RequestBody.builder()
+                .requestId(rpcRequest.getRequestId())
+                .service(rpcRequest.getClassName())
+                .method(rpcRequest.getMethodName())
+                .context(rpcRequest.getContext())
+                .parameterTypes(Stream.of(rpcRequest.getParameterTypes()).map(Class::getName).collect(Collectors.toList()))
+                .parameters(HttpAttachments.jsonParameters(rpcRequest))
+                .build();
+    }
+
+    private static DefaultFullHttpRequest newRequest(String uri, ByteBuf content, List<Object> attachments, String requestId, int waitTimeout) {
+        DefaultFullHttpRequest req = null == attachments ? new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri, content, false)
+                : new AttachmentRequest(uri, content, attachments);
+        req.headers().set(CONNECTION, KEEP_ALIVE);
+        req.headers().set(ACCEPT_ENCODING, CompressCodec.ACCEPT_ENCODING);
+        req.headers().set(CONTENT_TYPE, TEXT_PLAIN);
+        req.headers().set(HEADER_REQUEST_ID, requestId);
+        if (waitTimeout > 0) {
+            req.headers().set(HEADER_WAIT_TIMEOUT, waitTimeout);
+        }
+        if (null != attachments) {
+            req.headers().set(HEADER_ATTACHMENT, HttpAttachments.header(attachments));
+        }
+        req.headers().set(CONTENT_LENGTH, content.readableBytes() + HttpAttachments.length(attachments));
+        return req;
+    }
+
+    /**
+     * 写出请求，发送失败时让请求中的所有调用立即失败
+     *
+     * @param req                http请求，没有写出时由这里释放
+     * @param rpcCallbackFutures 请求中包含的调用
+     */
+    private void send(DefaultFullHttpRequest req, List<RpcCallbackFuture> rpcCallbackFutures) {
+        String requestId = req.headers().get(HEADER_REQUEST_ID);
+
+        GenericFutureListener<Future<? super Void>> sendListener = future -> {
+            if (future.isSuccess()) {
+                log.debug("Client send [{}] success.", requestId);
+            } else {
+                log.debug("Client send [{}] fail.", requestId, future.cause());
+                ConnectException e = new ConnectException("Client send [" + requestId + "] fail.", future.cause());
+                rpcCallbackFutures.forEach(rpcCallbackFuture -> failSend(rpcCallbackFuture, e));
+            }
+        };
+
+        if (channel.isActive() && channel.isOpen()) {
+            if (http2) {
+                // 每个请求一个流，请求头经HPACK压缩，响应按流对应，不依赖连接上的响应顺序
+                req.headers().set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), HttpScheme.HTTP.name());
+                streamBootstrap.open().addListener((Future<Http2StreamChannel> future) -> {
+                    if (future.isSuccess()) {
+                        Http2StreamChannel stream = future.getNow();
+                        // 流被重置、解码出错或者GOAWAY后关闭时，还在等待响应的调用立即失败，不必等到超时
+                        stream.closeFuture().addListener(closeFuture -> {
+                            ConnectException e = new ConnectException(String.format("Server stream %s closed before response.", stream));
+                            rpcCallbackFutures.forEach(rpcCallbackFuture -> failSend(rpcCallbackFuture, e));
+                        });
+                        stream.writeAndFlush(req).addListener(sendListener);
+                    } else {
+                        req.release();
+                        ConnectException e = new ConnectException("Client open stream [" + requestId + "] fail.", future.cause());
+                        rpcCallbackFutures.forEach(rpcCallbackFuture -> failSend(rpcCallbackFuture, e));
                     }
                 });
+            } else {
+                channel.writeAndFlush(req).addListener(sendListener);
             }
-        } catch (Exception e) {
-            log.error("Client send request error", e);
+        } else {
+            req.release();
+            ConnectException e = new ConnectException(String.format("Server channel %s unActive.", channel));
+            rpcCallbackFutures.forEach(rpcCallbackFuture -> this.failSend(rpcCallbackFuture, e));
         }
-        return rpcCallbackFuture;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        // 服务端下线时h2c连接上收到GOAWAY，帧的内容属于解码器的缓冲区，这里不释放
+        if (msg instanceof Http2GoAwayFrame) {
+            this.goAway();
+            return;
+        }
+        super.channelRead(ctx, msg);
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse httpResponse) throws Exception {
         log.debug("Client channel read: {}", ctx.channel());
+        // 服务端下线时http/1.1连接上的响应带有Connection: close
+        if (!HttpUtil.isKeepAlive(httpResponse)) {
+            this.goAway();
+        }
+        this.onResponse(httpResponse);
+    }
+
+    /**
+     * 处理服务端响应，h2c连接的响应由流转交到这里
+     *
+     * @param httpResponse 聚合后的完整响应
+     */
+    void onResponse(FullHttpResponse httpResponse) throws Exception {
+        ByteBuf content = httpResponse.content();
+        if (!content.isReadable()) {
+            return;
+        }
 
-        String body = httpResponse.content().toString(CharsetUtil.UTF_8);
-        if (StringUtils.isEmpty(body)) {
+        if (httpResponse.headers().contains(HEADER_BATCH)) {
+            this.onBatchResponse(httpResponse);
             return;
         }
 
@@ -154,100 +405,135 @@ public class HttpClientHandler extends SimpleChannelInboundHandler<FullHttpRespo
         String methodName   = httpResponse.headers().get(HEADER_METHOD_NAME);
 
         if (StringUtils.isEmpty(requestId) || StringUtils.isEmpty(serviceClass) || StringUtils.isEmpty(methodName)) {
-            log.error("{}", body);
+            log.error("{}", content.toString(CharsetUtil.UTF_8));
         }
 
-        RpcResponse rpcResponse = JacksonSerialize.parseObject(body, RpcResponse.class);
+        // 带附件的响应，json之后是二进制返回值
+        int[]   attachmentLengths = HttpAttachments.lengths(httpResponse.headers());
+        ByteBuf json              = HttpAttachments.json(content, attachmentLengths);
 
-        if (rpcResponse.getSuccess()) {
-            log.debug("Client receive body: {}", JacksonSerialize.toJSONString(rpcResponse));
-            Object result = rpcResponse.getResult();
-            if (null != result && null != rpcResponse.getReturnType()
-                    && !rpcResponse.getReturnType().equals(Void.class)) {
-                Method method = ReflectUtils.method(ReflectUtils.from(serviceClass), methodName);
-                Object object = null;
-                if (method != null) {
-                    object = JacksonSerialize.parseObject(JacksonSerialize.toJSONString(result), method.getGenericReturnType());
-                }
-                rpcResponse.setResult(object);
+        if (log.isDebugEnabled()) {
+            log.debug("Client receive body: {}", json.toString(CharsetUtil.UTF_8));
+        }
+
+        // 使用请求登记的泛型返回类型，result一次解析为目标类型
+        long              id            = parseRequestId(requestId);
+        RpcCallbackFuture waitingFuture = this.getCallbackFuture(id);
+        Type              resultType    = null != waitingFuture ? waitingFuture.getRequest().getGenericReturnType() : null;
+        RpcResponse       rpcResponse;
+        try {
+            rpcResponse = ResponseBodyDecoder.decode(new ByteBufInputStream(json), null != attachmentLengths ? null : resultType);
+            if (null != attachmentLengths && null != waitingFuture && Boolean.TRUE.equals(rpcResponse.getSuccess())) {
+                rpcResponse.setResult(HttpAttachments.decodeResult(content, attachmentLengths, resultType));
             }
+        } catch (Exception e) {
+            // 解析失败只影响这个响应对应的调用，连接上的其他调用不受影响
+            log.error("Client receive body [{}] error", requestId, e);
+            this.failResponse(id, e);
+            return;
         }
 
-        RpcCallbackFuture rpcCallbackFuture = CALLBACK_FUTURE_MAP.get(requestId);
+        RpcCallbackFuture rpcCallbackFuture = this.removeCallbackFuture(id);
         if (rpcCallbackFuture != null) {
-            CALLBACK_FUTURE_MAP.remove(requestId);
             rpcCallbackFuture.done(rpcResponse);
         } else {
             log.error("Not found request id [{}]", requestId);
+            if (null != attachmentLengths) {
+                AttachmentCodec.release(rpcResponse.getResult());
+            }
         }
     }
 
-    @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        if (IOException.class.isInstance(cause) && cause.getMessage().contains("Connection reset by peer")) {
-        } else {
-            log.error("Client receive body error", cause);
-            sendError(ctx, cause);
-        }
-    }
-
-    @Override
-    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        log.debug("Channel InActive: {}", ctx.channel());
-        this.nettyClient.cancelSchedule(ctx.channel());
-
-        // 移除客户端Channel
-        Connections.me().inActive(this.nettyClient.getAddress());
-        ctx.channel().close().sync();
-    }
-
     /**
-     * 添加一次调用
+     * 响应无法解析，以SerializeException完成对应的调用
      */
-    public void addHit() {
-        hits.add(1);
-    }
-
-    public Long getHits() {
-        return hits.longValue();
+    private void failResponse(long requestId, Exception cause) {
+        RpcCallbackFuture rpcCallbackFuture = this.removeCallbackFuture(requestId);
+        if (null != rpcCallbackFuture) {
+            rpcCallbackFuture.fail(cause instanceof SerializeException ? cause : new SerializeException("Client receive body [" + requestId + "] error", cause));
+        }
     }
 
     /**
-     * 客户端关闭时调用
+     * 收到流式响应的响应头，以迭代器完成调用，之后的元素由HttpStreamDecoder交给迭代器
+     *
+     * @param head    流式响应的响应头
+     * @param channel 接收该流的Channel，h2c为流的子Channel
+     * @return 返回该流的迭代器，请求已经超时时返回null
      */
-    public void close() throws InterruptedException {
-        nettyClient.shutdown();
-        this.nettyClient.cancelSchedule(channel);
-        this.channel.close().sync();
+    RpcStreamIterator<Object> onStreamStart(HttpResponse head, Channel channel) {
+        if (!HttpUtil.isKeepAlive(head) && !http2) {
+            this.goAway();
+        }
+        String            requestId         = head.headers().get(HEADER_REQUEST_ID);
+        // http/1.1连接上其他响应排在流之后，名额保留到流结束，连接不再优先被选中
+        long              id                = parseRequestId(requestId);
+        RpcCallbackFuture rpcCallbackFuture = http2 ? this.removeCallbackFuture(id) : this.holdCallbackFuture(id);
+        if (null == rpcCallbackFuture) {
+            log.error("Not found request id [{}]", requestId);
+            return null;
+        }
+        RpcStreamIterator<Object> stream = new RpcStreamIterator<>(rpcCallbackFuture.getRequest(), channel);
+
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setRequestId(requestId);
+        rpcResponse.setResult(stream);
+        rpcResponse.setSuccess(true);
+        rpcCallbackFuture.done(rpcResponse);
+        return stream;
     }
 
     /**
-     * 在channel上保存一个requestId
-     *
-     * @param requestId
+     * onStreamStart返回的流结束或者连接断开，http/1.1连接归还流占用的名额
      */
-    protected void setChannelRequestId(String requestId) {
-        channel.attr(AttributeKey.valueOf(Const.HEADER_REQUEST_ID)).set(requestId);
+    void onStreamEnd() {
+        if (!http2) {
+            this.releaseStream();
+        }
     }
 
     /**
-     * 错误处理
-     *
-     * @param ctx
-     * @param cause
+     * 处理批量响应：成功时响应体为每个调用的响应组成的数组；
+     * 整个批量被拒绝时(服务端下线、请求体过大等)响应体为一个错误响应，请求头中的所有请求都以它完成
      */
-    protected void sendError(ChannelHandlerContext ctx, Throwable cause) throws SerializeException {
-        Channel           channel           = ctx.channel();
-        String            requestId         = channel.attr(AttributeKey.valueOf(Const.HEADER_REQUEST_ID)).get().toString();
-        RpcCallbackFuture rpcCallbackFuture = CALLBACK_FUTURE_MAP.get(requestId);
-        if (rpcCallbackFuture != null) {
-            CALLBACK_FUTURE_MAP.remove(requestId);
-            rpcCallbackFuture.done(null);
+    private void onBatchResponse(FullHttpResponse httpResponse) throws Exception {
+        ByteBuf content = httpResponse.content();
+        if (log.isDebugEnabled()) {
+            log.debug("Client receive batch body: {}", content.toString(CharsetUtil.UTF_8));
         }
-    }
 
-    public static void shutdown() {
-        isShutdown = true;
+        String[]          requestIds = httpResponse.headers().get(HEADER_REQUEST_ID, "").split(",");
+        List<RpcResponse> rpcResponses;
+        try {
+            if (!HttpResponseStatus.OK.equals(httpResponse.status())) {
+                RpcResponse rpcResponse = ResponseBodyDecoder.decode(new ByteBufInputStream(content), null);
+                for (String requestId : requestIds) {
+                    RpcCallbackFuture rpcCallbackFuture = this.removeCallbackFuture(parseRequestId(requestId));
+                    if (rpcCallbackFuture != null) {
+                        rpcCallbackFuture.done(rpcResponse);
+                    }
+                }
+                return;
+            }
+            rpcResponses = ResponseBodyDecoder.decodeBatch(new ByteBufInputStream(content), requestId -> {
+                RpcCallbackFuture waitingFuture = this.getCallbackFuture(parseRequestId(requestId));
+                return null != waitingFuture ? waitingFuture.getRequest().getGenericReturnType() : null;
+            });
+        } catch (Exception e) {
+            log.error("Client receive batch body error", e);
+            for (String requestId : requestIds) {
+                this.failResponse(parseRequestId(requestId), e);
+            }
+            return;
+        }
+        for (RpcResponse rpcResponse : rpcResponses) {
+            RpcCallbackFuture rpcCallbackFuture = this.removeCallbackFuture(parseRequestId(rpcResponse.getRequestId()));
+            if (rpcCallbackFuture != null) {
+                rpcCallbackFuture.done(rpcResponse);
+            } else {
+                log.error("Not found request id [{}]", rpcResponse.getRequestId());
+            }
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.model.ServiceBean;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+import static com.kongzhong.mrpc.Const.HEADER_SERVICE_CLASS;
+
+/**
+ * 有上限的http请求聚合器
+ * <p>
+ * 请求分块到达时累积到CompositeByteBuf中，不会拷贝为一整块连续内存；
+ * 根据请求头中的服务名使用该服务的请求体上限，Content-Length超出时在读取请求体之前直接返回错误响应。
+ *
+ * @author biezhi
+ * 2017/4/21
+ */
+@Slf4j
+public class HttpRequestAggregator extends HttpObjectAggregator {
+
+    private NettyConfig              nettyConfig;
+    private Map<String, ServiceBean> serviceBeanMap;
+
+    public HttpRequestAggregator(NettyConfig nettyConfig, Map<String, ServiceBean> serviceBeanMap) {
+        super(maxContentLength(nettyConfig, serviceBeanMap));
+        this.nettyConfig = nettyConfig;
+        this.serviceBeanMap = serviceBeanMap;
+    }
+
+    /**
+     * 聚合器的总上限为所有服务上限中的最大值，单个服务的上限在请求头和请求处理时校验
+     */
+    private static int maxContentLength(NettyConfig nettyConfig, Map<String, ServiceBean> serviceBeanMap) {
+        return serviceBeanMap.values().stream()
+                .mapToInt(nettyConfig::maxRequestSize)
+                .reduce(nettyConfig.getMaxRequestSize(), Math::max);
+    }
+
+    @Override
+    protected boolean isContentLengthInvalid(HttpMessage start, int maxContentLength) {
+        String      serviceName = start.headers().get(HEADER_SERVICE_CLASS);
+        ServiceBean serviceBean = null != serviceName ? serviceBeanMap.get(serviceName) : null;
+        return HttpUtil.getContentLength(start, -1L) > nettyConfig.maxRequestSize(serviceBean);
+    }
+
+    @Override
+    protected void handleOversizedMessage(ChannelHandlerContext ctx, HttpMessage oversized) throws Exception {
+        if (!(oversized instanceof HttpRequest)) {
+            super.handleOversizedMessage(ctx, oversized);
+            return;
+        }
+        log.warn("Client {} request body too large, content-length: {}", ctx.channel(), HttpUtil.getContentLength(oversized, -1L));
+
+        FullHttpResponse httpResponse = HttpServerHandler.errorResponse(oversized, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE,
+                new RpcException("Request body too large."));
+
+        // 剩余的请求体由聚合器丢弃，非keep-alive的连接直接关闭
+        if (!HttpUtil.isKeepAlive(oversized)) {
+            ctx.writeAndFlush(httpResponse).addListener(ChannelFutureListener.CLOSE);
+        } else {
+            ctx.writeAndFlush(httpResponse).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+    }
+
+}
@@ -1,24 +1,32 @@
 package com.kongzhong.mrpc.transport.http;
 
+import com.google.common.base.Throwables;
 import com.kongzhong.mrpc.Const;
-import com.kongzhong.mrpc.model.RpcContext;
+import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.model.ServiceBean;
 import com.kongzhong.mrpc.model.ServiceStatusTable;
+import com.kongzhong.mrpc.serialize.AttachmentCodec;
 import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
 import com.kongzhong.mrpc.server.AbstractResponseInvoker;
 import com.kongzhong.mrpc.server.SimpleRpcServer;
+import com.kongzhong.mrpc.transport.http.HttpAttachments.AttachmentResponse;
 import com.kongzhong.mrpc.utils.TimeUtils;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
-import io.netty.util.CharsetUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
+import static com.kongzhong.mrpc.Const.HEADER_ATTACHMENT;
+
 /**
  * Http响应回调处理
  */
@@ -27,42 +35,105 @@ public class HttpResponseInvoker extends AbstractResponseInvoker<FullHttpRespons
 
     private FullHttpResponse httpResponse;
 
-    public HttpResponseInvoker(RpcRequest request, FullHttpResponse httpResponse, Map<String, ServiceBean> serviceBeanMap) {
+    /**
+     * 响应体ByteBuf的初始容量
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * 响应体最大字节数
+     */
+    private int maxResponseSize;
+
+    /**
+     * Channel的ByteBuf分配器，响应体直接序列化到池化的ByteBuf中
+     */
+    private ByteBufAllocator allocator;
+
+    public HttpResponseInvoker(RpcRequest request, FullHttpResponse httpResponse, Map<String, ServiceBean> serviceBeanMap,
+                               int maxResponseSize, ByteBufAllocator allocator) {
         super(request, null, serviceBeanMap);
         this.httpResponse = httpResponse;
+        this.maxResponseSize = maxResponseSize;
+        this.allocator = allocator;
     }
 
     @Override
-    public FullHttpResponse call() throws Exception {
+    protected FullHttpResponse buildResponse(Object result, Throwable t) throws Exception {
+        // 二进制返回值作为附件跟在json之后写出
+        List<Object> attachments = null;
+        if (null == t && AttachmentCodec.isAttachment(result)) {
+            try {
+                attachments = Collections.singletonList(AttachmentCodec.encode(result, allocator));
+                result = null;
+            } catch (IOException e) {
+                t = e;
+            }
+        }
+
         RpcResponse rpcResponse = new RpcResponse();
         rpcResponse.setRequestId(request.getRequestId());
-        try {
-            if (null != request.getContext()) {
-                rpcResponse.getContext().putAll(request.getContext());
-            }
-            if (null != rpcResponse.getContext()) {
-                rpcResponse.getContext().putIfAbsent(Const.APP_NAME, SimpleRpcServer.getContext(Const.APP_NAME));
-                rpcResponse.getContext().putIfAbsent(Const.SERVER_OWNER, SimpleRpcServer.getContext(Const.SERVER_OWNER));
-            }
-            Object result = super.invokeMethod(request);
+        if (null != request.getContext()) {
+            rpcResponse.getContext().putAll(request.getContext());
+        }
+        if (null != rpcResponse.getContext()) {
+            rpcResponse.getContext().putIfAbsent(Const.APP_NAME, SimpleRpcServer.getContext(Const.APP_NAME));
+            rpcResponse.getContext().putIfAbsent(Const.SERVER_OWNER, SimpleRpcServer.getContext(Const.SERVER_OWNER));
+        }
+        if (null == t) {
             rpcResponse.setResult(result);
             if (null != request.getReturnType()) {
                 rpcResponse.setReturnType(request.getReturnType().getName());
             }
             rpcResponse.setSuccess(true);
-        } catch (Throwable e) {
-            e = buildErrorResponse(e, rpcResponse);
+        } else {
+            t = buildErrorResponse(t, rpcResponse);
             if (SimpleRpcServer.PRINT_ERROR_LOG) {
-                log.error("Service method invoke error", e);
+                log.error("Service method invoke error", t);
             }
-        } finally {
-            RpcContext.remove();
         }
-        String  body    = JacksonSerialize.toJSONString(rpcResponse);
-        ByteBuf byteBuf = Unpooled.wrappedBuffer(body.getBytes(CharsetUtil.UTF_8));
-        httpResponse.content().clear().writeBytes(byteBuf);
-        httpResponse.headers().set(HttpHeaders.Names.CONTENT_LENGTH, httpResponse.content().readableBytes());
-        return httpResponse;
+        // json的容量上限为附件之外剩余的字节数，超出时序列化立即失败，不会先构造出完整的响应体
+        int     maxContentSize = (int) Math.max(0, maxResponseSize - HttpAttachments.length(attachments));
+        ByteBuf content        = allocator.buffer(Math.min(INITIAL_CAPACITY, maxContentSize), maxContentSize);
+        try {
+            JacksonSerialize.writeTo(rpcResponse, new ByteBufOutputStream(content));
+        } catch (Exception e) {
+            content.release();
+            HttpAttachments.releaseAll(attachments);
+            if (!exceedsCapacity(e)) {
+                throw e;
+            }
+            log.warn("{}.{}() response body exceeds {} bytes", request.getClassName(), request.getMethodName(), maxResponseSize);
+            attachments = null;
+            RpcResponse errorResponse = new RpcResponse();
+            errorResponse.setRequestId(request.getRequestId());
+            errorResponse.setContext(rpcResponse.getContext());
+            buildErrorResponse(new RpcException("Response body too large."), errorResponse);
+            content = allocator.buffer();
+            try {
+                JacksonSerialize.writeTo(errorResponse, new ByteBufOutputStream(content));
+            } catch (Exception ex) {
+                content.release();
+                throw ex;
+            }
+        }
+        if (null != attachments) {
+            AttachmentResponse attachmentResponse = new AttachmentResponse(httpResponse.status(), content, attachments);
+            attachmentResponse.headers().set(httpResponse.headers());
+            attachmentResponse.headers().set(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes() + HttpAttachments.length(attachments));
+            attachmentResponse.headers().set(HEADER_ATTACHMENT, HttpAttachments.header(attachments));
+            return attachmentResponse;
+        }
+        FullHttpResponse fullHttpResponse = httpResponse.replace(content);
+        fullHttpResponse.headers().set(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes());
+        return fullHttpResponse;
+    }
+
+    /**
+     * 序列化是否因为写满响应体的容量上限而失败
+     */
+    private static boolean exceedsCapacity(Exception e) {
+        return Throwables.getCausalChain(e).stream().anyMatch(IndexOutOfBoundsException.class::isInstance);
     }
 
 }
\ No newline at end of file
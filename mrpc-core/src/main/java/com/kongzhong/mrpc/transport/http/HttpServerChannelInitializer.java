@@ -1,5 +1,8 @@
 package com.kongzhong.mrpc.transport.http;
 
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.server.RpcMapping;
+import com.kongzhong.mrpc.transport.netty.FlushBatchHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.*;
@@ -9,7 +12,10 @@ import io.netty.handler.codec.http.*;
  */
 public class HttpServerChannelInitializer extends ChannelInitializer<SocketChannel> {
 
-    public HttpServerChannelInitializer() {
+    private NettyConfig nettyConfig;
+
+    public HttpServerChannelInitializer(NettyConfig nettyConfig) {
+        this.nettyConfig = nettyConfig;
     }
 
     @Override
@@ -17,11 +23,17 @@ public class HttpServerChannelInitializer extends ChannelInitializer<SocketChann
         socketChannel.pipeline()
                 // inbound handler
                 .addLast(new HttpRequestDecoder())
-                .addLast(new HttpContentDecompressor())
+                .addLast(new RpcContentDecompressor())
                 // outbound handler
                 .addLast(new HttpResponseEncoder())
-                .addLast(new HttpContentCompressor())
-                .addLast(new HttpObjectAggregator(Integer.MAX_VALUE))
-                .addLast(new HttpServerHandler());
+                .addLast(new HttpAttachmentWriter(false))
+                .addLast(new RpcContentCompressor(nettyConfig))
+                .addLast(new HttpStreamSequencer())
+                .addLast(new HttpRequestAggregator(nettyConfig, RpcMapping.me().getServiceBeanMap()))
+                .addLast(new HttpServerHandler(nettyConfig));
+
+        if (nettyConfig.isFlushBatch()) {
+            socketChannel.pipeline().addFirst(new FlushBatchHandler(nettyConfig.getFlushBatchCount(), nettyConfig.getFlushBatchBytes()));
+        }
     }
 }
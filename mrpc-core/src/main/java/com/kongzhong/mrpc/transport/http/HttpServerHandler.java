@@ -1,6 +1,8 @@
 package com.kongzhong.mrpc.transport.http;
 
+import com.google.common.util.concurrent.Futures;
 import com.kongzhong.mrpc.Const;
+import com.kongzhong.mrpc.config.NettyConfig;
 import com.kongzhong.mrpc.enums.EventType;
 import com.kongzhong.mrpc.enums.MediaTypeEnum;
 import com.kongzhong.mrpc.enums.NodeStatusEnum;
@@ -11,25 +13,33 @@ import com.kongzhong.mrpc.exception.SerializeException;
 import com.kongzhong.mrpc.model.*;
 import com.kongzhong.mrpc.registry.ServiceRegistry;
 import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
+import com.kongzhong.mrpc.server.InFlightRequests;
 import com.kongzhong.mrpc.server.RpcMapping;
+import com.kongzhong.mrpc.server.ServiceMethod;
 import com.kongzhong.mrpc.server.SimpleRpcServer;
-import com.kongzhong.mrpc.utils.ReflectUtils;
 import com.kongzhong.mrpc.utils.StringUtils;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http2.DefaultHttp2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2MultiplexCodec;
+import io.netty.handler.codec.http2.Http2StreamChannel;
 import io.netty.util.CharsetUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.aop.support.AopUtils;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 import static com.kongzhong.mrpc.Const.*;
 import static com.kongzhong.mrpc.server.SimpleRpcServer.SERVICE_REGISTRY_MAP;
@@ -47,10 +57,19 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpReque
 
     private Map<String, ServiceBean> serviceBeanMap;
 
-    private static boolean IS_OFFLINE = false;
+    private NettyConfig nettyConfig;
 
-    HttpServerHandler() {
+    private static volatile boolean IS_OFFLINE = false;
+
+    HttpServerHandler(NettyConfig nettyConfig) {
         this.serviceBeanMap = RpcMapping.me().getServiceBeanMap();
+        this.nettyConfig = nettyConfig;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        InFlightRequests.me().register(ctx.channel());
+        super.channelActive(ctx);
     }
 
     @Override
@@ -64,6 +83,26 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpReque
         ctx.flush();
     }
 
+    /**
+     * 停机下线时通知连接上的客户端：h2c连接发送GOAWAY，客户端不再新建流；
+     * http/1.1连接之后的响应带上Connection: close，客户端不再复用该连接
+     */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt != InFlightRequests.OFFLINE_EVENT) {
+            super.userEventTriggered(ctx, evt);
+            return;
+        }
+        if (ctx.channel() instanceof Http2StreamChannel) {
+            return;
+        }
+        if (null != ctx.pipeline().get(Http2MultiplexCodec.class)) {
+            ctx.writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.NO_ERROR));
+        } else if (null == ctx.pipeline().get(OfflineResponseWriter.class)) {
+            ctx.pipeline().addBefore(ctx.name(), null, OfflineResponseWriter.me());
+        }
+    }
+
     @Override
     public void channelRead0(ChannelHandlerContext ctx, FullHttpRequest httpRequest) throws Exception {
         String             uri          = httpRequest.uri();
@@ -128,109 +167,255 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpReque
             return;
         }
 
+        if ("/rpc/batch".equals(path)) {
+            this.invokeBatch(ctx, httpRequest);
+            return;
+        }
+
         if (!"/rpc".equals(path)) {
             log.warn("Client {} request [{}]", ctx.channel(), path);
             this.sendError(ctx, httpRequest, new RpcException("Bad request"));
             return;
         }
 
-        String body = httpRequest.content().toString(CharsetUtil.UTF_8);
-        if (StringUtils.isEmpty(body)) {
+        if (!httpRequest.content().isReadable()) {
             this.sendError(ctx, httpRequest, new RpcException("Request body not is empty."));
             return;
         }
 
-        RequestBody requestBody;
+        // 请求头带服务名时在解析请求体之前校验该服务的上限，超出的请求不再解析
+        String headerService = httpRequest.headers().get(HEADER_SERVICE_CLASS);
+        if (null != headerService && httpRequest.content().readableBytes() > nettyConfig.maxRequestSize(serviceBeanMap.get(headerService))) {
+            this.sendError(ctx, httpRequest, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, new RpcException("Request body too large."));
+            return;
+        }
+
+        int[]                           attachmentLengths;
+        RequestBody                     requestBody;
+        Map<RequestBody, ServiceMethod> resolved = new IdentityHashMap<>(2);
         try {
-            requestBody = JacksonSerialize.parseObject(body, RequestBody.class);
+            // 直接从聚合后的分块内容中流式解析，参数按目标方法的类型一次解析完成，附件之前的部分是json
+            attachmentLengths = HttpAttachments.lengths(httpRequest.headers());
+            requestBody = RequestBodyDecoder.decode(new ByteBufInputStream(HttpAttachments.json(httpRequest.content(), attachmentLengths)), this.resolver(resolved));
 
-            log.debug("Server receive body: {}", JacksonSerialize.toJSONString(requestBody));
+            if (log.isDebugEnabled()) {
+                log.debug("Server receive body: {}", JacksonSerialize.toJSONString(requestBody));
+            }
         } catch (Exception e) {
             log.error("Server receive body parse error", e);
             this.sendError(ctx, httpRequest, new RpcException("Unable to identify the request format."));
             return;
         }
 
-        String serviceName = requestBody.getService();
-        String methodName  = requestBody.getMethod();
+        ServiceBean   serviceBean;
+        ServiceMethod serviceMethod;
+        RpcRequest    rpcRequest;
+        try {
+            serviceBean = this.checkService(requestBody);
+            serviceMethod = this.resolvedMethod(requestBody, resolved);
+            rpcRequest = this.parseParams(requestBody, serviceMethod, httpRequest.headers().getInt(HEADER_WAIT_TIMEOUT, 0));
+        } catch (RpcException e) {
+            this.sendError(ctx, httpRequest, e);
+            return;
+        }
 
-        if (StringUtils.isEmpty(serviceName)) {
-            this.sendError(ctx, httpRequest, new RpcException("Service not is null."));
+        // 没有服务名请求头时只能按请求体中的服务校验上限
+        if (!requestBody.getService().equals(headerService) && httpRequest.content().readableBytes() > nettyConfig.maxRequestSize(serviceBean)) {
+            this.sendError(ctx, httpRequest, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, new RpcException("Request body too large."));
             return;
         }
 
-        if (StringUtils.isEmpty(methodName)) {
-            this.sendError(ctx, httpRequest, new RpcException("Method not is null."));
+        // 二进制参数从json之后的附件中切出，调用结束后释放
+        try {
+            HttpAttachments.decodeParameters(rpcRequest, httpRequest.content(), attachmentLengths);
+        } catch (Exception e) {
+            log.error("Server receive attachments error", e);
+            this.sendError(ctx, httpRequest, new RpcException("Unable to identify the request attachments."));
             return;
         }
 
-        ServiceBean serviceBean = serviceBeanMap.get(serviceName);
-        if (null == serviceBean) {
-            this.sendError(ctx, httpRequest, new RpcException("Not register service [" + serviceName + "]."));
+        // 响应体由HttpResponseInvoker序列化到池化的ByteBuf后替换
+        FullHttpResponse httpResponse = this.newResponse(httpRequest, rpcRequest.getRequestId(), rpcRequest.getClassName(), rpcRequest.getMethodName());
+
+        // 流式方法逐个元素分块写出，不受响应体大小上限的限制
+        if (serviceMethod.isStreaming()) {
+            HttpStreamInvoker streamInvoker = new HttpStreamInvoker(rpcRequest, httpResponse, serviceBeanMap, ctx);
+            streamInvoker.setServiceMethod(serviceMethod);
+            SimpleRpcServer.submit(streamInvoker, httpRequest, ctx);
+            return;
+        }
+
+        HttpResponseInvoker responseCallback = new HttpResponseInvoker(rpcRequest, httpResponse, serviceBeanMap, nettyConfig.maxResponseSize(serviceBean), ctx.alloc());
+        responseCallback.setServiceMethod(serviceMethod);
+        SimpleRpcServer.submit(responseCallback, httpRequest, ctx);
+    }
+
+    /**
+     * 处理批量请求，每个调用单独校验和执行，某个调用出错只影响它自己的响应
+     * <p>
+     * 所有调用在各自服务的线程池上并行执行，全部完成后按请求顺序写回一个响应。
+     */
+    private void invokeBatch(ChannelHandlerContext ctx, FullHttpRequest httpRequest) throws Exception {
+        if (!httpRequest.content().isReadable()) {
+            this.sendError(ctx, httpRequest, new RpcException("Request body not is empty."));
             return;
         }
 
-        Object bean = serviceBean.getBean();
-        if (null == bean) {
-            this.sendError(ctx, httpRequest, new RpcException("Not found bean [" + serviceName + "]."));
+        // 批量请求可能跨多个服务，使用全局的请求体上限
+        if (httpRequest.content().writerIndex() > nettyConfig.getMaxRequestSize()) {
+            this.sendError(ctx, httpRequest, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, new RpcException("Request body too large."));
             return;
         }
 
-        // 解析请求
-        Class<?>   targetClass = AopUtils.getTargetClass(bean);
-        RpcRequest rpcRequest  = this.parseParams(ctx, httpRequest, requestBody, targetClass);
-        if (null != rpcRequest) {
-            FullHttpResponse httpResponse = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.OK,
-                    Unpooled.copiedBuffer("", CharsetUtil.UTF_8), false);
-            httpResponse.headers().set(CONTENT_TYPE, MediaTypeEnum.JSON.toString());
-            httpResponse.headers().set(HEADER_REQUEST_ID, rpcRequest.getRequestId());
-            httpResponse.headers().set(HEADER_SERVICE_CLASS, rpcRequest.getClassName());
-            httpResponse.headers().set(HEADER_METHOD_NAME, rpcRequest.getMethodName());
-            httpResponse.headers().set(CONTENT_LENGTH, httpResponse.content().readableBytes());
-            httpResponse.headers().set(ACCESS_CONTROL_ALLOW_ORIGIN, "*");
-            httpResponse.headers().set(CACHE_CONTROL, "no-cache");
-            httpResponse.headers().set(PRAGMA, "no-cache");
-            httpResponse.headers().set(EXPIRES, "-1");
+        List<RequestBody>               requestBodies;
+        Map<RequestBody, ServiceMethod> resolved = new IdentityHashMap<>();
+        try {
+            requestBodies = RequestBodyDecoder.decodeBatch(new ByteBufInputStream(httpRequest.content()), this.resolver(resolved));
 
-            if (HttpUtil.isKeepAlive(httpRequest)) {
-                httpResponse.headers().set(CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+            if (log.isDebugEnabled()) {
+                log.debug("Server receive batch body: {}", JacksonSerialize.toJSONString(requestBodies));
             }
+        } catch (Exception e) {
+            log.error("Server receive batch body parse error", e);
+            this.sendError(ctx, httpRequest, new RpcException("Unable to identify the request format."));
+            return;
+        }
 
-            HttpResponseInvoker responseCallback = new HttpResponseInvoker(rpcRequest, httpResponse, serviceBeanMap);
-            SimpleRpcServer.submit(responseCallback, ctx);
+        int                        waitTimeout = httpRequest.headers().getInt(HEADER_WAIT_TIMEOUT, 0);
+        List<BatchResponseInvoker> tasks       = new ArrayList<>(requestBodies.size());
+        List<Throwable>            rejects     = new ArrayList<>(requestBodies.size());
+        for (RequestBody requestBody : requestBodies) {
+            try {
+                this.checkService(requestBody);
+                ServiceMethod        serviceMethod = this.resolvedMethod(requestBody, resolved);
+                BatchResponseInvoker task          = new BatchResponseInvoker(this.parseParams(requestBody, serviceMethod, waitTimeout), serviceBeanMap);
+                task.setServiceMethod(serviceMethod);
+                tasks.add(task);
+                rejects.add(null);
+            } catch (RpcException e) {
+                RpcRequest rpcRequest = RpcRequest.builder()
+                        .requestId(requestBody.getRequestId())
+                        .className(requestBody.getService())
+                        .methodName(requestBody.getMethod())
+                        .context(requestBody.getContext())
+                        .build();
+                tasks.add(new BatchResponseInvoker(rpcRequest, serviceBeanMap));
+                rejects.add(e);
+            }
         }
+
+        FullHttpResponse httpResponse = this.newResponse(httpRequest, httpRequest.headers().get(HEADER_REQUEST_ID, ""), "", "");
+        httpResponse.headers().set(HEADER_BATCH, Boolean.TRUE.toString());
+
+        SimpleRpcServer.submitBatch(tasks, rejects, rpcResponses -> Futures.immediateFuture(this.mergeResponses(httpResponse, rpcResponses, ctx.alloc())), httpRequest, ctx);
     }
 
     /**
-     * 解析请求参数
+     * 按请求顺序把批量中所有调用的响应序列化为一个json数组
+     */
+    private FullHttpResponse mergeResponses(FullHttpResponse httpResponse, List<RpcResponse> rpcResponses, ByteBufAllocator allocator) throws Exception {
+        ByteBuf content = allocator.buffer();
+        try {
+            JacksonSerialize.writeTo(rpcResponses, new ByteBufOutputStream(content));
+            if (content.readableBytes() > nettyConfig.getMaxResponseSize()) {
+                log.warn("Batch response body too large: {} bytes", content.readableBytes());
+                RpcResponse[] errorResponses = new RpcResponse[rpcResponses.size()];
+                for (int i = 0; i < errorResponses.length; i++) {
+                    errorResponses[i] = new RpcResponse();
+                    errorResponses[i].setRequestId(rpcResponses.get(i).getRequestId());
+                    errorResponses[i].setSuccess(false);
+                    errorResponses[i].setReturnType(RpcException.class.getName());
+                    errorResponses[i].setException(JacksonSerialize.toJSONString(new RpcException("Response body too large.")));
+                }
+                JacksonSerialize.writeTo(errorResponses, new ByteBufOutputStream(content.clear()));
+            }
+        } catch (Exception e) {
+            content.release();
+            throw e;
+        }
+        FullHttpResponse fullHttpResponse = httpResponse.replace(content);
+        fullHttpResponse.headers().set(CONTENT_LENGTH, content.readableBytes());
+        return fullHttpResponse;
+    }
+
+    /**
+     * 构造rpc响应，响应体在服务方法执行完成后替换
+     */
+    private FullHttpResponse newResponse(FullHttpRequest httpRequest, String requestId, String serviceName, String methodName) {
+        FullHttpResponse httpResponse = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.OK, Unpooled.EMPTY_BUFFER, false);
+        httpResponse.headers().set(CONTENT_TYPE, MediaTypeEnum.JSON.toString());
+        httpResponse.headers().set(HEADER_REQUEST_ID, requestId);
+        httpResponse.headers().set(HEADER_SERVICE_CLASS, serviceName);
+        httpResponse.headers().set(HEADER_METHOD_NAME, methodName);
+        httpResponse.headers().set(CONTENT_LENGTH, httpResponse.content().readableBytes());
+        httpResponse.headers().set(ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+        httpResponse.headers().set(CACHE_CONTROL, "no-cache");
+        httpResponse.headers().set(PRAGMA, "no-cache");
+        httpResponse.headers().set(EXPIRES, "-1");
+
+        if (HttpUtil.isKeepAlive(httpRequest)) {
+            httpResponse.headers().set(CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+        }
+        return httpResponse;
+    }
+
+    /**
+     * 校验请求的服务
      *
-     * @param ctx         NettyChannel上下文
      * @param requestBody 请求体
-     * @param type        方法所在Class
+     * @return 返回请求的服务
+     * @throws RpcException 服务名、方法名为空或者服务不存在时抛出
+     */
+    private ServiceBean checkService(RequestBody requestBody) throws RpcException {
+        String serviceName = requestBody.getService();
+
+        if (StringUtils.isEmpty(serviceName)) {
+            throw new RpcException("Service not is null.");
+        }
+
+        if (StringUtils.isEmpty(requestBody.getMethod())) {
+            throw new RpcException("Method not is null.");
+        }
+
+        ServiceBean serviceBean = serviceBeanMap.get(serviceName);
+        if (null == serviceBean) {
+            throw new RpcException("Not register service [" + serviceName + "].");
+        }
+
+        if (null == serviceBean.getBean()) {
+            throw new RpcException("Not found bean [" + serviceName + "].");
+        }
+        return serviceBean;
+    }
+
+    /**
+     * 解析请求参数
+     *
+     * @param requestBody   请求体
+     * @param serviceMethod 请求的服务方法，可以为null
+     * @param waitTimeout   客户端剩余的超时时间
      * @return 返回一个RpcRequest
-     * @throws NoSuchMethodException 当方法签名不存在时抛出
+     * @throws RpcException 当方法签名不存在时抛出
      */
-    private RpcRequest parseParams(ChannelHandlerContext ctx, FullHttpRequest httpRequest, RequestBody requestBody, Class<?> type) throws Exception {
+    private RpcRequest parseParams(RequestBody requestBody, ServiceMethod serviceMethod, int waitTimeout) throws RpcException {
 
         String serviceName = requestBody.getService();
         String methodName  = requestBody.getMethod();
 
-        Method       method  = ReflectUtils.method(type, methodName);
-        List<Object> argJSON = requestBody.getParameters();
-
-        // 找不到method
-        if (null == method) {
-            this.sendError(ctx, httpRequest, new RpcException("Method [" + methodName + "] not found."));
-            return null;
+        // 找不到method，重载的方法需要传入parameterTypes
+        if (null == serviceMethod) {
+            throw new RpcException("Method [" + methodName + "] not found.");
         }
 
-        // 解析参数到args中
-        Object[] args                  = new Object[method.getParameterCount()];
-        Type[]   genericParameterTypes = method.getGenericParameterTypes();
+        Method       method     = serviceMethod.getMethod();
+        List<Object> parameters = requestBody.getParameters();
 
-        for (int i = 0; i < args.length; i++) {
-            Type paramType = genericParameterTypes[i];
-            args[i] = JacksonSerialize.parseObject(JacksonSerialize.toJSONString(argJSON.get(i)), paramType);
+        // 参数已经由RequestBodyDecoder按方法签名解析
+        Object[] args = new Object[method.getParameterCount()];
+        if (null != parameters) {
+            for (int i = 0; i < args.length && i < parameters.size(); i++) {
+                args[i] = parameters.get(i);
+            }
         }
 
         // 构造请求
@@ -244,39 +429,86 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpReque
                 .parameterTypes(method.getParameterTypes())
                 .returnType(method.getReturnType())
                 .parameters(args)
+                .waitTimeout(waitTimeout)
                 .build();
     }
 
+    /**
+     * 从服务发布时建立的分发表中查找目标方法
+     *
+     * @param requestBody 请求体，方法重载时根据parameterTypes区分
+     * @return 返回目标方法，服务或方法不存在、或者重载的方法没有传入parameterTypes时返回null
+     */
+    private ServiceMethod findMethod(RequestBody requestBody) {
+        return RpcMapping.me().getServiceMethod(requestBody.getService(), requestBody.getMethod(), requestBody.getParameterTypes());
+    }
+
+    /**
+     * 解码时查找服务方法，找到的方法按请求体记录下来，之后不再查找
+     *
+     * @param resolved 请求体到服务方法的记录，按对象标识区分请求体
+     */
+    private Function<RequestBody, ServiceMethod> resolver(Map<RequestBody, ServiceMethod> resolved) {
+        return requestBody -> resolved.computeIfAbsent(requestBody, this::findMethod);
+    }
+
+    /**
+     * 请求体的服务方法，请求中没有参数时解码过程不会查找，这里查找一次
+     */
+    private ServiceMethod resolvedMethod(RequestBody requestBody, Map<RequestBody, ServiceMethod> resolved) {
+        ServiceMethod serviceMethod = resolved.get(requestBody);
+        return null != serviceMethod ? serviceMethod : this.findMethod(requestBody);
+    }
+
     /**
      * 错误处理
      *
      * @param ctx NettyChannel上下文
      */
     private void sendError(ChannelHandlerContext ctx, FullHttpRequest msg, Exception e) throws SerializeException {
+        this.sendError(ctx, msg, HttpResponseStatus.BAD_GATEWAY, e);
+    }
+
+    private void sendError(ChannelHandlerContext ctx, FullHttpRequest msg, HttpResponseStatus status, Exception e) throws SerializeException {
+        ctx.writeAndFlush(errorResponse(msg, status, e));
+    }
+
+    /**
+     * 构造错误响应
+     *
+     * @param msg    请求，可以为null
+     * @param status 响应状态码
+     * @param e      异常信息，客户端按异常类型决定是否重试，只有服务端下线时使用ConnectException
+     * @return 返回包含RpcResponse的错误响应
+     */
+    public static FullHttpResponse errorResponse(HttpMessage msg, HttpResponseStatus status, Exception e) throws SerializeException {
         RpcResponse rpcResponse = new RpcResponse();
         if (null != msg) {
             rpcResponse.setRequestId(msg.headers().get(Const.HEADER_REQUEST_ID, ""));
         }
         rpcResponse.setSuccess(false);
         rpcResponse.setException(JacksonSerialize.toJSONString(e));
-        rpcResponse.setReturnType(ConnectException.class.getName());
+        rpcResponse.setReturnType(e.getClass().getName());
 
         String body = JacksonSerialize.toJSONString(rpcResponse);
 
-        FullHttpResponse httpResponse = new DefaultFullHttpResponse(HTTP_1_1, HttpResponseStatus.BAD_GATEWAY,
+        FullHttpResponse httpResponse = new DefaultFullHttpResponse(HTTP_1_1, status,
                 Unpooled.copiedBuffer(body, CharsetUtil.UTF_8), false);
         httpResponse.headers().set(CONTENT_TYPE, MediaTypeEnum.JSON.toString());
         if (null != msg) {
             httpResponse.headers().set(HEADER_REQUEST_ID, msg.headers().get(Const.HEADER_REQUEST_ID, ""));
             httpResponse.headers().set(HEADER_SERVICE_CLASS, msg.headers().get(Const.HEADER_SERVICE_CLASS, ""));
             httpResponse.headers().set(HEADER_METHOD_NAME, msg.headers().get(Const.HEADER_METHOD_NAME, ""));
+            if (msg.headers().contains(HEADER_BATCH)) {
+                httpResponse.headers().set(HEADER_BATCH, msg.headers().get(HEADER_BATCH));
+            }
         }
         httpResponse.headers().set(CONTENT_LENGTH, httpResponse.content().readableBytes());
         httpResponse.headers().set(ACCESS_CONTROL_ALLOW_ORIGIN, "*");
         httpResponse.headers().set(CACHE_CONTROL, "no-cache");
         httpResponse.headers().set(PRAGMA, "no-cache");
         httpResponse.headers().set(EXPIRES, "-1");
-        ctx.writeAndFlush(httpResponse);
+        return httpResponse;
     }
 
     @Override
@@ -298,4 +530,8 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<FullHttpReque
         IS_OFFLINE = false;
     }
 
+    public static boolean isOffline() {
+        return IS_OFFLINE;
+    }
+
 }
\ No newline at end of file
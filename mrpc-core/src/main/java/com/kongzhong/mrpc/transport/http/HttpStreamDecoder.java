@@ -0,0 +1,146 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.client.RpcStreamIterator;
+import com.kongzhong.mrpc.exception.ConnectException;
+import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.model.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ByteProcessor;
+import lombok.extern.slf4j.Slf4j;
+
+import static com.kongzhong.mrpc.Const.HEADER_STREAM;
+
+/**
+ * 流式响应解码器
+ * <p>
+ * 放在HttpObjectAggregator之前，带有stream头的响应不再聚合：收到响应头时完成调用并返回迭代器，
+ * 之后的分块按行解码为帧交给迭代器，其他响应原样交给聚合器。
+ * http/1.1连接上服务端保证流式响应的分块之间没有其他响应，一个连接同时只有一个流，流结束之前连接保留一个未完成请求的名额。
+ *
+ * @author biezhi
+ * 2017/5/9
+ */
+@Slf4j
+class HttpStreamDecoder extends ChannelInboundHandlerAdapter {
+
+    private final HttpClientHandler httpClientHandler;
+
+    /**
+     * 是否正在接收流式响应
+     */
+    private boolean streaming;
+
+    /**
+     * 正在接收的流，请求已经超时或者解码出错时为null，剩余的分块直接丢弃
+     */
+    private RpcStreamIterator<Object> stream;
+
+    /**
+     * onStreamStart是否返回了流，流结束时通知httpClientHandler
+     */
+    private boolean started;
+
+    /**
+     * 还没有读到换行符的半帧
+     */
+    private ByteBuf cumulation;
+
+    HttpStreamDecoder(HttpClientHandler httpClientHandler) {
+        this.httpClientHandler = httpClientHandler;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!streaming) {
+            if (msg instanceof HttpResponse && !(msg instanceof FullHttpResponse) && ((HttpResponse) msg).headers().contains(HEADER_STREAM)) {
+                streaming = true;
+                stream = httpClientHandler.onStreamStart((HttpResponse) msg, ctx.channel());
+                started = null != stream;
+                return;
+            }
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (!(msg instanceof HttpContent)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        HttpContent content = (HttpContent) msg;
+        try {
+            this.decode(ctx, content.content());
+        } finally {
+            content.release();
+        }
+        if (msg instanceof LastHttpContent) {
+            this.finish(new ConnectException("Stream ended without end frame."));
+        }
+    }
+
+    /**
+     * 按换行符切分出完整的帧并解码
+     */
+    private void decode(ChannelHandlerContext ctx, ByteBuf in) {
+        if (null == stream || stream.isClosed()) {
+            return;
+        }
+        if (null == cumulation) {
+            cumulation = ctx.alloc().buffer(in.readableBytes());
+        }
+        cumulation.writeBytes(in);
+
+        int eol;
+        while ((eol = cumulation.forEachByte(ByteProcessor.FIND_LF)) >= 0) {
+            ByteBuf line = cumulation.readSlice(eol - cumulation.readerIndex());
+            cumulation.skipBytes(1);
+            if (!line.isReadable()) {
+                continue;
+            }
+            try {
+                RpcResponse frame = ResponseBodyDecoder.decodeFrame(new ByteBufInputStream(line), stream.getElementType());
+                stream.onFrame(frame);
+            } catch (Exception e) {
+                log.error("Stream frame decode error", e);
+                stream.onError(new RpcException("Stream frame decode error.", e));
+                stream = null;
+                return;
+            }
+        }
+        cumulation.discardSomeReadBytes();
+    }
+
+    /**
+     * 流结束，没有收到结束帧的流以该异常结束
+     */
+    private void finish(Throwable cause) {
+        if (null != stream) {
+            stream.onError(cause);
+        }
+        streaming = false;
+        stream = null;
+        if (null != cumulation) {
+            cumulation.release();
+            cumulation = null;
+        }
+        if (started) {
+            started = false;
+            httpClientHandler.onStreamEnd();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (streaming) {
+            this.finish(new ConnectException("Stream channel " + ctx.channel() + " closed."));
+        }
+        super.channelInactive(ctx);
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.Const;
+import com.kongzhong.mrpc.exception.ConnectException;
+import com.kongzhong.mrpc.exception.SerializeException;
+import com.kongzhong.mrpc.exception.TimeoutException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.model.ServiceBean;
+import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
+import com.kongzhong.mrpc.server.AbstractResponseInvoker;
+import com.kongzhong.mrpc.server.SimpleRpcServer;
+import com.kongzhong.mrpc.transport.http.HttpStreamSequencer.StreamContent;
+import com.kongzhong.mrpc.transport.http.HttpStreamSequencer.StreamHead;
+import com.kongzhong.mrpc.transport.http.HttpStreamSequencer.StreamLastContent;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.kongzhong.mrpc.Const.HEADER_STREAM;
+
+/**
+ * 流式方法的http响应回调处理
+ * <p>
+ * 服务方法返回Iterator或Stream后立即写出响应头，在业务线程上逐个读取元素，每个元素序列化为一行json分块写出：
+ * 数据帧只有result字段，最后一行是带success、exception和context的结束帧，元素读取出错时结束帧中返回该异常。
+ * 连接上最多有两个分块没有写出，客户端读取慢时业务线程等待，两端内存不随元素个数增长。
+ *
+ * @author biezhi
+ * 2017/5/9
+ */
+@Slf4j
+public class HttpStreamInvoker extends AbstractResponseInvoker<HttpObject> {
+
+    /**
+     * 攒够该字节数后写出一个分块
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * 距上次写出超过该时间时，新读到的元素不再等待攒满分块
+     */
+    private static final long FLUSH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 等待分块写出的最长时间，单位/毫秒，客户端长时间不读取时关闭连接
+     */
+    private static final long WRITE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * 响应头模板，出错时作为普通响应返回
+     */
+    private FullHttpResponse httpResponse;
+
+    private ChannelHandlerContext ctx;
+
+    public HttpStreamInvoker(RpcRequest request, FullHttpResponse httpResponse, Map<String, ServiceBean> serviceBeanMap, ChannelHandlerContext ctx) {
+        super(request, null, serviceBeanMap);
+        this.httpResponse = httpResponse;
+        this.ctx = ctx;
+    }
+
+    @Override
+    protected HttpObject buildResponse(Object result, Throwable t) throws Exception {
+        RpcResponse endFrame = this.newEndFrame();
+        if (null == t) {
+            return this.stream(result, endFrame);
+        }
+
+        // 还没有写出响应头，异常按普通响应返回
+        this.fail(t, endFrame);
+        ByteBuf content = ctx.alloc().buffer();
+        try {
+            JacksonSerialize.writeTo(endFrame, new ByteBufOutputStream(content));
+        } catch (Exception e) {
+            content.release();
+            throw e;
+        }
+        FullHttpResponse fullHttpResponse = httpResponse.replace(content);
+        fullHttpResponse.headers().set(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes());
+        return fullHttpResponse;
+    }
+
+    /**
+     * 写出响应头和所有元素
+     *
+     * @param result   服务方法返回的Iterator或Stream
+     * @param endFrame 结束帧
+     * @return 返回包含结束帧的最后一个分块
+     */
+    private HttpObject stream(Object result, RpcResponse endFrame) throws Exception {
+        StreamHead head = new StreamHead(this, HttpResponseStatus.OK);
+        head.headers().set(httpResponse.headers());
+        head.headers().set(HEADER_STREAM, Boolean.TRUE.toString());
+        HttpUtil.setTransferEncodingChunked(head, true);
+        // 客户端收到响应头时调用即返回，不等第一个元素
+        ctx.writeAndFlush(head);
+
+        ByteBuf       chunk     = ctx.alloc().buffer();
+        ChannelFuture previous  = null;
+        long          lastFlush = System.nanoTime();
+        int           count     = 0;
+        try {
+            Iterator<?> iterator = result instanceof Stream ? ((Stream<?>) result).iterator()
+                    : null != result ? (Iterator<?>) result : Collections.emptyIterator();
+            while (iterator.hasNext()) {
+                writeFrame(Collections.singletonMap("result", iterator.next()), chunk);
+                count++;
+                // 第一个元素立即写出，之后攒满一个分块或者距上次写出超过间隔时写出
+                if (null == previous || chunk.readableBytes() >= CHUNK_SIZE || System.nanoTime() - lastFlush >= FLUSH_INTERVAL) {
+                    ChannelFuture current = ctx.writeAndFlush(new StreamContent(this, chunk));
+                    chunk = ctx.alloc().buffer();
+                    this.awaitWritten(previous);
+                    previous = current;
+                    lastFlush = System.nanoTime();
+                }
+            }
+            endFrame.setSuccess(true);
+            if (null != request.getReturnType()) {
+                endFrame.setReturnType(request.getReturnType().getName());
+            }
+        } catch (Throwable e) {
+            this.fail(e, endFrame);
+        } finally {
+            closeStream(result);
+        }
+        log.debug("Request [{}] streamed {} elements", request.getRequestId(), count);
+
+        try {
+            writeFrame(endFrame, chunk);
+        } catch (Exception e) {
+            // 响应头已经写出，没有结束帧时客户端只能通过连接关闭得知流中断
+            chunk.release();
+            ctx.close();
+            throw e;
+        }
+        return new StreamLastContent(this, chunk);
+    }
+
+    /**
+     * 等待上一个分块写出，连接不可写时业务线程在这里暂停
+     */
+    private void awaitWritten(ChannelFuture future) {
+        if (null == future) {
+            return;
+        }
+        if (!future.awaitUninterruptibly(WRITE_TIMEOUT)) {
+            ctx.close();
+            throw new TimeoutException("Request [" + request.getRequestId() + "] stream write timeout.");
+        }
+        if (!future.isSuccess()) {
+            throw new ConnectException("Request [" + request.getRequestId() + "] stream write fail.", future.cause());
+        }
+    }
+
+    private RpcResponse newEndFrame() {
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setRequestId(request.getRequestId());
+        if (null != request.getContext()) {
+            rpcResponse.getContext().putAll(request.getContext());
+        }
+        rpcResponse.getContext().putIfAbsent(Const.APP_NAME, SimpleRpcServer.getContext(Const.APP_NAME));
+        rpcResponse.getContext().putIfAbsent(Const.SERVER_OWNER, SimpleRpcServer.getContext(Const.SERVER_OWNER));
+        return rpcResponse;
+    }
+
+    private void fail(Throwable t, RpcResponse endFrame) {
+        t = buildErrorResponse(t, endFrame);
+        if (SimpleRpcServer.PRINT_ERROR_LOG) {
+            log.error("Service method invoke error", t);
+        }
+    }
+
+    /**
+     * 序列化一行json帧，序列化失败时丢弃已经写入的部分
+     */
+    private static void writeFrame(Object frame, ByteBuf chunk) throws SerializeException {
+        int writerIndex = chunk.writerIndex();
+        try {
+            JacksonSerialize.writeTo(frame, new ByteBufOutputStream(chunk));
+            chunk.writeByte('\n');
+        } catch (SerializeException e) {
+            chunk.writerIndex(writerIndex);
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.kongzhong.mrpc.transport.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+
+/**
+ * http/1.1连接上流式响应的写出顺序控制
+ * <p>
+ * 同一个连接上的响应按完成顺序写出，流式响应的分块之间不能插入其他响应。
+ * 一个流式响应写出期间，其他响应和其他流式响应都在这里排队，该流结束后按顺序写出；
+ * 排队的写操作没有完成，等待写出的流式响应随之暂停，内存不会增长。
+ * h2c的每个请求是一个独立的流，不需要这个处理器。
+ *
+ * @author biezhi
+ * 2017/5/9
+ */
+class HttpStreamSequencer extends ChannelDuplexHandler {
+
+    /**
+     * 正在写出的流式响应，没有时为null
+     */
+    private Object active;
+
+    private final Queue<PendingWrite> pendingWrites = new ArrayDeque<>();
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        // 当前流的分块直接写出，其他响应等当前流结束
+        if (null != active && !isPartOf(msg, active)) {
+            pendingWrites.add(new PendingWrite(msg, promise));
+            return;
+        }
+        ctx.write(msg, promise);
+        if (this.update(msg)) {
+            this.drain(ctx);
+        }
+    }
+
+    /**
+     * 写出后更新当前流
+     *
+     * @return 当前流结束时返回true
+     */
+    private boolean update(Object msg) {
+        if (msg instanceof StreamHead) {
+            active = ((StreamHead) msg).owner;
+        } else if (msg instanceof StreamLastContent && ((StreamLastContent) msg).owner == active) {
+            active = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 按排队顺序写出排队的响应，遇到流式响应时只写出该流的分块，该流结束后从头重新检查
+     */
+    private void drain(ChannelHandlerContext ctx) {
+        boolean written = false;
+        boolean ended   = true;
+        while (ended) {
+            ended = false;
+            Iterator<PendingWrite> iterator = pendingWrites.iterator();
+            while (iterator.hasNext()) {
+                PendingWrite pendingWrite = iterator.next();
+                if (null != active && !isPartOf(pendingWrite.msg, active)) {
+                    continue;
+                }
+                iterator.remove();
+                ctx.write(pendingWrite.msg, pendingWrite.promise);
+                written = true;
+                if (this.update(pendingWrite.msg)) {
+                    ended = true;
+                    break;
+                }
+            }
+        }
+        if (written) {
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        this.failPendingWrites();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        this.failPendingWrites();
+    }
+
+    private void failPendingWrites() {
+        PendingWrite pendingWrite;
+        while (null != (pendingWrite = pendingWrites.poll())) {
+            ReferenceCountUtil.safeRelease(pendingWrite.msg);
+            pendingWrite.promise.tryFailure(new ClosedChannelException());
+        }
+    }
+
+    private static boolean isPartOf(Object msg, Object owner) {
+        return (msg instanceof StreamContent && ((StreamContent) msg).owner == owner)
+                || (msg instanceof StreamLastContent && ((StreamLastContent) msg).owner == owner);
+    }
+
+    private static final class PendingWrite {
+        private final Object         msg;
+        private final ChannelPromise promise;
+
+        private PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+
+    /**
+     * 流式响应的响应头
+     */
+    static final class StreamHead extends DefaultHttpResponse {
+        private final Object owner;
+
+        StreamHead(Object owner, HttpResponseStatus status) {
+            super(HttpVersion.HTTP_1_1, status, false);
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * 流式响应的一个分块
+     */
+    static final class StreamContent extends DefaultHttpContent {
+        private final Object owner;
+
+        StreamContent(Object owner, ByteBuf content) {
+            super(content);
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * 流式响应的最后一个分块，包含结束帧
+     */
+    static final class StreamLastContent extends DefaultLastHttpContent {
+        private final Object owner;
+
+        StreamLastContent(Object owner, ByteBuf content) {
+            super(content, false);
+            this.owner = owner;
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.kongzhong.mrpc.transport.http;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+
+/**
+ * 服务下线后http/1.1连接上的响应都带上Connection: close
+ * <p>
+ * 下线时由HttpServerHandler加到自己之前，客户端收到后不再复用该连接，连接在未完成的请求全部写出后由排空关闭。
+ *
+ * @author biezhi
+ * 2017/5/8
+ */
+@ChannelHandler.Sharable
+class OfflineResponseWriter extends ChannelOutboundHandlerAdapter {
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof HttpResponse) {
+            ((HttpResponse) msg).headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+        }
+        ctx.write(msg, promise);
+    }
+
+    private static final class OfflineResponseWriterHolder {
+        private static final OfflineResponseWriter INSTANCE = new OfflineResponseWriter();
+    }
+
+    static OfflineResponseWriter me() {
+        return OfflineResponseWriterHolder.INSTANCE;
+    }
+
+}
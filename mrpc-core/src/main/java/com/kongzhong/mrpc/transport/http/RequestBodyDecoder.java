@@ -0,0 +1,160 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.kongzhong.mrpc.model.RequestBody;
+import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
+import com.kongzhong.mrpc.server.ServiceMethod;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * http请求体解码器
+ * <p>
+ * 使用Jackson流式解析，先根据service和method找到目标方法，再把parameters中的每个元素直接解析为对应的参数类型，
+ * 不再经过List&lt;Object&gt;中转。parameters出现时还无法确定方法（例如在method之前，或者重载方法的parameterTypes在其之后）
+ * 先缓存为TokenBuffer，读完后再找方法解析。
+ *
+ * @author biezhi
+ * 2017/4/22
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RequestBodyDecoder {
+
+    private static final JavaType CONTEXT_TYPE         = JacksonSerialize.getJavaType(new HashMap<String, String>() {
+    }.getClass().getGenericSuperclass());
+    private static final JavaType PARAMETER_TYPES_TYPE = JacksonSerialize.getJavaType(new ArrayList<String>() {
+    }.getClass().getGenericSuperclass());
+
+    /**
+     * 解码请求体
+     *
+     * @param in             请求体输入流
+     * @param methodResolver 根据已经读到的服务名、方法名和参数类型查找预编译的服务方法，无法确定时返回null
+     * @return 返回RequestBody，找到方法时parameters为已经转换好类型的参数
+     * @throws IOException 请求体格式错误时抛出
+     */
+    public static RequestBody decode(InputStream in, Function<RequestBody, ServiceMethod> methodResolver) throws IOException {
+        try (JsonParser parser = JacksonSerialize.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw JsonMappingException.from(parser, "Request body must be a json object.");
+            }
+            return decode(parser, methodResolver);
+        }
+    }
+
+    /**
+     * 解码批量请求体，每个元素按各自的目标方法解析参数
+     *
+     * @param in             请求体输入流，内容为请求体的json数组
+     * @param methodResolver 根据已经读到的服务名、方法名和参数类型查找预编译的服务方法，无法确定时返回null
+     * @return 返回按请求顺序排列的RequestBody
+     * @throws IOException 请求体格式错误时抛出
+     */
+    public static List<RequestBody> decodeBatch(InputStream in, Function<RequestBody, ServiceMethod> methodResolver) throws IOException {
+        try (JsonParser parser = JacksonSerialize.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw JsonMappingException.from(parser, "Batch request body must be a json array.");
+            }
+            List<RequestBody> requestBodies = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                    throw JsonMappingException.from(parser, "Request body must be a json object.");
+                }
+                requestBodies.add(decode(parser, methodResolver));
+            }
+            return requestBodies;
+        }
+    }
+
+    /**
+     * 从START_OBJECT开始解析一个请求体，解析到对应的END_OBJECT
+     */
+    private static RequestBody decode(JsonParser parser, Function<RequestBody, ServiceMethod> methodResolver) throws IOException {
+        RequestBody requestBody = new RequestBody();
+        TokenBuffer parameters  = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "requestId":
+                    requestBody.setRequestId(parser.getValueAsString());
+                    break;
+                case "service":
+                    requestBody.setService(parser.getValueAsString());
+                    break;
+                case "method":
+                    requestBody.setMethod(parser.getValueAsString());
+                    break;
+                case "version":
+                    requestBody.setVersion(parser.getValueAsString());
+                    break;
+                case "context":
+                    requestBody.setContext(JacksonSerialize.readValue(parser, CONTEXT_TYPE));
+                    break;
+                case "parameterTypes":
+                    requestBody.setParameterTypes(JacksonSerialize.readValue(parser, PARAMETER_TYPES_TYPE));
+                    break;
+                case "parameters":
+                    ServiceMethod serviceMethod = null != requestBody.getService() && null != requestBody.getMethod()
+                            ? methodResolver.apply(requestBody) : null;
+                    if (null != serviceMethod) {
+                        requestBody.setParameters(readParameters(parser, serviceMethod));
+                    } else {
+                        parameters = JacksonSerialize.bufferValue(parser);
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        if (null != parameters && null != requestBody.getService() && null != requestBody.getMethod()) {
+            ServiceMethod serviceMethod = methodResolver.apply(requestBody);
+            if (null != serviceMethod) {
+                try (JsonParser bufferParser = parameters.asParser()) {
+                    bufferParser.nextToken();
+                    requestBody.setParameters(readParameters(bufferParser, serviceMethod));
+                }
+            }
+        }
+        return requestBody;
+    }
+
+    /**
+     * 按服务发布时解析好的参数类型逐个解析数组元素，多余的元素忽略
+     */
+    private static List<Object> readParameters(JsonParser parser, ServiceMethod serviceMethod) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw JsonMappingException.from(parser, "Request parameters must be a json array.");
+        }
+        JavaType[]   types      = serviceMethod.getParameterJavaTypes();
+        List<Object> parameters = new ArrayList<>(types.length);
+        int          index      = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (index < types.length) {
+                parameters.add(JacksonSerialize.readValue(parser, types[index]));
+            } else {
+                parser.skipChildren();
+            }
+            index++;
+        }
+        return parameters;
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * http响应体解码器
+ * <p>
+ * 使用请求登记的泛型返回类型，把result直接解析为目标类型，不再经过Object中转后二次解析。
+ *
+ * @author biezhi
+ * 2017/4/22
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResponseBodyDecoder {
+
+    private static final JavaType OBJECT_TYPE  = JacksonSerialize.getJavaType(Object.class);
+    private static final JavaType CONTEXT_TYPE = JacksonSerialize.getJavaType(new HashMap<String, String>() {
+    }.getClass().getGenericSuperclass());
+
+    /**
+     * 返回类型缓存
+     */
+    private static final Map<Type, JavaType> RESULT_TYPES = new ConcurrentHashMap<>();
+
+    /**
+     * 解码响应体
+     *
+     * @param in         响应体输入流
+     * @param resultType 方法的泛型返回类型，为null时result按Object解析
+     * @return 返回RpcResponse
+     * @throws IOException 响应体格式错误时抛出
+     */
+    public static RpcResponse decode(InputStream in, Type resultType) throws IOException {
+        try (JsonParser parser = JacksonSerialize.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw JsonMappingException.from(parser, "Response body must be a json object.");
+            }
+            return decode(parser, new RpcResponse(), resultType, null);
+        }
+    }
+
+    /**
+     * 解码批量响应体
+     *
+     * @param in          响应体输入流，内容为响应体的json数组
+     * @param resultTypes 根据响应中的请求id查找该请求的泛型返回类型，找不到时返回null
+     * @return 返回按请求顺序排列的RpcResponse
+     * @throws IOException 响应体格式错误时抛出
+     */
+    public static List<RpcResponse> decodeBatch(InputStream in, Function<String, Type> resultTypes) throws IOException {
+        try (JsonParser parser = JacksonSerialize.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw JsonMappingException.from(parser, "Batch response body must be a json array.");
+            }
+            List<RpcResponse> rpcResponses = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                    throw JsonMappingException.from(parser, "Response body must be a json object.");
+                }
+                rpcResponses.add(decode(parser, new RpcResponse(), null, resultTypes));
+            }
+            return rpcResponses;
+        }
+    }
+
+    /**
+     * 解码流式响应中的一行json帧
+     * <p>
+     * 数据帧只有result字段，解码后success为null；结束帧带有success、exception和context。
+     *
+     * @param in          一帧的输入流
+     * @param elementType 流中元素的泛型类型，为null时按Object解析
+     * @return 返回该帧的RpcResponse
+     * @throws IOException 帧格式错误时抛出
+     */
+    public static RpcResponse decodeFrame(InputStream in, Type elementType) throws IOException {
+        try (JsonParser parser = JacksonSerialize.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw JsonMappingException.from(parser, "Stream frame must be a json object.");
+            }
+            RpcResponse frame = new RpcResponse();
+            frame.setSuccess(null);
+            return decode(parser, frame, elementType, null);
+        }
+    }
+
+    /**
+     * 从START_OBJECT开始解析一个响应体
+     * <p>
+     * 按请求id查找返回类型时，result出现在requestId之前先缓存，读完后再按类型解析。
+     *
+     * @param resultType  固定的返回类型，resultTypes不为null时不使用
+     * @param resultTypes 根据请求id查找返回类型，为null时使用resultType
+     */
+    private static RpcResponse decode(JsonParser parser, RpcResponse rpcResponse, Type resultType, Function<String, Type> resultTypes) throws IOException {
+        TokenBuffer result = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "requestId":
+                    rpcResponse.setRequestId(parser.getValueAsString());
+                    break;
+                case "result":
+                    if (null == resultTypes) {
+                        rpcResponse.setResult(JacksonSerialize.readValue(parser, javaType(resultType)));
+                    } else if (null != rpcResponse.getRequestId()) {
+                        rpcResponse.setResult(JacksonSerialize.readValue(parser, javaType(resultTypes.apply(rpcResponse.getRequestId()))));
+                    } else {
+                        result = JacksonSerialize.bufferValue(parser);
+                    }
+                    break;
+                case "success":
+                    rpcResponse.setSuccess(parser.getValueAsBoolean());
+                    break;
+                case "returnType":
+                    rpcResponse.setReturnType(parser.getValueAsString());
+                    break;
+                case "exception":
+                    rpcResponse.setException(parser.getValueAsString());
+                    break;
+                case "context":
+                    rpcResponse.setContext(JacksonSerialize.readValue(parser, CONTEXT_TYPE));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        if (null != result) {
+            try (JsonParser bufferParser = result.asParser()) {
+                bufferParser.nextToken();
+                rpcResponse.setResult(JacksonSerialize.readValue(bufferParser, javaType(resultTypes.apply(rpcResponse.getRequestId()))));
+            }
+        }
+        return rpcResponse;
+    }
+
+    private static JavaType javaType(Type resultType) {
+        return null == resultType || void.class == resultType || Void.class == resultType
+                ? OBJECT_TYPE : RESULT_TYPES.computeIfAbsent(resultType, JacksonSerialize::getJavaType);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.enums.CompressEnum;
+import com.kongzhong.mrpc.model.ServiceBean;
+import com.kongzhong.mrpc.serialize.CompressCodec;
+import com.kongzhong.mrpc.server.RpcMapping;
+import com.kongzhong.mrpc.utils.StringUtils;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.SnappyFrameEncoder;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpResponse;
+
+import static com.kongzhong.mrpc.Const.HEADER_ATTACHMENT;
+import static com.kongzhong.mrpc.Const.HEADER_SERVICE_CLASS;
+
+/**
+ * 服务端响应压缩
+ * <p>
+ * 响应体小于压缩阈值时不压缩，否则按服务配置的算法和客户端的Accept-Encoding协商，支持gzip和snappy。
+ *
+ * @author biezhi
+ * 2017/5/4
+ */
+public class RpcContentCompressor extends HttpContentCompressor {
+
+    private NettyConfig           nettyConfig;
+    private ChannelHandlerContext ctx;
+
+    public RpcContentCompressor(NettyConfig nettyConfig) {
+        this.nettyConfig = nettyConfig;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+        // 附件是原始字节，文件以FileRegion写出，都不压缩
+        if (response.headers().contains(HEADER_ATTACHMENT)) {
+            return null;
+        }
+        if (response instanceof FullHttpResponse && ((FullHttpResponse) response).content().readableBytes() < nettyConfig.getCompressThreshold()) {
+            return null;
+        }
+        String       serviceName = response.headers().get(HEADER_SERVICE_CLASS);
+        ServiceBean  serviceBean = StringUtils.isNotEmpty(serviceName) ? RpcMapping.me().getServiceBeanMap().get(serviceName) : null;
+        CompressEnum compress    = CompressCodec.negotiate(nettyConfig.compress(serviceBean), acceptEncoding);
+        switch (compress) {
+            case GZIP:
+                return super.beginEncode(response, compress.encoding());
+            case SNAPPY:
+                return new Result(compress.encoding(), new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+                        ctx.channel().config(), new SnappyFrameEncoder()));
+            default:
+                return null;
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.enums.CompressEnum;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.SnappyFrameDecoder;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+
+/**
+ * http报文解压，在gzip和deflate的基础上支持snappy
+ *
+ * @author biezhi
+ * 2017/5/4
+ */
+public class RpcContentDecompressor extends HttpContentDecompressor {
+
+    @Override
+    protected EmbeddedChannel newContentDecoder(String contentEncoding) throws Exception {
+        if (CompressEnum.SNAPPY.encoding().equalsIgnoreCase(contentEncoding)) {
+            return new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+                    ctx.channel().config(), new SnappyFrameDecoder());
+        }
+        return super.newContentDecoder(contentEncoding);
+    }
+
+}
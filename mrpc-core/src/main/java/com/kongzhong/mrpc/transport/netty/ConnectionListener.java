@@ -2,12 +2,12 @@ package com.kongzhong.mrpc.transport.netty;
 
 import com.kongzhong.mrpc.client.LocalServiceNodeTable;
 import com.kongzhong.mrpc.config.ClientConfig;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.EventLoop;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,6 +25,11 @@ public class ConnectionListener implements ChannelFutureListener {
     @Override
     public void operationComplete(ChannelFuture future) throws Exception {
 
+        if (nettyClient.isPooled()) {
+            this.pooledComplete(future);
+            return;
+        }
+
         if (!nettyClient.isRunning() || LocalServiceNodeTable.isAlive(nettyClient.getAddress())) {
             return;
         }
@@ -50,8 +55,8 @@ public class ConnectionListener implements ChannelFutureListener {
             nettyClient.resetRetryCount();
 
             //和服务器连接成功后, 获取MessageSendHandler对象
-            Class<? extends HttpClientHandler> clientHandler = HttpClientHandler.class;
-            HttpClientHandler                  handler       = future.channel().pipeline().get(clientHandler);
+            Class<? extends SimpleClientHandler> clientHandler = SimpleClientHandler.class;
+            SimpleClientHandler                  handler       = future.channel().pipeline().get(clientHandler);
 
             // 设置节点状态为存活状态
             LocalServiceNodeTable.setNodeAlive(handler);
@@ -62,4 +67,34 @@ public class ConnectionListener implements ChannelFutureListener {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * 连接池扩容的连接，节点在线时按主连接的间隔和次数重试，重试期间占用扩容名额
+     *
+     * @param future 连接结果
+     */
+    private void pooledComplete(ChannelFuture future) {
+        if (!future.isSuccess()) {
+            log.warn("Pooled connect {} fail: {}", nettyClient.getServerAddress(), future.cause().getMessage());
+            if (nettyClient.isRunning() && LocalServiceNodeTable.isAlive(nettyClient.getAddress())
+                    && nettyClient.getRetryCount().intValue() < ClientConfig.me().getRetryCount()) {
+                nettyClient.getRetryCount().add(1);
+                log.info("Pooled reconnect {}, count = {}", nettyClient.getServerAddress(), nettyClient.getRetryCount().intValue());
+                final EventLoop loop = future.channel().eventLoop();
+                try {
+                    loop.schedule(() -> nettyClient.asyncCreateChannel(loop), ClientConfig.me().getRetryInterval(), TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    log.debug("Event loop of {} is shutdown", nettyClient.getServerAddress());
+                }
+            }
+        } else if (!nettyClient.isRunning()) {
+            future.channel().close();
+        } else {
+            log.info("Pooled connect {} success.", future.channel());
+            SimpleClientHandler handler = future.channel().pipeline().get(SimpleClientHandler.class);
+            LocalServiceNodeTable.setNodeAlive(handler);
+        }
+        LocalServiceNodeTable.pooledConnectFinished(nettyClient.getAddress());
+    }
+
+}
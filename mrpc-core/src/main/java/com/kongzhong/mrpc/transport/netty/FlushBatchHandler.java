@@ -0,0 +1,103 @@
+package com.kongzhong.mrpc.transport.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * 批量flush处理器
+ * <p>
+ * 放在pipeline最前面，每次flush不立即写socket，而是在当前EventLoop处理完已排队的任务后统一flush一次，
+ * 累计的flush次数或字节数达到阈值时立即flush，额外延迟不超过EventLoop的一轮任务。
+ *
+ * @author biezhi
+ * 2017/4/28
+ */
+public class FlushBatchHandler extends ChannelDuplexHandler {
+
+    /**
+     * 累计多少次flush后立即flush
+     */
+    private final int maxFlushes;
+
+    /**
+     * 累计多少字节后立即flush
+     */
+    private final int maxBytes;
+
+    private int     pendingFlushes;
+    private long    pendingBytes;
+    private boolean scheduled;
+
+    private ChannelHandlerContext ctx;
+
+    private final Runnable flushTask = () -> {
+        scheduled = false;
+        if (pendingFlushes > 0) {
+            this.flushNow(ctx);
+        }
+    };
+
+    public FlushBatchHandler(int maxFlushes, int maxBytes) {
+        this.maxFlushes = maxFlushes;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf) {
+            pendingBytes += ((ByteBuf) msg).readableBytes();
+        } else if (msg instanceof ByteBufHolder) {
+            pendingBytes += ((ByteBufHolder) msg).content().readableBytes();
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (++pendingFlushes >= maxFlushes || pendingBytes >= maxBytes || !ctx.channel().isWritable()) {
+            this.flushNow(ctx);
+        } else if (!scheduled) {
+            scheduled = true;
+            ctx.channel().eventLoop().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable() && pendingFlushes > 0) {
+            this.flushNow(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (pendingFlushes > 0) {
+            this.flushNow(ctx);
+        }
+        ctx.close(promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        if (pendingFlushes > 0) {
+            this.flushNow(ctx);
+        }
+        ctx.disconnect(promise);
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        pendingFlushes = 0;
+        pendingBytes = 0;
+        ctx.flush();
+    }
+
+}
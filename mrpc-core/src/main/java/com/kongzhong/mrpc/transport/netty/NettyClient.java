@@ -3,16 +3,18 @@ package com.kongzhong.mrpc.transport.netty;
 import com.kongzhong.mrpc.client.LocalServiceNodeTable;
 import com.kongzhong.mrpc.config.ClientConfig;
 import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.enums.TransportEnum;
 import com.kongzhong.mrpc.exception.ConnectException;
+import com.kongzhong.mrpc.transport.http.Http2ClientChannelInitializer;
 import com.kongzhong.mrpc.transport.http.HttpClientChannelInitializer;
-import com.kongzhong.mrpc.transport.http.HttpClientHandler;
+import com.kongzhong.mrpc.transport.tcp.TcpClientChannelInitializer;
 import com.kongzhong.mrpc.utils.HttpRequest;
 import com.kongzhong.mrpc.utils.StringUtils;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -48,6 +50,13 @@ public class NettyClient {
     @Getter
     private LongAdder retryCount = new LongAdder();
 
+    /**
+     * 是否为连接池扩容的连接
+     */
+    @Getter
+    private boolean pooled;
+
+    @Getter
     private NettyConfig nettyConfig;
 
     /**
@@ -66,14 +75,27 @@ public class NettyClient {
 
     }
 
+    public NettyClient(NettyConfig nettyConfig, String address, boolean pooled) {
+        this(nettyConfig, address);
+        this.pooled = pooled;
+    }
+
     private Bootstrap createBootstrap(EventLoopGroup eventLoopGroup) {
         Bootstrap bootstrap = new Bootstrap();
         bootstrap.group(eventLoopGroup)
-                .channel(NioSocketChannel.class)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, nettyConfig.getConnTimeout())
-                .option(ChannelOption.SO_KEEPALIVE, true);
-
-        bootstrap.handler(new HttpClientChannelInitializer(this));
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                // 发送缓冲超过高水位时连接不可写，由SimpleClientHandler按过载策略处理
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(nettyConfig.getLowWaterMark(), nettyConfig.getHighWaterMark()));
+        NettyTransport.client(bootstrap, nettyConfig);
+
+        if (ClientConfig.me().getTransport() == TransportEnum.TCP) {
+            bootstrap.handler(new TcpClientChannelInitializer(this, ClientConfig.me().getRpcSerialize()));
+        } else if (ClientConfig.me().getTransport() == TransportEnum.H2C) {
+            bootstrap.handler(new Http2ClientChannelInitializer(this));
+        } else {
+            bootstrap.handler(new HttpClientChannelInitializer(this));
+        }
         return bootstrap;
     }
 
@@ -99,8 +121,8 @@ public class NettyClient {
             log.info("Connect {} success.", channel);
 
             //和服务器连接成功后, 获取MessageSendHandler对象
-            Class<? extends HttpClientHandler> clientHandler = HttpClientHandler.class;
-            HttpClientHandler                  handler       = channel.pipeline().get(clientHandler);
+            Class<? extends SimpleClientHandler> clientHandler = SimpleClientHandler.class;
+            SimpleClientHandler                  handler       = channel.pipeline().get(clientHandler);
 
             // 设置节点状态为存活状态
             LocalServiceNodeTable.setNodeAlive(handler);
@@ -128,7 +150,7 @@ public class NettyClient {
      * @param eventLoopGroup
      */
     public void asyncCreateChannel(EventLoopGroup eventLoopGroup) {
-        if (LocalServiceNodeTable.isAlive(this.getAddress())) {
+        if (!pooled && LocalServiceNodeTable.isAlive(this.getAddress())) {
             return;
         }
         Bootstrap bootstrap = this.createBootstrap(eventLoopGroup);
@@ -142,6 +164,10 @@ public class NettyClient {
      * @param channel
      */
     void enabledPing(Channel channel) {
+        // 只有http服务端提供 /status 接口，h2c服务端兼容http/1.1请求
+        if (ClientConfig.me().getTransport() == TransportEnum.TCP) {
+            return;
+        }
         ScheduledFuture scheduledFuture = channel.eventLoop().scheduleAtFixedRate(() -> {
             try {
                 if (!channel.isActive()) {
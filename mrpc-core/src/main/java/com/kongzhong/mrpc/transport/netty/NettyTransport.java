@@ -0,0 +1,118 @@
+package com.kongzhong.mrpc.transport.netty;
+
+import com.kongzhong.mrpc.config.NettyConfig;
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Netty传输层选择，Linux下优先使用native epoll，不可用时回退到NIO
+ *
+ * @author biezhi
+ * 2017/4/28
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class NettyTransport {
+
+    /**
+     * 是否使用native epoll
+     *
+     * @param nettyConfig netty配置
+     * @return 开启了nativeEpoll并且当前系统支持时返回true
+     */
+    public static boolean useEpoll(NettyConfig nettyConfig) {
+        if (!nettyConfig.isNativeEpoll()) {
+            return false;
+        }
+        if (!Epoll.isAvailable()) {
+            log.debug("Native epoll unavailable, fallback to nio: {}", Epoll.unavailabilityCause().getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 创建EventLoopGroup
+     *
+     * @param nThreads    线程数，0表示使用netty默认值
+     * @param nettyConfig netty配置
+     * @return 返回epoll或nio的EventLoopGroup
+     */
+    public static EventLoopGroup newEventLoopGroup(int nThreads, NettyConfig nettyConfig) {
+        if (useEpoll(nettyConfig)) {
+            return new EpollEventLoopGroup(nThreads);
+        }
+        return new NioEventLoopGroup(nThreads);
+    }
+
+    /**
+     * 配置客户端Bootstrap的Channel类型和socket参数
+     *
+     * @param bootstrap   客户端Bootstrap
+     * @param nettyConfig netty配置
+     */
+    public static void client(Bootstrap bootstrap, NettyConfig nettyConfig) {
+        if (bootstrap.config().group() instanceof EpollEventLoopGroup) {
+            bootstrap.channel(EpollSocketChannel.class);
+            bootstrap.option(EpollChannelOption.TCP_QUICKACK, nettyConfig.isTcpQuickAck());
+        } else {
+            bootstrap.channel(NioSocketChannel.class);
+        }
+        bootstrap.option(ChannelOption.TCP_NODELAY, nettyConfig.isTcpNoDelay());
+    }
+
+    /**
+     * 配置服务端ServerBootstrap的Channel类型和socket参数
+     *
+     * @param bootstrap   服务端ServerBootstrap
+     * @param nettyConfig netty配置
+     */
+    public static void server(ServerBootstrap bootstrap, NettyConfig nettyConfig) {
+        if (isEpoll(bootstrap)) {
+            bootstrap.channel(EpollServerSocketChannel.class);
+            bootstrap.childOption(EpollChannelOption.TCP_QUICKACK, nettyConfig.isTcpQuickAck());
+            if (nettyConfig.isReusePort()) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+        } else {
+            bootstrap.channel(NioServerSocketChannel.class);
+        }
+        bootstrap.childOption(ChannelOption.TCP_NODELAY, nettyConfig.isTcpNoDelay());
+    }
+
+    /**
+     * 服务端需要绑定的acceptor个数，只有epoll下开启SO_REUSEPORT时才允许多个
+     *
+     * @param bootstrap   服务端ServerBootstrap
+     * @param nettyConfig netty配置
+     * @return 返回acceptor个数
+     */
+    public static int acceptors(ServerBootstrap bootstrap, NettyConfig nettyConfig) {
+        if (isEpoll(bootstrap) && nettyConfig.isReusePort()) {
+            return Math.max(1, nettyConfig.getAcceptors());
+        }
+        if (nettyConfig.getAcceptors() > 1) {
+            log.warn("SO_REUSEPORT requires native epoll, bind only one acceptor");
+        }
+        return 1;
+    }
+
+    private static boolean isEpoll(AbstractBootstrap<?, ?> bootstrap) {
+        return bootstrap.config().group() instanceof EpollEventLoopGroup;
+    }
+
+}
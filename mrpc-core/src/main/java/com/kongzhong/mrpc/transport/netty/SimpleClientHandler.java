@@ -0,0 +1,584 @@
+package com.kongzhong.mrpc.transport.netty;
+
+import com.kongzhong.mrpc.client.Connections;
+import com.kongzhong.mrpc.client.RpcCallbackFuture;
+import com.kongzhong.mrpc.client.TimeoutManager;
+import com.kongzhong.mrpc.config.ClientConfig;
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.enums.OverloadPolicyEnum;
+import com.kongzhong.mrpc.exception.ConnectException;
+import com.kongzhong.mrpc.exception.OverloadException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.utils.StringUtils;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端连接处理器，http/tcp传输的公共部分
+ *
+ * @param <T> 服务端响应报文类型
+ * @author biezhi
+ * 2017/4/19
+ */
+@Slf4j
+public abstract class SimpleClientHandler<T> extends SimpleChannelInboundHandler<T> {
+
+    @Getter
+    protected volatile Channel channel;
+
+    @Getter
+    @Setter
+    protected NettyClient nettyClient;
+
+    protected static boolean isShutdown;
+
+    protected LongAdder hits = new LongAdder();
+
+    /**
+     * 当前连接上超时的请求数
+     */
+    protected LongAdder timeouts = new LongAdder();
+
+    /**
+     * 过载时被拒绝、等待后发出、切换到其他节点的请求数
+     */
+    protected LongAdder overloadRejected = new LongAdder();
+    protected LongAdder overloadWaited   = new LongAdder();
+    protected LongAdder overloadRerouted = new LongAdder();
+
+    /**
+     * 当前连接上未完成的请求数，包括已经由acquire占用名额还没有登记的请求
+     */
+    protected AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 连接关闭后pending置为该值，之后不能再占用名额
+     */
+    private static final int CLOSED = Integer.MIN_VALUE / 2;
+
+    /**
+     * 是否已经移出连接池，未完成的请求数降为0时关闭
+     */
+    private volatile boolean retired;
+
+    /**
+     * 正在接收的http/1.1流式响应数，流结束之前连接被独占，占用的名额不归还
+     */
+    private final AtomicInteger streams = new AtomicInteger();
+
+    /**
+     * WAIT策略下等待连接可写的线程
+     */
+    private final    Object writableMonitor = new Object();
+    private volatile int    writableWaiters;
+
+    /**
+     * 服务端是否已经通知下线
+     */
+    private volatile boolean goingAway;
+
+    /**
+     * 最后一次发送或收到请求的时间
+     */
+    @Getter
+    protected volatile long lastActiveTime = System.currentTimeMillis();
+
+    /**
+     * 当前连接上等待响应的请求，key为连接内自增的请求id
+     * <p>
+     * 使用long为key的开放寻址表，没有装箱和字符串hash；表只在连接的EventLoop上读写，不加锁，
+     * 其他线程上的登记和移除提交到EventLoop执行，请求由谁完成以RpcCallbackFuture的移除标记为准
+     */
+    private final LongObjectHashMap<RpcCallbackFuture> callbackFutures = new LongObjectHashMap<>();
+
+    /**
+     * 连接内单调递增的请求id
+     */
+    private final AtomicLong requestIds = new AtomicLong();
+
+    public SimpleClientHandler(NettyClient nettyClient) {
+        this.nettyClient = nettyClient;
+    }
+
+    @Override
+    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+        this.channel = ctx.channel();
+        super.channelRegistered(ctx);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        log.debug("Channel active: {}", this.channel);
+        super.channelActive(ctx);
+    }
+
+    /**
+     * 每次客户端发送一次RPC请求的 时候调用.
+     *
+     * @param rpcRequest RpcRequest
+     * @return return RpcCallbackFuture
+     */
+    public abstract RpcCallbackFuture asyncSendRequest(RpcRequest rpcRequest);
+
+    /**
+     * 批量发送请求，默认逐个发送；http传输合并为一个请求
+     * <p>
+     * 连接过载等原因不能发送的请求只让它自己的回调失败，不影响批量中的其他请求。
+     *
+     * @param rpcRequests 发往该连接的请求
+     * @return 返回每个请求的回调，顺序与请求一致
+     */
+    public List<RpcCallbackFuture> asyncSendBatch(List<RpcRequest> rpcRequests) {
+        List<RpcCallbackFuture> rpcCallbackFutures = new ArrayList<>(rpcRequests.size());
+        for (RpcRequest rpcRequest : rpcRequests) {
+            try {
+                rpcCallbackFutures.add(this.asyncSendRequest(rpcRequest));
+            } catch (RuntimeException e) {
+                rpcCallbackFutures.add(failedFuture(rpcRequest, e));
+            }
+        }
+        return rpcCallbackFutures;
+    }
+
+    /**
+     * 没有登记到等待表就已经失败的请求
+     */
+    protected static RpcCallbackFuture failedFuture(RpcRequest rpcRequest, Throwable cause) {
+        RpcCallbackFuture rpcCallbackFuture = new RpcCallbackFuture(rpcRequest, -1);
+        rpcCallbackFuture.fail(cause);
+        return rpcCallbackFuture;
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (IOException.class.isInstance(cause) && cause.getMessage().contains("Connection reset by peer")) {
+        } else {
+            // 响应的解析错误由各自的处理器以对应调用的失败处理，这里无法确定出错的调用
+            log.error("Client receive body error", cause);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        log.debug("Channel InActive: {}", ctx.channel());
+        this.nettyClient.cancelSchedule(ctx.channel());
+
+        // 先移除客户端Channel，失败回调中的重试不会再选中这个连接
+        Connections.me().inActive(this);
+
+        // 只让这个连接上未完成的请求立即失败，不必等到超时
+        this.failCallbackFutures(new ConnectException(String.format("Server channel %s inactive.", ctx.channel())));
+        this.signalWritable();
+        ctx.channel().close().sync();
+    }
+
+    /**
+     * 服务端通知下线后不再路由到该连接，已经发出的请求继续等待响应，连接由服务端排空后关闭
+     */
+    protected void goAway() {
+        if (goingAway) {
+            return;
+        }
+        goingAway = true;
+        log.info("Server channel {} going away", channel);
+        Connections.me().inActive(this);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            this.signalWritable();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * 连接是否过载：发送缓冲超过高水位不可写，或者未完成请求数达到上限
+     *
+     * @return 过载返回true
+     */
+    public boolean isOverloaded() {
+        int maxInFlight = nettyClient.getNettyConfig().getMaxInFlight();
+        return !channel.isWritable() || (maxInFlight > 0 && pending.get() >= maxInFlight);
+    }
+
+    public OverloadPolicyEnum getOverloadPolicy() {
+        return nettyClient.getNettyConfig().getOverloadPolicy();
+    }
+
+    /**
+     * 发送请求前按过载策略占用一个未完成请求的名额，不能发送时抛出异常，请求不会登记到等待表
+     * <p>
+     * 占用的名额在请求从等待表移除时归还。
+     *
+     * @throws ConnectException  连接已经断开时抛出
+     * @throws OverloadException 连接过载并且等待超时或者策略为快速失败时抛出
+     */
+    protected void acquire() {
+        if (!channel.isActive()) {
+            throw new ConnectException(String.format("Server channel %s unActive.", channel));
+        }
+        if (this.tryAcquire()) {
+            return;
+        }
+        NettyConfig nettyConfig = nettyClient.getNettyConfig();
+        // 任何EventLoop线程上都不能等待，否则该线程上的连接永远不会变为可写，直接按过载快速失败
+        if (nettyConfig.getOverloadPolicy() == OverloadPolicyEnum.WAIT && !this.inEventLoop()
+                && this.awaitWritable(nettyConfig.getOverloadWaitTime())) {
+            overloadWaited.increment();
+            return;
+        }
+        if (!channel.isActive() || pending.get() < 0) {
+            throw new ConnectException(String.format("Server channel %s unActive.", channel));
+        }
+        overloadRejected.increment();
+        throw new OverloadException(String.format("Server channel %s overloaded, pending: %d, writable: %s",
+                channel, pending.get(), channel.isWritable()));
+    }
+
+    /**
+     * 当前线程是否为netty的I/O线程，默认线程工厂创建的EventLoop线程都是FastThreadLocalThread，
+     * 服务端I/O线程上执行的服务方法发起的嵌套调用同样不能等待
+     */
+    private boolean inEventLoop() {
+        return channel.eventLoop().inEventLoop() || Thread.currentThread() instanceof FastThreadLocalThread;
+    }
+
+    /**
+     * 连接可写并且占用后不超过上限时原子地占用一个名额，检查和占用之间不会有其他线程插入
+     *
+     * @return 占用成功返回true
+     */
+    private boolean tryAcquire() {
+        if (!channel.isWritable()) {
+            return false;
+        }
+        int maxInFlight = nettyClient.getNettyConfig().getMaxInFlight();
+        while (true) {
+            int current = pending.get();
+            if (current < 0 || (maxInFlight > 0 && current >= maxInFlight)) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 等待连接不再过载并占用名额
+     *
+     * @param milliseconds 最长等待时间
+     * @return 在等待时间内占用成功返回true
+     */
+    private boolean awaitWritable(long milliseconds) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        synchronized (writableMonitor) {
+            writableWaiters++;
+            try {
+                while (channel.isActive()) {
+                    if (this.tryAcquire()) {
+                        return true;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(writableMonitor, remaining);
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                writableWaiters--;
+            }
+        }
+    }
+
+    private void signalWritable() {
+        if (writableWaiters > 0) {
+            synchronized (writableMonitor) {
+                writableMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 添加一次调用
+     */
+    public void addHit() {
+        hits.add(1);
+    }
+
+    public Long getHits() {
+        return hits.longValue();
+    }
+
+    /**
+     * 添加一次超时
+     */
+    public void addTimeout() {
+        timeouts.add(1);
+    }
+
+    public Long getTimeouts() {
+        return timeouts.longValue();
+    }
+
+    /**
+     * 请求没有发送出去，从等待表中移除并立即失败
+     *
+     * @param rpcCallbackFuture 请求回调
+     * @param cause             失败原因
+     */
+    protected void failSend(RpcCallbackFuture rpcCallbackFuture, Throwable cause) {
+        if (this.removeCallbackFuture(rpcCallbackFuture)) {
+            rpcCallbackFuture.fail(cause);
+        }
+    }
+
+    /**
+     * 负载均衡选中该连接但因为过载切换到其他节点
+     */
+    public void addRerouted() {
+        overloadRerouted.add(1);
+    }
+
+    public Long getOverloadRejected() {
+        return overloadRejected.longValue();
+    }
+
+    public Long getOverloadWaited() {
+        return overloadWaited.longValue();
+    }
+
+    public Long getOverloadRerouted() {
+        return overloadRerouted.longValue();
+    }
+
+    public int getPending() {
+        return Math.max(0, pending.get());
+    }
+
+    /**
+     * 连接已经移出连接池，未完成的请求都结束后关闭
+     * <p>
+     * 移出前可能已经被其他线程选中，pending为0时原子地置为关闭状态，之后占用名额失败，不会关闭正在使用的连接。
+     */
+    public void retire() {
+        retired = true;
+        this.closeIfRetired();
+    }
+
+    private void closeIfRetired() {
+        if (retired && pending.compareAndSet(0, CLOSED)) {
+            log.debug("Close retired channel {}", channel);
+            channel.close();
+        }
+    }
+
+    /**
+     * 登记一个等待响应的请求，并为请求分配本连接内的请求id，名额已经由acquire占用
+     *
+     * @param rpcRequest RpcRequest
+     * @return 返回该请求的回调
+     */
+    protected RpcCallbackFuture addCallbackFuture(RpcRequest rpcRequest) {
+        long requestId = requestIds.incrementAndGet();
+        rpcRequest.setRequestId(Long.toString(requestId));
+
+        RpcCallbackFuture rpcCallbackFuture = new RpcCallbackFuture(rpcRequest, requestId);
+        lastActiveTime = System.currentTimeMillis();
+
+        // 登记任务排在之后的写出任务之前，响应到达时一定能找到请求
+        boolean registered = this.runInEventLoop(() -> {
+            if (rpcCallbackFuture.isRemoved()) {
+                return;
+            }
+            callbackFutures.put(requestId, rpcCallbackFuture);
+            // 登记之前连接已经断开，failCallbackFutures不会再处理它
+            if (null != channel && !channel.isActive() && this.removeCallbackFuture(rpcCallbackFuture)) {
+                rpcCallbackFuture.fail(new ConnectException(String.format("Server channel %s unActive.", channel)));
+            }
+        });
+        if (!registered) {
+            this.removeCallbackFuture(rpcCallbackFuture);
+            throw new ConnectException(String.format("Server channel %s unActive.", channel));
+        }
+
+        // 截止时间交给时间轮，超时后从等待表中移除
+        int waitTimeout = rpcRequest.getWaitTimeout() > 0 ? rpcRequest.getWaitTimeout() : ClientConfig.me().getWaitTimeout();
+        try {
+            rpcCallbackFuture.setTimeout(TimeoutManager.me().newTimeout(this, rpcCallbackFuture, waitTimeout));
+        } catch (RuntimeException e) {
+            // 移除时同时归还名额
+            this.removeCallbackFuture(rpcCallbackFuture);
+            throw e;
+        }
+        return rpcCallbackFuture;
+    }
+
+    /**
+     * 查找一个等待响应的请求，不移除，只能在连接的EventLoop上调用
+     *
+     * @param requestId 请求id
+     * @return 返回该请求的回调，不存在返回null
+     */
+    protected RpcCallbackFuture getCallbackFuture(long requestId) {
+        return callbackFutures.get(requestId);
+    }
+
+    /**
+     * 收到响应时移除等待的请求，只能在连接的EventLoop上调用
+     *
+     * @param requestId 请求id
+     * @return 返回该请求的回调，已经移除过返回null
+     */
+    public RpcCallbackFuture removeCallbackFuture(long requestId) {
+        RpcCallbackFuture rpcCallbackFuture = callbackFutures.get(requestId);
+        return null != rpcCallbackFuture && this.removeCallbackFuture(rpcCallbackFuture) ? rpcCallbackFuture : null;
+    }
+
+    /**
+     * 收到http/1.1流式响应的响应头时移除等待的请求，名额保留到releaseStream，只能在连接的EventLoop上调用
+     *
+     * @param requestId 请求id
+     * @return 返回该请求的回调，已经移除过返回null
+     */
+    protected RpcCallbackFuture holdCallbackFuture(long requestId) {
+        RpcCallbackFuture rpcCallbackFuture = callbackFutures.get(requestId);
+        if (null == rpcCallbackFuture || !rpcCallbackFuture.markRemoved()) {
+            return null;
+        }
+        callbackFutures.remove(requestId);
+        streams.incrementAndGet();
+        return rpcCallbackFuture;
+    }
+
+    /**
+     * http/1.1流式响应结束或者连接断开时归还holdCallbackFuture保留的名额
+     */
+    protected void releaseStream() {
+        streams.decrementAndGet();
+        pending.decrementAndGet();
+        lastActiveTime = System.currentTimeMillis();
+        this.signalWritable();
+        this.closeIfRetired();
+    }
+
+    /**
+     * 连接是否正在接收http/1.1流式响应，此时连接上的其他响应排在流之后
+     *
+     * @return 有未结束的流时返回true
+     */
+    public boolean isStreaming() {
+        return streams.get() > 0;
+    }
+
+    /**
+     * 移除一个等待响应的请求，收到响应、出错、超时或者取消都需要调用，可以在任意线程上调用
+     *
+     * @param rpcCallbackFuture 请求回调
+     * @return 由本次调用移除时返回true，已经移除过返回false
+     */
+    public boolean removeCallbackFuture(RpcCallbackFuture rpcCallbackFuture) {
+        if (!rpcCallbackFuture.markRemoved()) {
+            return false;
+        }
+        this.runInEventLoop(() -> callbackFutures.remove(rpcCallbackFuture.getRequestId()));
+        pending.decrementAndGet();
+        lastActiveTime = System.currentTimeMillis();
+        this.signalWritable();
+        this.closeIfRetired();
+        return true;
+    }
+
+    /**
+     * 在连接的EventLoop上执行对等待表的修改，还没有绑定连接时直接执行
+     *
+     * @return EventLoop已经关闭时返回false
+     */
+    private boolean runInEventLoop(Runnable task) {
+        if (null == channel || channel.eventLoop().inEventLoop()) {
+            task.run();
+            return true;
+        }
+        try {
+            channel.eventLoop().execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Event loop of {} is shutdown", channel);
+            return false;
+        }
+    }
+
+    /**
+     * 使这个连接上所有未完成的请求失败，只能在连接的EventLoop上调用
+     *
+     * @param cause 失败原因
+     */
+    protected void failCallbackFutures(Throwable cause) {
+        List<RpcCallbackFuture> failed = new ArrayList<>(callbackFutures.size());
+        for (RpcCallbackFuture rpcCallbackFuture : callbackFutures.values()) {
+            if (rpcCallbackFuture.markRemoved()) {
+                failed.add(rpcCallbackFuture);
+            }
+        }
+        callbackFutures.clear();
+        if (failed.isEmpty()) {
+            return;
+        }
+        pending.addAndGet(-failed.size());
+        this.signalWritable();
+        this.closeIfRetired();
+        log.debug("Fail {} pending requests on {}", failed.size(), channel);
+        failed.forEach(rpcCallbackFuture -> rpcCallbackFuture.fail(cause));
+    }
+
+    /**
+     * 解析响应中的请求id
+     *
+     * @param requestId 响应中的请求id
+     * @return 返回请求id，格式不正确时返回-1
+     */
+    protected static long parseRequestId(String requestId) {
+        if (StringUtils.isEmpty(requestId)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(requestId);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 客户端关闭时调用
+     */
+    public void close() throws InterruptedException {
+        nettyClient.shutdown();
+        this.nettyClient.cancelSchedule(channel);
+        this.channel.close().sync();
+    }
+
+    public static void shutdown() {
+        isShutdown = true;
+    }
+
+}
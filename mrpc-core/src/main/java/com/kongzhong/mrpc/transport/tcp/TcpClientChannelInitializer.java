@@ -0,0 +1,40 @@
+package com.kongzhong.mrpc.transport.tcp;
+
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.serialize.RpcDecoder;
+import com.kongzhong.mrpc.serialize.RpcEncoder;
+import com.kongzhong.mrpc.serialize.RpcSerialize;
+import com.kongzhong.mrpc.transport.netty.FlushBatchHandler;
+import com.kongzhong.mrpc.transport.netty.NettyClient;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+
+/**
+ * tcp客户端ChannelInitializer
+ */
+public class TcpClientChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    private NettyClient  nettyClient;
+    private RpcSerialize rpcSerialize;
+
+    public TcpClientChannelInitializer(NettyClient nettyClient, RpcSerialize rpcSerialize) {
+        this.nettyClient = nettyClient;
+        this.rpcSerialize = rpcSerialize;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel socketChannel) throws Exception {
+        NettyConfig nettyConfig = nettyClient.getNettyConfig();
+        socketChannel.pipeline()
+                // 长度帧 + 序列化后的RpcRequest
+                .addLast(new RpcEncoder(rpcSerialize, RpcRequest.class))
+                // 长度帧 + 序列化后的RpcResponse
+                .addLast(new RpcDecoder(rpcSerialize, RpcResponse.class, nettyConfig.getMaxResponseSize()))
+                .addLast(new TcpClientHandler(nettyClient));
+        if (nettyConfig.isFlushBatch()) {
+            socketChannel.pipeline().addFirst(new FlushBatchHandler(nettyConfig.getFlushBatchCount(), nettyConfig.getFlushBatchBytes()));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.kongzhong.mrpc.transport.tcp;
+
+import com.kongzhong.mrpc.client.RpcCallbackFuture;
+import com.kongzhong.mrpc.exception.ConnectException;
+import com.kongzhong.mrpc.exception.SerializeException;
+import com.kongzhong.mrpc.exception.SystemException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.serialize.AttachmentCodec;
+import com.kongzhong.mrpc.serialize.CompressCodec;
+import com.kongzhong.mrpc.transport.netty.NettyClient;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+import static com.kongzhong.mrpc.Const.ACCEPT_COMPRESS;
+
+/**
+ * tcp客户端处理器
+ *
+ * @author biezhi
+ * 2017/4/19
+ */
+@Slf4j
+public class TcpClientHandler extends SimpleClientHandler<RpcResponse> {
+
+    TcpClientHandler(NettyClient nettyClient) {
+        super(nettyClient);
+    }
+
+    @Override
+    public RpcCallbackFuture asyncSendRequest(RpcRequest rpcRequest) {
+        if (isShutdown) {
+            throw new SystemException("Rpc client has been shutdown.");
+        }
+        this.acquire();
+        RpcCallbackFuture rpcCallbackFuture = this.addCallbackFuture(rpcRequest);
+
+        // 声明客户端支持的压缩算法，由服务端协商响应是否压缩
+        rpcRequest.getContext().put(ACCEPT_COMPRESS, CompressCodec.ACCEPT_ENCODING);
+        // tcp报文中的二进制参数统一为byte[]，由protostuff按原始字节写出
+        try {
+            rpcRequest.setParameters(AttachmentCodec.toBytes(rpcRequest.getParameterTypes(), rpcRequest.getParameters()));
+        } catch (IOException e) {
+            this.failSend(rpcCallbackFuture, e);
+            return rpcCallbackFuture;
+        }
+
+        if (channel.isActive() && channel.isOpen()) {
+            channel.writeAndFlush(rpcRequest).addListener((ChannelFutureListener) future -> {
+                if (future.isSuccess()) {
+                    log.debug("Client send [{}] success.", rpcRequest.getRequestId());
+                } else {
+                    log.debug("Client send [{}] fail.", rpcRequest.getRequestId(), future.cause());
+                    this.failSend(rpcCallbackFuture, new ConnectException("Client send [" + rpcRequest.getRequestId() + "] fail.", future.cause()));
+                }
+            });
+        } else {
+            this.failSend(rpcCallbackFuture, new ConnectException(String.format("Server channel %s unActive.", channel)));
+        }
+        return rpcCallbackFuture;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, RpcResponse rpcResponse) throws Exception {
+        log.debug("Client channel read: {}", ctx.channel());
+
+        String            requestId         = rpcResponse.getRequestId();
+        RpcCallbackFuture rpcCallbackFuture = this.removeCallbackFuture(parseRequestId(requestId));
+        if (rpcCallbackFuture != null) {
+            // 二进制返回值在报文中是byte[]，转换为方法声明的类型
+            Class<?> resultType = AttachmentCodec.rawType(rpcCallbackFuture.getRequest().getGenericReturnType());
+            if (rpcResponse.getResult() instanceof byte[] && byte[].class != resultType && AttachmentCodec.isAttachmentType(resultType)) {
+                try {
+                    rpcResponse.setResult(AttachmentCodec.decode(Unpooled.wrappedBuffer((byte[]) rpcResponse.getResult()), resultType));
+                } catch (IOException e) {
+                    log.error("Client receive attachment [{}] error", requestId, e);
+                    rpcCallbackFuture.fail(new SerializeException("Client receive attachment [" + requestId + "] error", e));
+                    return;
+                }
+            }
+            rpcCallbackFuture.done(rpcResponse);
+        } else {
+            log.error("Not found request id [{}]", requestId);
+        }
+    }
+
+}
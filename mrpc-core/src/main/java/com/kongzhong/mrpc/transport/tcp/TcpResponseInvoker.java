@@ -0,0 +1,56 @@
+package com.kongzhong.mrpc.transport.tcp;
+
+import com.kongzhong.mrpc.Const;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.model.ServiceBean;
+import com.kongzhong.mrpc.serialize.AttachmentCodec;
+import com.kongzhong.mrpc.server.AbstractResponseInvoker;
+import com.kongzhong.mrpc.server.SimpleRpcServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Tcp响应回调处理
+ */
+@Slf4j
+public class TcpResponseInvoker extends AbstractResponseInvoker<Boolean> {
+
+    public TcpResponseInvoker(RpcRequest request, RpcResponse response, Map<String, ServiceBean> serviceBeanMap) {
+        super(request, response, serviceBeanMap);
+    }
+
+    @Override
+    protected Boolean buildResponse(Object result, Throwable t) throws Exception {
+        if (null != request.getContext()) {
+            response.getContext().putAll(request.getContext());
+        }
+        response.getContext().putIfAbsent(Const.APP_NAME, SimpleRpcServer.getContext(Const.APP_NAME));
+        response.getContext().putIfAbsent(Const.SERVER_OWNER, SimpleRpcServer.getContext(Const.SERVER_OWNER));
+
+        // 二进制返回值在报文中统一为byte[]
+        if (null == t && AttachmentCodec.isAttachment(result)) {
+            try {
+                result = AttachmentCodec.toBytes(result);
+            } catch (IOException e) {
+                t = e;
+            }
+        }
+        if (null == t) {
+            response.setResult(collectStream(result));
+            if (null != request.getReturnType()) {
+                response.setReturnType(request.getReturnType().getName());
+            }
+            response.setSuccess(true);
+        } else {
+            t = buildErrorResponse(t, response);
+            if (SimpleRpcServer.PRINT_ERROR_LOG) {
+                log.error("Service method invoke error", t);
+            }
+        }
+        return Boolean.TRUE;
+    }
+
+}
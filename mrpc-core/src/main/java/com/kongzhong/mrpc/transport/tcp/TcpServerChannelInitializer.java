@@ -0,0 +1,39 @@
+package com.kongzhong.mrpc.transport.tcp;
+
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.serialize.RpcDecoder;
+import com.kongzhong.mrpc.serialize.RpcEncoder;
+import com.kongzhong.mrpc.serialize.RpcSerialize;
+import com.kongzhong.mrpc.transport.netty.FlushBatchHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+
+/**
+ * tcp服务端ChannelInitializer
+ */
+public class TcpServerChannelInitializer extends ChannelInitializer<SocketChannel> {
+
+    private RpcSerialize rpcSerialize;
+    private NettyConfig  nettyConfig;
+
+    public TcpServerChannelInitializer(RpcSerialize rpcSerialize, NettyConfig nettyConfig) {
+        this.rpcSerialize = rpcSerialize;
+        this.nettyConfig = nettyConfig;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel socketChannel) throws Exception {
+        socketChannel.pipeline()
+                // inbound handler
+                .addLast(new RpcDecoder(rpcSerialize, RpcRequest.class, nettyConfig.getMaxRequestSize()))
+                // outbound handler
+                .addLast(new RpcEncoder(rpcSerialize, RpcResponse.class, nettyConfig.getCompressThreshold()))
+                .addLast(new TcpServerHandler(nettyConfig));
+
+        if (nettyConfig.isFlushBatch()) {
+            socketChannel.pipeline().addFirst(new FlushBatchHandler(nettyConfig.getFlushBatchCount(), nettyConfig.getFlushBatchBytes()));
+        }
+    }
+}
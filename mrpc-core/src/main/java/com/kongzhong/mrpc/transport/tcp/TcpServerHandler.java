@@ -0,0 +1,118 @@
+package com.kongzhong.mrpc.transport.tcp;
+
+import com.kongzhong.mrpc.config.NettyConfig;
+import com.kongzhong.mrpc.exception.ConnectException;
+import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.model.ServiceBean;
+import com.kongzhong.mrpc.serialize.AttachmentCodec;
+import com.kongzhong.mrpc.serialize.CompressCodec;
+import com.kongzhong.mrpc.serialize.jackson.JacksonSerialize;
+import com.kongzhong.mrpc.server.InFlightRequests;
+import com.kongzhong.mrpc.server.RpcMapping;
+import com.kongzhong.mrpc.server.SimpleRpcServer;
+import com.kongzhong.mrpc.transport.http.HttpServerHandler;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.kongzhong.mrpc.Const.ACCEPT_COMPRESS;
+
+/**
+ * tcp请求处理器
+ *
+ * @author biezhi
+ * 2017/4/21
+ */
+@Slf4j
+public class TcpServerHandler extends SimpleChannelInboundHandler<RpcRequest> {
+
+    private NettyConfig              nettyConfig;
+    private Map<String, ServiceBean> serviceBeanMap;
+
+    TcpServerHandler(NettyConfig nettyConfig) {
+        this.nettyConfig = nettyConfig;
+        this.serviceBeanMap = RpcMapping.me().getServiceBeanMap();
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        InFlightRequests.me().register(ctx.channel());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        super.channelInactive(ctx);
+        log.debug("Channel Inactive {}", ctx.channel());
+    }
+
+    @Override
+    public void channelRead0(ChannelHandlerContext ctx, RpcRequest request) throws Exception {
+        RpcResponse response = new RpcResponse();
+        response.setRequestId(request.getRequestId());
+
+        String acceptCompress = null != request.getContext() ? request.getContext().remove(ACCEPT_COMPRESS) : null;
+        if (null != acceptCompress) {
+            ServiceBean serviceBean = serviceBeanMap.get(request.getClassName());
+            response.setCompress(CompressCodec.negotiate(nettyConfig.compress(serviceBean), acceptCompress));
+        }
+
+        if (HttpServerHandler.isOffline()) {
+            response.setSuccess(false);
+            response.setException(JacksonSerialize.toJSONString(new ConnectException("The server has been offline.")));
+            response.setReturnType(ConnectException.class.getName());
+            ctx.writeAndFlush(response);
+            return;
+        }
+
+        try {
+            this.decodeAttachments(request);
+        } catch (IOException e) {
+            log.error("Server receive attachments error", e);
+            response.setSuccess(false);
+            response.setException(JacksonSerialize.toJSONString(new RpcException("Unable to identify the request attachments.")));
+            response.setReturnType(RpcException.class.getName());
+            ctx.writeAndFlush(response);
+            return;
+        }
+
+        TcpResponseInvoker responseInvoker = new TcpResponseInvoker(request, response, serviceBeanMap);
+        SimpleRpcServer.submit(responseInvoker, ctx, request, response);
+    }
+
+    /**
+     * 二进制参数在报文中是byte[]，转换为方法声明的类型，解码出的参数登记到请求上，调用结束后释放
+     */
+    private void decodeAttachments(RpcRequest request) throws IOException {
+        Class<?>[] parameterTypes = request.getParameterTypes();
+        Object[]   parameters     = request.getParameters();
+        if (null == parameters || !AttachmentCodec.hasAttachments(parameterTypes)) {
+            return;
+        }
+        List<Object> attachments = new ArrayList<>();
+        request.setAttachments(attachments);
+        for (int i = 0; i < parameterTypes.length && i < parameters.length; i++) {
+            if (byte[].class != parameterTypes[i] && AttachmentCodec.isAttachmentType(parameterTypes[i]) && parameters[i] instanceof byte[]) {
+                parameters[i] = AttachmentCodec.decode(Unpooled.wrappedBuffer((byte[]) parameters[i]), parameterTypes[i]);
+                attachments.add(parameters[i]);
+            }
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (IOException.class.isInstance(cause) && cause.getMessage().contains("Connection reset by peer")) {
+        } else {
+            log.error("Server io error: {}", ctx.channel(), cause);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.kongzhong.mrpc.client;
+
+import com.kongzhong.mrpc.exception.TimeoutException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.transport.netty.SimpleClientHandler;
+import io.netty.channel.ChannelHandlerContext;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * 客户端请求超时测试
+ *
+ * @author biezhi
+ * 2017/5/8
+ */
+public class TimeoutManagerTest {
+
+    /**
+     * 只登记请求，不发送
+     */
+    private final SimpleClientHandler<Object> clientHandler = new SimpleClientHandler<Object>(null) {
+        @Override
+        public RpcCallbackFuture asyncSendRequest(RpcRequest rpcRequest) {
+            return this.addCallbackFuture(rpcRequest);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+        }
+    };
+
+    @Test
+    public void testAsyncTimeout() throws Exception {
+        RpcCallbackFuture         rpcCallbackFuture = clientHandler.asyncSendRequest(request(30));
+        CompletableFuture<Object> future            = rpcCallbackFuture.toCompletableFuture();
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail("Request not timed out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        // 超时的请求已经从等待表移除，迟到的响应找不到它
+        assertThat(clientHandler.removeCallbackFuture(rpcCallbackFuture.getRequestId()), is(nullValue()));
+        assertThat(clientHandler.getTimeouts(), is(1L));
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testSyncTimeout() throws Throwable {
+        clientHandler.asyncSendRequest(request(30)).get();
+    }
+
+    @Test
+    public void testResponseCancelsTimeout() throws Throwable {
+        RpcCallbackFuture rpcCallbackFuture = clientHandler.asyncSendRequest(request(50));
+
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setSuccess(true);
+        rpcResponse.setResult("ok");
+        clientHandler.removeCallbackFuture(rpcCallbackFuture.getRequestId()).done(rpcResponse);
+
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertThat(rpcCallbackFuture.get(), is("ok"));
+        assertThat(rpcCallbackFuture.toCompletableFuture().get(), is("ok"));
+        assertThat(clientHandler.getTimeouts(), is(0L));
+    }
+
+    @Test
+    public void testFailedRequestNotCountedAsTimeout() throws Exception {
+        RpcCallbackFuture     rpcCallbackFuture = clientHandler.asyncSendRequest(request(50));
+        IllegalStateException cause             = new IllegalStateException("Channel closed");
+        clientHandler.removeCallbackFuture(rpcCallbackFuture.getRequestId()).fail(cause);
+
+        TimeUnit.MILLISECONDS.sleep(200);
+        try {
+            rpcCallbackFuture.toCompletableFuture().get();
+            fail("Failed request completed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(cause));
+        }
+        assertThat(clientHandler.getTimeouts(), is(0L));
+    }
+
+    private static RpcRequest request(int waitTimeout) {
+        return RpcRequest.builder().className("DemoService").methodName("hello").waitTimeout(waitTimeout).build();
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.kongzhong.mrpc.serialize;
+
+import com.kongzhong.mrpc.enums.CompressEnum;
+import com.kongzhong.mrpc.model.RpcResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * 报文压缩测试
+ *
+ * @author biezhi
+ * 2017/5/8
+ */
+public class CompressCodecTest {
+
+    /**
+     * 使用jdk序列化，测试不依赖kryo和protostuff
+     */
+    private static final RpcSerialize JDK_SERIALIZE = new RpcSerialize() {
+        @Override
+        public <T> byte[] serialize(T obj) throws Exception {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(out)) {
+                objectOutputStream.writeObject(obj);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T deserialize(byte[] data, Class<T> clazz) throws Exception {
+            try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(data))) {
+                return (T) objectInputStream.readObject();
+            }
+        }
+    };
+
+    private static final int COMPRESS_THRESHOLD = 1024;
+
+    @Test
+    public void testNegotiate() {
+        assertThat(CompressCodec.negotiate(CompressEnum.SNAPPY, CompressCodec.ACCEPT_ENCODING), is(CompressEnum.SNAPPY));
+        assertThat(CompressCodec.negotiate(CompressEnum.GZIP, CompressCodec.ACCEPT_ENCODING), is(CompressEnum.GZIP));
+        assertThat(CompressCodec.negotiate(CompressEnum.SNAPPY, "GZIP;q=1.0, deflate"), is(CompressEnum.GZIP));
+        assertThat(CompressCodec.negotiate(CompressEnum.SNAPPY, "deflate"), is(CompressEnum.NONE));
+        assertThat(CompressCodec.negotiate(CompressEnum.GZIP, null), is(CompressEnum.NONE));
+        assertThat(CompressCodec.negotiate(CompressEnum.NONE, CompressCodec.ACCEPT_ENCODING), is(CompressEnum.NONE));
+        assertThat(CompressCodec.negotiate(null, CompressCodec.ACCEPT_ENCODING), is(CompressEnum.NONE));
+    }
+
+    @Test
+    public void testCompressedFrame() throws Exception {
+        for (CompressEnum compress : new CompressEnum[]{CompressEnum.GZIP, CompressEnum.SNAPPY}) {
+            String result = repeat("hello mrpc ", 1000);
+            ByteBuf frame = encode(response(result, compress));
+
+            int length = frame.getInt(0);
+            assertThat((length & CompressCodec.COMPRESSED_FLAG) != 0, is(true));
+            assertThat(length & ~CompressCodec.COMPRESSED_FLAG, is(frame.readableBytes() - RpcSerialize.MESSAGE_LENGTH));
+            assertThat(length & ~CompressCodec.COMPRESSED_FLAG, lessThan(result.length()));
+            assertThat(frame.getByte(RpcSerialize.MESSAGE_LENGTH), is(compress.getId()));
+
+            RpcResponse rpcResponse = decode(frame, 1 << 20);
+            assertThat(rpcResponse.getResult(), is(result));
+        }
+    }
+
+    @Test
+    public void testSmallOrUncompressedFrame() throws Exception {
+        String[]       results    = {"hello", repeat("hello mrpc ", 1000)};
+        CompressEnum[] compresses = {CompressEnum.GZIP, CompressEnum.NONE};
+        for (int i = 0; i < results.length; i++) {
+            ByteBuf frame = encode(response(results[i], compresses[i]));
+
+            assertThat(frame.getInt(0), is(frame.readableBytes() - RpcSerialize.MESSAGE_LENGTH));
+            assertThat(decode(frame, 1 << 20).getResult(), is(results[i]));
+        }
+    }
+
+    @Test
+    public void testDecompressionBomb() throws Exception {
+        for (CompressEnum compress : new CompressEnum[]{CompressEnum.GZIP, CompressEnum.SNAPPY}) {
+            // 1MB的重复内容压缩后只有几KB，帧长度在上限内，解压后超过上限
+            ByteBuf frame          = encode(response(repeat("0", 1 << 20), compress));
+            int     maxFrameLength = 64 * 1024;
+            assertThat(frame.readableBytes(), lessThan(maxFrameLength));
+            try {
+                decode(frame, maxFrameLength);
+                fail("Decompressed frame over " + maxFrameLength + " bytes accepted with " + compress);
+            } catch (TooLongFrameException e) {
+                assertThat(e.getMessage(), is("Decompressed frame length exceeds " + maxFrameLength));
+            }
+        }
+    }
+
+    @Test
+    public void testDecompressToExactLimit() throws Exception {
+        for (CompressEnum compress : new CompressEnum[]{CompressEnum.GZIP, CompressEnum.SNAPPY}) {
+            RpcResponse rpcResponse = response(repeat("hello mrpc ", 1000), compress);
+            // 解压后恰好等于帧长度上限
+            int maxFrameLength = JDK_SERIALIZE.serialize(rpcResponse).length;
+            assertThat(decode(encode(rpcResponse), maxFrameLength).getResult(), is(rpcResponse.getResult()));
+        }
+    }
+
+    @Test
+    public void testFrameTooLong() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcDecoder(JDK_SERIALIZE, RpcResponse.class, 16));
+        try {
+            channel.writeInbound(Unpooled.buffer().writeInt(17 | CompressCodec.COMPRESSED_FLAG).writeByte(CompressEnum.GZIP.getId()));
+            fail("Frame length over 16 bytes accepted");
+        } catch (TooLongFrameException e) {
+            // 帧长度在读取报文之前校验，不等待后续数据
+            assertThat(channel.isOpen(), is(false));
+        }
+    }
+
+    @Test
+    public void testEmptyCompressedFrame() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcDecoder(JDK_SERIALIZE, RpcResponse.class, 16));
+        try {
+            channel.writeInbound(Unpooled.buffer().writeInt(CompressCodec.COMPRESSED_FLAG));
+            fail("Compressed frame without compress id accepted");
+        } catch (CorruptedFrameException e) {
+            assertThat(channel.isOpen(), is(false));
+        }
+    }
+
+    private static RpcResponse response(String result, CompressEnum compress) {
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setRequestId("1");
+        rpcResponse.setSuccess(true);
+        rpcResponse.setResult(result);
+        rpcResponse.setCompress(compress);
+        return rpcResponse;
+    }
+
+    private static ByteBuf encode(RpcResponse rpcResponse) {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcEncoder(JDK_SERIALIZE, RpcResponse.class, COMPRESS_THRESHOLD));
+        channel.writeOutbound(rpcResponse);
+        return channel.readOutbound();
+    }
+
+    private static RpcResponse decode(ByteBuf frame, int maxFrameLength) {
+        EmbeddedChannel channel = new EmbeddedChannel(new RpcDecoder(JDK_SERIALIZE, RpcResponse.class, maxFrameLength));
+        channel.writeInbound(frame);
+        return channel.readInbound();
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder sb = new StringBuilder(value.length() * times);
+        for (int i = 0; i < times; i++) {
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.kongzhong.mrpc.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * 服务端未完成请求和停机排空测试
+ *
+ * @author biezhi
+ * 2017/5/8
+ */
+public class InFlightRequestsTest {
+
+    private InFlightRequests inFlightRequests;
+
+    /**
+     * 开始排空后不能恢复，每个测试使用新的实例，不影响InFlightRequests.me()
+     */
+    @Before
+    public void before() throws Exception {
+        Constructor<InFlightRequests> constructor = InFlightRequests.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        inFlightRequests = constructor.newInstance();
+    }
+
+    @Test
+    public void testAcquireAndRelease() {
+        EmbeddedChannel first  = this.register();
+        EmbeddedChannel second = this.register();
+        inFlightRequests.acquire(first);
+        inFlightRequests.acquire(first);
+        inFlightRequests.acquire(second);
+        assertThat(inFlightRequests.getInFlight(), is(3));
+        assertThat(inFlightRequests.getInFlight(first), is(2));
+
+        inFlightRequests.release(first);
+        assertThat(inFlightRequests.getInFlight(), is(2));
+        assertThat(inFlightRequests.getInFlight(first), is(1));
+        // 没有排空时连接上的请求完成后不关闭连接
+        inFlightRequests.release(second);
+        assertThat(second.isOpen(), is(true));
+    }
+
+    @Test
+    public void testDrainClosesIdleChannels() {
+        EmbeddedChannel busy = this.register();
+        EmbeddedChannel idle = this.register();
+        inFlightRequests.acquire(busy);
+
+        inFlightRequests.drain();
+        assertThat(idle.isOpen(), is(false));
+        assertThat(busy.isOpen(), is(true));
+
+        inFlightRequests.release(busy);
+        assertThat(busy.isOpen(), is(false));
+        assertThat(inFlightRequests.awaitDrained(0), is(true));
+    }
+
+    @Test
+    public void testAwaitDrained() throws InterruptedException {
+        EmbeddedChannel busy = this.register();
+        inFlightRequests.acquire(busy);
+        inFlightRequests.acquire(busy);
+        inFlightRequests.drain();
+
+        Thread thread = new Thread(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlightRequests.release(busy);
+            inFlightRequests.release(busy);
+        });
+        thread.start();
+
+        assertThat(inFlightRequests.awaitDrained(5000), is(true));
+        assertThat(inFlightRequests.getInFlight(), is(0));
+        thread.join();
+        assertThat(busy.isOpen(), is(false));
+    }
+
+    @Test
+    public void testAwaitDrainedTimeout() {
+        EmbeddedChannel busy = this.register();
+        inFlightRequests.acquire(busy);
+        inFlightRequests.drain();
+
+        assertThat(inFlightRequests.awaitDrained(50), is(false));
+        assertThat(busy.isOpen(), is(true));
+
+        inFlightRequests.closeAll();
+        assertThat(busy.isOpen(), is(false));
+    }
+
+    @Test
+    public void testOffline() {
+        List<Object>    events  = new ArrayList<>();
+        EmbeddedChannel channel = this.register(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                events.add(evt);
+            }
+        });
+
+        inFlightRequests.offline();
+        assertThat(events, is(Arrays.asList(InFlightRequests.OFFLINE_EVENT)));
+        // 下线只通知客户端，连接在排空时关闭
+        assertThat(channel.isOpen(), is(true));
+    }
+
+    private EmbeddedChannel register(ChannelInboundHandlerAdapter... handlers) {
+        // ChannelGroup按id区分连接，EmbeddedChannel默认的id都相同
+        EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance(), handlers);
+        inFlightRequests.register(channel);
+        return channel;
+    }
+
+}
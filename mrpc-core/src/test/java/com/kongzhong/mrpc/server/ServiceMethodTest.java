@@ -0,0 +1,56 @@
+package com.kongzhong.mrpc.server;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * 服务方法参数匹配测试
+ *
+ * @author biezhi
+ * 2017/5/10
+ */
+public class ServiceMethodTest {
+
+    public static class FooService {
+
+        public int size(Collection<String> values, Integer limit) {
+            return Math.min(values.size(), limit);
+        }
+
+        public long add(long a, long b) {
+            return a + b;
+        }
+    }
+
+    @Test
+    public void testMatchesExactly() throws Exception {
+        ServiceMethod serviceMethod = this.serviceMethod("size", Collection.class, Integer.class);
+        assertThat(serviceMethod.matches(new Class<?>[]{Collection.class, Integer.class}), is(true));
+        assertThat(serviceMethod.matches(new Class<?>[]{List.class, Integer.class}), is(false));
+    }
+
+    @Test
+    public void testAssignableFrom() throws Exception {
+        ServiceMethod size = this.serviceMethod("size", Collection.class, Integer.class);
+        assertThat(size.isAssignableFrom(new Class<?>[]{ArrayList.class, int.class}), is(true));
+        assertThat(size.isAssignableFrom(new Class<?>[]{List.class, null}), is(true));
+        assertThat(size.isAssignableFrom(new Class<?>[]{String.class, Integer.class}), is(false));
+        assertThat(size.isAssignableFrom(new Class<?>[]{List.class}), is(false));
+
+        // 基本类型的参数值不能为null
+        ServiceMethod add = this.serviceMethod("add", long.class, long.class);
+        assertThat(add.isAssignableFrom(new Class<?>[]{Long.class, long.class}), is(true));
+        assertThat(add.isAssignableFrom(new Class<?>[]{null, long.class}), is(false));
+    }
+
+    private ServiceMethod serviceMethod(String name, Class<?>... parameterTypes) throws Exception {
+        return new ServiceMethod(FooService.class.getName(), new FooService(), FooService.class.getMethod(name, parameterTypes), false);
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.serialize.AttachmentCodec;
+import com.kongzhong.mrpc.transport.http.HttpAttachments.AttachmentRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpMessage;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.kongzhong.mrpc.Const.HEADER_ATTACHMENT;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * http二进制附件测试
+ *
+ * @author biezhi
+ * 2017/5/10
+ */
+public class HttpAttachmentsTest {
+
+    @Test
+    public void testWriteAttachments() throws Exception {
+        File file = File.createTempFile("mrpc-", ".test");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "file-content".getBytes(CharsetUtil.UTF_8));
+
+        ByteBuf      json        = Unpooled.copiedBuffer("{}", CharsetUtil.UTF_8);
+        List<Object> attachments = Arrays.asList(AttachmentCodec.encode(ByteBuffer.wrap(new byte[]{1, 2, 3}), null), null, file);
+        AttachmentRequest request = new AttachmentRequest("/rpc", json, attachments);
+        request.headers().set(HEADER_ATTACHMENT, HttpAttachments.header(attachments));
+        assertThat(request.headers().get(HEADER_ATTACHMENT), is("3,-1,12"));
+        assertThat(HttpAttachments.length(attachments), is(15L));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpAttachmentWriter(false));
+        ChannelFuture   future  = channel.writeAndFlush(request);
+        assertThat(future.isSuccess(), is(true));
+
+        // 消息头、json、内存中的附件、文件、结束分块依次写出，文件不读入内存
+        Object head = channel.readOutbound();
+        assertThat(head, instanceOf(HttpRequest.class));
+        assertThat(head, not(instanceOf(FullHttpMessage.class)));
+        assertThat(((HttpRequest) head).headers().get(HEADER_ATTACHMENT), is("3,-1,12"));
+        this.assertContent(channel.readOutbound(), "{}".getBytes(CharsetUtil.UTF_8));
+        this.assertContent(channel.readOutbound(), new byte[]{1, 2, 3});
+        FileRegion region = channel.readOutbound();
+        assertThat(region.count(), is(12L));
+        region.release();
+        assertThat(channel.readOutbound(), instanceOf(LastHttpContent.class));
+        assertThat(channel.readOutbound(), is(nullValue()));
+        channel.finish();
+    }
+
+    @Test
+    public void testReleaseUnwrittenAttachments() throws Exception {
+        ByteBuf      attachment = Unpooled.wrappedBuffer(new byte[]{1, 2, 3});
+        ByteBuf      encoded    = (ByteBuf) AttachmentCodec.encode(attachment, null);
+        AttachmentRequest request = new AttachmentRequest("/rpc", Unpooled.buffer(), Arrays.asList(encoded));
+
+        // 附件是调用方ByteBuf的副本，请求没有写出时释放副本，调用方的引用不变
+        assertThat(attachment.refCnt(), is(2));
+        request.release();
+        assertThat(attachment.refCnt(), is(1));
+        attachment.release();
+    }
+
+    @Test
+    public void testSliceAttachments() throws Exception {
+        ByteBuf content = Unpooled.wrappedBuffer(Unpooled.copiedBuffer("{\"a\":1}", CharsetUtil.UTF_8),
+                Unpooled.wrappedBuffer(new byte[]{1, 2, 3}), Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8));
+        HttpHeaders headers = new DefaultHttpHeaders().set(HEADER_ATTACHMENT, "3,-1,5");
+
+        int[] lengths = HttpAttachments.lengths(headers);
+        assertThat(HttpAttachments.json(content, lengths).toString(CharsetUtil.UTF_8), is("{\"a\":1}"));
+
+        List<ByteBuf> slices = HttpAttachments.slices(content, lengths);
+        assertThat(slices.get(1), is(nullValue()));
+
+        // 附件切片独立计数，报文释放后仍然可以读取
+        content.release();
+        ByteBuf bytes = (ByteBuf) AttachmentCodec.decode(slices.get(0), ByteBuf.class);
+        assertThat(bytes.readableBytes(), is(3));
+        assertThat(bytes.getByte(2), is((byte) 3));
+        bytes.release();
+
+        File file = (File) AttachmentCodec.decode(slices.get(2), File.class);
+        assertThat(new String(Files.readAllBytes(file.toPath()), CharsetUtil.UTF_8), is("hello"));
+        assertThat(content.refCnt(), is(0));
+        AttachmentCodec.release(file);
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void testDecodeInputStream() throws Exception {
+        ByteBuf     content = Unpooled.copiedBuffer("hello", CharsetUtil.UTF_8);
+        InputStream in      = (InputStream) AttachmentCodec.decode(content, InputStream.class);
+        assertThat(in.read(), is((int) 'h'));
+
+        AttachmentCodec.release(in);
+        assertThat(content.refCnt(), is(0));
+    }
+
+    private void assertContent(Object msg, byte[] expected) {
+        assertThat(msg, instanceOf(HttpContent.class));
+        ByteBuf content = ((HttpContent) msg).content();
+        byte[]  actual  = new byte[content.readableBytes()];
+        content.getBytes(content.readerIndex(), actual);
+        assertThat(actual, is(expected));
+        ReferenceCountUtil.release(msg);
+    }
+
+}
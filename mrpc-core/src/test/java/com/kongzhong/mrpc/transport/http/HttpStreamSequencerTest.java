@@ -0,0 +1,88 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.kongzhong.mrpc.transport.http.HttpStreamSequencer.StreamContent;
+import com.kongzhong.mrpc.transport.http.HttpStreamSequencer.StreamHead;
+import com.kongzhong.mrpc.transport.http.HttpStreamSequencer.StreamLastContent;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * http/1.1流式响应写出顺序测试
+ *
+ * @author biezhi
+ * 2017/5/9
+ */
+public class HttpStreamSequencerTest {
+
+    @Test
+    public void testResponsesWaitForActiveStream() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpStreamSequencer());
+        Object          first   = new Object();
+        Object          second  = new Object();
+
+        StreamHead        head1    = new StreamHead(first, HttpResponseStatus.OK);
+        StreamContent     content1 = new StreamContent(first, Unpooled.buffer());
+        StreamHead        head2    = new StreamHead(second, HttpResponseStatus.OK);
+        FullHttpResponse  response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        StreamContent     content2 = new StreamContent(second, Unpooled.buffer());
+        StreamLastContent last1    = new StreamLastContent(first, Unpooled.buffer());
+        StreamLastContent last2    = new StreamLastContent(second, Unpooled.buffer());
+
+        channel.writeAndFlush(head1);
+        // 第一个流结束前，其他响应和第二个流都排队
+        ChannelFuture queued = channel.writeAndFlush(head2);
+        channel.writeAndFlush(response);
+        channel.writeAndFlush(content2);
+        channel.writeAndFlush(content1);
+        assertThat(queued.isDone(), is(false));
+
+        channel.writeAndFlush(last1);
+        channel.writeAndFlush(last2);
+        assertThat(queued.isSuccess(), is(true));
+
+        assertThat(this.readOutbound(channel), is(Arrays.asList(head1, content1, last1, head2, content2, last2, response)));
+        channel.finish();
+    }
+
+    @Test
+    public void testReleasePendingOnClose() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpStreamSequencer());
+        Object          owner   = new Object();
+
+        channel.writeAndFlush(new StreamHead(owner, HttpResponseStatus.OK));
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.buffer(8));
+        ChannelFuture    future   = channel.writeAndFlush(response);
+
+        channel.close();
+        assertThat(future.isSuccess(), is(false));
+        assertThat(response.refCnt(), is(0));
+        channel.readOutbound();
+        assertThat(channel.readOutbound(), is(nullValue()));
+    }
+
+    private List<Object> readOutbound(EmbeddedChannel channel) {
+        List<Object> messages = new ArrayList<>();
+        Object       msg;
+        while (null != (msg = channel.readOutbound())) {
+            messages.add(msg);
+            ReferenceCountUtil.release(msg);
+        }
+        return messages;
+    }
+
+}
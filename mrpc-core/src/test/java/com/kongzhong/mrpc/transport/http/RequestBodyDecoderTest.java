@@ -0,0 +1,162 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kongzhong.mrpc.annotation.RpcService;
+import com.kongzhong.mrpc.model.Bar;
+import com.kongzhong.mrpc.model.RequestBody;
+import com.kongzhong.mrpc.server.RpcMapping;
+import com.kongzhong.mrpc.server.ServiceMethod;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * http请求体解码测试
+ *
+ * @author biezhi
+ * 2017/5/8
+ */
+public class RequestBodyDecoderTest {
+
+    public interface BarApi {
+
+        String hello(String name, int times);
+
+        List<Bar> bars(List<Bar> bars);
+
+    }
+
+    @RpcService
+    public static class BarService implements BarApi {
+
+        @Override
+        public String hello(String name, int times) {
+            return name + times;
+        }
+
+        @Override
+        public List<Bar> bars(List<Bar> bars) {
+            return bars;
+        }
+
+    }
+
+    private static final String SERVICE_NAME = BarApi.class.getName();
+
+    private final Function<RequestBody, ServiceMethod> resolver = this::resolve;
+
+    @BeforeClass
+    public static void addService() {
+        RpcMapping.me().addServiceBean(new BarService(), "barService");
+    }
+
+    @AfterClass
+    public static void removeService() {
+        RpcMapping.me().getServiceBeanMap().remove(SERVICE_NAME);
+        RpcMapping.me().getServiceMethods().remove(SERVICE_NAME);
+    }
+
+    @Test
+    public void testDecodeParameterTypes() throws IOException {
+        RequestBody requestBody = decode("{\"requestId\":\"1\",\"service\":\"BarService\",\"method\":\"bars\"," +
+                "\"context\":{\"k\":\"v\"},\"parameters\":[[{\"id\":1,\"name\":\"jack\"}]]}");
+
+        assertThat(requestBody.getRequestId(), is("1"));
+        assertThat(requestBody.getContext().get("k"), is("v"));
+        assertThat(requestBody.getParameters().size(), is(1));
+        // 泛型参数直接解析为List<Bar>，不再是LinkedHashMap
+        assertThat(requestBody.getParameters().get(0), is(Arrays.asList(new Bar(1, "jack"))));
+    }
+
+    @Test
+    public void testParametersBeforeMethod() throws IOException {
+        RequestBody requestBody = decode("{\"parameters\":[\"jack\",3],\"service\":\"BarService\",\"method\":\"hello\"}");
+
+        assertThat(requestBody.getMethod(), is("hello"));
+        assertThat(requestBody.getParameters(), is(Arrays.<Object>asList("jack", 3)));
+    }
+
+    @Test
+    public void testExtraParametersIgnored() throws IOException {
+        RequestBody requestBody = decode("{\"service\":\"BarService\",\"method\":\"hello\"," +
+                "\"parameters\":[\"jack\",3,{\"extra\":[1,2]},4]}");
+
+        assertThat(requestBody.getParameters(), is(Arrays.<Object>asList("jack", 3)));
+    }
+
+    @Test
+    public void testNullParameters() throws IOException {
+        RequestBody requestBody = decode("{\"service\":\"BarService\",\"method\":\"hello\",\"parameters\":null}");
+
+        assertThat(requestBody.getParameters(), is(nullValue()));
+    }
+
+    @Test
+    public void testUnknownMethodLeavesParameters() throws IOException {
+        RequestBody requestBody = decode("{\"service\":\"BarService\",\"method\":\"missing\",\"parameters\":[1]," +
+                "\"unknown\":{\"a\":[1]}}");
+
+        assertThat(requestBody.getMethod(), is("missing"));
+        assertThat(requestBody.getParameters(), is(nullValue()));
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void testParametersNotArray() throws IOException {
+        decode("{\"service\":\"BarService\",\"method\":\"hello\",\"parameters\":\"jack\"}");
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void testBodyNotObject() throws IOException {
+        decode("[]");
+    }
+
+    @Test
+    public void testDecodeBatch() throws IOException {
+        List<RequestBody> requestBodies = RequestBodyDecoder.decodeBatch(input("[" +
+                "{\"requestId\":\"1\",\"service\":\"BarService\",\"method\":\"hello\",\"parameters\":[\"jack\",3]}," +
+                "{\"parameters\":[[{\"id\":1}]],\"requestId\":\"2\",\"service\":\"BarService\",\"method\":\"bars\"}," +
+                "{\"requestId\":\"3\",\"service\":\"BarService\",\"method\":\"missing\",\"parameters\":[1]}]"), resolver);
+
+        assertThat(requestBodies.size(), is(3));
+        assertThat(requestBodies.get(0).getParameters(), is(Arrays.<Object>asList("jack", 3)));
+        assertThat(requestBodies.get(1).getRequestId(), is("2"));
+        assertThat(requestBodies.get(1).getParameters().get(0), is(Arrays.asList(new Bar(1, null))));
+        // 找不到方法的元素不影响其他元素，由服务端单独返回错误
+        assertThat(requestBodies.get(2).getParameters(), is(nullValue()));
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void testBatchBodyNotArray() throws IOException {
+        RequestBodyDecoder.decodeBatch(input("{\"service\":\"BarService\",\"method\":\"hello\"}"), resolver);
+    }
+
+    /**
+     * 请求中的服务名是BarService的简写，方法没有重载，按方法名查找
+     */
+    private ServiceMethod resolve(RequestBody requestBody) {
+        if (!"BarService".equals(requestBody.getService())) {
+            return null;
+        }
+        return RpcMapping.me().getServiceMethod(SERVICE_NAME, requestBody.getMethod(), (List<String>) null);
+    }
+
+    private RequestBody decode(String json) throws IOException {
+        return RequestBodyDecoder.decode(input(json), resolver);
+    }
+
+    private static ByteArrayInputStream input(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.kongzhong.mrpc.transport.http;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kongzhong.mrpc.model.Bar;
+import com.kongzhong.mrpc.model.RpcResponse;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * http响应体解码测试
+ *
+ * @author biezhi
+ * 2017/5/8
+ */
+public class ResponseBodyDecoderTest {
+
+    public interface BarService {
+
+        List<Bar> bars();
+
+        Map<Integer, Bar> barMap();
+
+        void ping();
+
+    }
+
+    @Test
+    public void testDecodeGenericResult() throws IOException {
+        RpcResponse rpcResponse = decode("{\"requestId\":\"1\",\"success\":true,\"result\":[{\"id\":1,\"name\":\"jack\"}]," +
+                "\"context\":{\"k\":\"v\"}}", returnType("bars"));
+
+        assertThat(rpcResponse.getRequestId(), is("1"));
+        assertThat(rpcResponse.getSuccess(), is(true));
+        assertThat(rpcResponse.getContext().get("k"), is("v"));
+        assertThat(rpcResponse.getResult(), is(Arrays.asList(new Bar(1, "jack"))));
+    }
+
+    @Test
+    public void testDecodeMapKeys() throws IOException {
+        RpcResponse rpcResponse = decode("{\"result\":{\"2\":{\"id\":2}},\"success\":true}", returnType("barMap"));
+
+        assertThat(rpcResponse.getResult(), is(Collections.singletonMap(2, new Bar(2, null))));
+    }
+
+    @Test
+    public void testVoidAndUnknownFields() throws IOException {
+        RpcResponse rpcResponse = decode("{\"success\":true,\"unknown\":{\"a\":[1,{}]},\"result\":null}", returnType("ping"));
+
+        assertThat(rpcResponse.getSuccess(), is(true));
+        assertThat(rpcResponse.getResult(), is(nullValue()));
+    }
+
+    @Test
+    public void testDecodeException() throws IOException {
+        RpcResponse rpcResponse = decode("{\"success\":false,\"returnType\":\"java.lang.IllegalStateException\"," +
+                "\"exception\":\"{}\"}", returnType("bars"));
+
+        assertThat(rpcResponse.getSuccess(), is(false));
+        assertThat(rpcResponse.getReturnType(), is("java.lang.IllegalStateException"));
+        assertThat(rpcResponse.getException(), is("{}"));
+    }
+
+    @Test(expected = JsonProcessingException.class)
+    public void testBodyNotObject() throws IOException {
+        decode("[1]", returnType("bars"));
+    }
+
+    @Test
+    public void testDecodeBatch() throws IOException {
+        Map<String, Type> resultTypes = new HashMap<>();
+        resultTypes.put("1", returnType("bars"));
+        resultTypes.put("2", returnType("barMap"));
+
+        List<RpcResponse> rpcResponses = ResponseBodyDecoder.decodeBatch(input("[" +
+                "{\"requestId\":\"1\",\"success\":true,\"result\":[{\"id\":1}]}," +
+                "{\"result\":{\"2\":{\"id\":2}},\"requestId\":\"2\",\"success\":true}," +
+                "{\"requestId\":\"3\",\"success\":false,\"exception\":\"{}\"}]"), resultTypes::get);
+
+        assertThat(rpcResponses.size(), is(3));
+        assertThat(rpcResponses.get(0).getResult(), is(Arrays.asList(new Bar(1, null))));
+        // result在requestId之前时缓存后再按该请求的类型解析
+        assertThat(rpcResponses.get(1).getResult(), is(Collections.singletonMap(2, new Bar(2, null))));
+        assertThat(rpcResponses.get(2).getSuccess(), is(false));
+        assertThat(rpcResponses.get(2).getException(), is("{}"));
+    }
+
+    @Test
+    public void testDecodeStreamFrame() throws IOException {
+        Type elementType = ((ParameterizedType) returnType("bars")).getActualTypeArguments()[0];
+
+        RpcResponse dataFrame = ResponseBodyDecoder.decodeFrame(input("{\"result\":{\"id\":1,\"name\":\"jack\"}}"), elementType);
+        // 数据帧没有success字段
+        assertThat(dataFrame.getSuccess(), is(nullValue()));
+        assertThat(dataFrame.getResult(), is(new Bar(1, "jack")));
+
+        RpcResponse endFrame = ResponseBodyDecoder.decodeFrame(input("{\"requestId\":\"1\",\"success\":true,\"context\":{}}"), elementType);
+        assertThat(endFrame.getSuccess(), is(true));
+        assertThat(endFrame.getRequestId(), is("1"));
+    }
+
+    private static RpcResponse decode(String json, Type resultType) throws IOException {
+        return ResponseBodyDecoder.decode(input(json), resultType);
+    }
+
+    private static ByteArrayInputStream input(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Type returnType(String method) {
+        try {
+            return BarService.class.getMethod(method).getGenericReturnType();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
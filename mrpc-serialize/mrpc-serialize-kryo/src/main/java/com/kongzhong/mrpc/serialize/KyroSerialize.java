@@ -8,6 +8,7 @@ import lombok.NoArgsConstructor;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 
 /**
  * Kyro序列化实现
@@ -43,6 +44,17 @@ public class KyroSerialize implements RpcSerialize {
         }
     }
 
+    @Override
+    public <T> void serialize(T obj, OutputStream out) throws Exception {
+        try {
+            Output output = new Output(out);
+            kryos.get().writeClassAndObject(output, obj);
+            output.flush();
+        } catch (Exception e) {
+            throw new SerializeException(e);
+        }
+    }
+
     @Override
     public <T> T deserialize(byte[] data, Class<T> clazz) throws Exception {
         try (ByteArrayInputStream bis = new ByteArrayInputStream(data);
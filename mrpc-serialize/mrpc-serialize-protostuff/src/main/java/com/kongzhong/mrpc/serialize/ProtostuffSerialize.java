@@ -10,6 +10,7 @@ import lombok.NoArgsConstructor;
 import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
 
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -45,6 +46,23 @@ public class ProtostuffSerialize implements RpcSerialize {
         }
     }
 
+    /**
+     * 序列化（对象 -> 输出流）
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> void serialize(T obj, OutputStream out) throws Exception {
+        Class<T> cls = (Class<T>) obj.getClass();
+        LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        try {
+            ProtostuffIOUtil.writeTo(out, obj, getSchema(cls), buffer);
+        } catch (Exception e) {
+            throw new SerializeException(e.getMessage(), e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
     /**
      * 反序列化（字节数组 -> 对象）
      */
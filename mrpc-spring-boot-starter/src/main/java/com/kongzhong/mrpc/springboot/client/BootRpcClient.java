@@ -96,6 +96,7 @@ public class BootRpcClient extends SimpleRpcClient implements BeanPostProcessor,
         super.lbStrategy = clientConfig.getLbStrategy();
         super.haStrategy = clientConfig.getHaStrategy();
         super.serialize = clientConfig.getSerialize();
+        super.transport = clientConfig.getTransport();
         super.directAddress = clientConfig.getDirectAddress();
         super.failOverRetry = clientConfig.getFailOverRetry();
         super.retryCount = clientConfig.getRetryCount();
@@ -5,6 +5,7 @@ import com.kongzhong.mrpc.Const;
 import com.kongzhong.mrpc.config.NettyConfig;
 import com.kongzhong.mrpc.enums.HaStrategyEnum;
 import com.kongzhong.mrpc.enums.LbStrategyEnum;
+import com.kongzhong.mrpc.enums.OverloadPolicyEnum;
 import com.kongzhong.mrpc.exception.SystemException;
 import com.kongzhong.mrpc.springboot.config.AdminProperties;
 import com.kongzhong.mrpc.springboot.config.CommonProperties;
@@ -51,6 +52,8 @@ public class PropertiesParse {
 
         clientProperties.setSerialize(env.getProperty(SERIALIZE_CLIENT, "kyro"));
 
+        clientProperties.setTransport(env.getProperty(TRANSPORT_CLIENT, "http"));
+
         clientProperties.setLbStrategy(env.getProperty(LB_STRATEGY_STYLE1_CLIENT, env.getProperty(LB_STRATEGY_STYLE2_CLIENT, LbStrategyEnum.ROUND.name())));
 
         clientProperties.setHaStrategy(env.getProperty(HA_STRATEGY_STYLE1_CLIENT, env.getProperty(HA_STRATEGY_STYLE2_CLIENT, HaStrategyEnum.FAILOVER.name())));
@@ -119,6 +122,26 @@ public class PropertiesParse {
             NettyConfig nettyConfig = new NettyConfig();
             Object      backlog     = nettyConfigMap.getOrDefault(NETTY_BACKLOG, 1024);
             nettyConfig.setBacklog(Integer.valueOf(backlog.toString()));
+            Object minConnections = nettyConfigMap.getOrDefault(NETTY_MIN_CONNECTIONS, nettyConfig.getMinConnections());
+            Object maxConnections = nettyConfigMap.getOrDefault(NETTY_MAX_CONNECTIONS, nettyConfig.getMaxConnections());
+            nettyConfig.setMinConnections(Integer.valueOf(minConnections.toString()));
+            nettyConfig.setMaxConnections(Integer.valueOf(maxConnections.toString()));
+            Object connectionPending  = nettyConfigMap.getOrDefault(NETTY_CONNECTION_PENDING, nettyConfig.getConnectionPending());
+            Object connectionIdleTime = nettyConfigMap.getOrDefault(NETTY_CONNECTION_IDLE_TIME, nettyConfig.getConnectionIdleTime());
+            nettyConfig.setConnectionPending(Integer.valueOf(connectionPending.toString()));
+            nettyConfig.setConnectionIdleTime(Integer.valueOf(connectionIdleTime.toString()));
+            Object maxInFlight      = nettyConfigMap.getOrDefault(NETTY_MAX_IN_FLIGHT, nettyConfig.getMaxInFlight());
+            Object overloadPolicy   = nettyConfigMap.getOrDefault(NETTY_OVERLOAD_POLICY, nettyConfig.getOverloadPolicy());
+            Object overloadWaitTime = nettyConfigMap.getOrDefault(NETTY_OVERLOAD_WAIT_TIME, nettyConfig.getOverloadWaitTime());
+            nettyConfig.setMaxInFlight(Integer.valueOf(maxInFlight.toString()));
+            nettyConfig.setOverloadPolicy(OverloadPolicyEnum.valueOf(overloadPolicy.toString().toUpperCase()));
+            nettyConfig.setOverloadWaitTime(Integer.valueOf(overloadWaitTime.toString()));
+            Object flushBatch      = nettyConfigMap.getOrDefault(NETTY_FLUSH_BATCH, false);
+            Object flushBatchCount = nettyConfigMap.getOrDefault(NETTY_FLUSH_BATCH_COUNT, nettyConfig.getFlushBatchCount());
+            Object flushBatchBytes = nettyConfigMap.getOrDefault(NETTY_FLUSH_BATCH_BYTES, nettyConfig.getFlushBatchBytes());
+            nettyConfig.setFlushBatch(Boolean.valueOf(flushBatch.toString()));
+            nettyConfig.setFlushBatchCount(Integer.valueOf(flushBatchCount.toString()));
+            nettyConfig.setFlushBatchBytes(Integer.valueOf(flushBatchBytes.toString()));
             commonProperties.setNetty(nettyConfig);
         }
 
@@ -1,5 +1,7 @@
 package com.kongzhong.mrpc.springboot.config;
 
+import com.kongzhong.mrpc.enums.CompressEnum;
+import com.kongzhong.mrpc.enums.OverloadPolicyEnum;
 import lombok.Data;
 import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -20,9 +22,48 @@ public class NettyProperties {
 
     // 业务线程池数
     private int businessThreadPoolSize = 16;
+    // 业务线程池队列长度，以及请求在队列中最长的等待时间
+    private int businessQueueSize = 1024;
+    private int maxQueueTime = 3000;
+    // I/O线程上执行的服务方法超过该时间视为阻塞
+    private int ioThreadBlockTime = 10;
+    // 停机时等待未完成请求的最长时间
+    private int drainTimeout = 10_000;
     private int backlog;
     private boolean keepalive;
     private int lowWaterMark = 32 * 1024;
     private int highWaterMark = 64 * 1024;
 
+    // 客户端最空闲的连接上未完成请求数达到该值时扩容连接池，超过最少连接数的空闲连接回收时间
+    private int connectionPending = 64;
+    private int connectionIdleTime = 60_000;
+
+    // 客户端每个连接上最多未完成的请求数，以及过载时的处理策略
+    private int maxInFlight = 1024;
+    private OverloadPolicyEnum overloadPolicy = OverloadPolicyEnum.FAILFAST;
+    private int overloadWaitTime = 1000;
+
+    // 批量flush，合并同一轮EventLoop中的写操作
+    private boolean flushBatch;
+    private int flushBatchCount = 128;
+    private int flushBatchBytes = 64 * 1024;
+
+    // 自动使用native epoll，不支持时回退到NIO
+    private boolean nativeEpoll = true;
+    private int bossThreads = 1;
+    private int workerThreads;
+    private boolean tcpNoDelay = true;
+    private boolean tcpQuickAck;
+    // SO_REUSEPORT多acceptor，只在epoll下生效
+    private boolean reusePort;
+    private int acceptors = 1;
+
+    // 请求体/响应体最大字节数
+    private int maxRequestSize = 8 * 1024 * 1024;
+    private int maxResponseSize = 8 * 1024 * 1024;
+
+    // 服务端响应的压缩算法，报文超过compressThreshold字节才压缩
+    private CompressEnum compress = CompressEnum.GZIP;
+    private int compressThreshold = 1024;
+
 }
@@ -31,6 +31,9 @@ public class RpcClientProperties {
     // 序列化组件，默认kyro
     private String serialize;
 
+    // 传输协议 http/tcp/h2c，默认http
+    private String transport;
+
     // 跳过服务绑定
     private Boolean skipBind;
 
@@ -44,6 +44,9 @@ public class RpcServerProperties {
 
     private String serialize = "kyro";
 
+    // 传输协议 http/tcp/h2c
+    private String transport = "http";
+
     private String test;
 
 }
\ No newline at end of file
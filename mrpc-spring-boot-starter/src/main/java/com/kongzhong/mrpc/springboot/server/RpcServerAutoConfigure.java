@@ -115,6 +115,7 @@ public class RpcServerAutoConfigure extends SimpleRpcServer {
             super.test = StringUtils.isNotEmpty(commonProperties.getTest()) ? commonProperties.getTest() : rpcServerProperties.getTest();
 
             super.serialize = rpcServerProperties.getSerialize();
+            super.transport = rpcServerProperties.getTransport();
 
             configurableBeanFactory.registerSingleton("rpcMapping", rpcMapping);
         };